@@ -0,0 +1,166 @@
+package de.thm.mni.compilerbau;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Realizes the --batch mode: compiles many programs in one JVM on a work-stealing pool.
+ * <p>
+ * Every file is compiled by a separate {@link SplCompiler} run and its code is written next to it with the extension
+ * '.s'. Errors are reported in the order of the inputs after all files have been compiled, so the output does not
+ * depend on the scheduling of the pool.
+ */
+class BatchCompiler {
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final int PROCEDURE_CACHE_CAPACITY = 10000;
+
+    /**
+     * The outcome of compiling a single file. The message is null if no error occurred.
+     */
+    private static class Outcome {
+        final int errorCode;
+        final String message;
+
+        Outcome(int errorCode, String message) {
+            this.errorCode = errorCode;
+            this.message = message;
+        }
+    }
+
+    private final CommandLineOptions options;
+
+    BatchCompiler(CommandLineOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Compiles all inputs and prints the errors and a summary.
+     *
+     * @return The exit code: the error code of the first input that failed or 0 if all inputs were compiled.
+     */
+    int run() {
+        List<Path> files = new ArrayList<>();
+        for (String input : options.batchInputs) {
+            try {
+                files.addAll(expand(input));
+            } catch (IOException e) {
+                System.err.printf("An error occurred: Cannot read input '%s'\n", input);
+                return 1;
+            }
+        }
+        files = new ArrayList<>(new LinkedHashSet<>(files));
+
+        CompilationCache cache;
+        try {
+            cache = CompilationCache.open(options);
+        } catch (IOException e) {
+            System.err.printf("An error occurred: Cannot open cache directory '%s'\n", options.cacheDirectory);
+            return 1;
+        }
+
+        long start = System.nanoTime();
+        ProcedureCache procedureCache = new ProcedureCache(PROCEDURE_CACHE_CAPACITY);
+        SplCompiler compiler = new SplCompiler(options, cache, procedureCache);
+        ForkJoinPool pool = new ForkJoinPool();
+        List<ForkJoinTask<Outcome>> tasks = files.stream()
+                .map(file -> pool.submit(() -> compileFile(compiler, file)))
+                .collect(Collectors.toList());
+
+        int exitCode = 0;
+        int failures = 0;
+        for (int i = 0; i < files.size(); i++) {
+            Outcome outcome = tasks.get(i).join();
+            if (outcome.message == null) continue;
+            System.err.printf("%s: %s\n", files.get(i), outcome.message);
+            if (exitCode == 0) exitCode = outcome.errorCode;
+            failures++;
+        }
+        pool.shutdown();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Compiled %d files in %.2f s (%.1f files/s), %d failed%s\n",
+                files.size(), seconds, files.size() / Math.max(seconds, 1e-9), failures,
+                cache != null ? ", " + cache.statistics() : "");
+        return exitCode;
+    }
+
+    private static Outcome compileFile(SplCompiler compiler, Path file) {
+        CompilationResult result;
+        try {
+            result = compiler.compile(file);
+        } catch (IOException e) {
+            return new Outcome(1, "Cannot open input file");
+        } catch (RuntimeException e) {
+            return new Outcome(1, e.toString());
+        }
+        if (!result.succeeded()) return new Outcome(result.errorCode(), result.diagnostics.get(0).toString());
+
+        String name = file.getFileName().toString();
+        if (name.endsWith(".spl")) name = name.substring(0, name.length() - ".spl".length());
+        Path output = file.resolveSibling(name + ".s");
+        try {
+            Files.writeString(output, result.assembly);
+        } catch (IOException e) {
+            return new Outcome(1, String.format("Cannot open output file '%s'", output));
+        }
+        return new Outcome(0, null);
+    }
+
+    /**
+     * Determines the files denoted by a single input.
+     *
+     * @param input A directory (all '.spl' files below it), a glob pattern, an SPL file or a manifest file, which
+     *              lists one input relative to its own directory per line. Empty lines and lines starting with '#'
+     *              are ignored in manifests.
+     * @return The files in a deterministic order.
+     */
+    private static List<Path> expand(String input) throws IOException {
+        if (input.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0)) return expandGlob(input);
+
+        Path path = Path.of(input);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.walk(path)) {
+                return files.filter(Files::isRegularFile)
+                        .filter(file -> file.getFileName().toString().endsWith(".spl"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        if (input.endsWith(".spl")) return List.of(path);
+
+        Path directory = path.toAbsolutePath().getParent();
+        List<Path> files = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            files.addAll(expand(directory.resolve(line).toString()));
+        }
+        return files;
+    }
+
+    private static List<Path> expandGlob(String pattern) throws IOException {
+        // Der Teil des Pfads vor dem ersten Sonderzeichen gibt das zu durchsuchende Verzeichnis an
+        int firstGlobCharacter = 0;
+        while (GLOB_CHARACTERS.indexOf(pattern.charAt(firstGlobCharacter)) < 0) firstGlobCharacter++;
+        int separator = pattern.lastIndexOf('/', firstGlobCharacter);
+        Path base = Path.of(separator < 0 ? "." : pattern.substring(0, separator + 1));
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + Path.of(pattern).normalize());
+        try (Stream<Path> files = Files.walk(base)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(file.normalize()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
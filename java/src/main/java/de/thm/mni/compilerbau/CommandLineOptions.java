@@ -1,19 +1,30 @@
 package de.thm.mni.compilerbau;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
 import static java.lang.System.exit;
 
 public class CommandLineOptions {
-    enum PhaseOption {
-        TOKENS, PARSE, ABSYN, TABLES, SEMANT, VARS;
+    public enum PhaseOption {
+        TOKENS, PARSE, ABSYN, TABLES, SEMANT, OPTIMIZE, SSA, VARS;
     }
 
     public PhaseOption phaseOption = null;
     public boolean ershovOptimization = false;
+    public boolean showPeephole = false;
     public boolean doWhileEnabled = true;
-    public String inFilename = "C:\\Users\\Ufuk\\Desktop\\Thm\\5. Semester\\CB\\skeleton\\java\\tests\\runtime_tests\\doWhile.spl";
+    public int optimizationLevel = 1;
+    public String inFilename = "";
     public String outFilename = "";
+    public boolean batch = false;
+    public List<String> batchInputs = new ArrayList<>();
+    public boolean daemon = false;
+    public boolean client = false;
+    public int port = CompileDaemon.DEFAULT_PORT;
+    public String cacheDirectory = "";
+    public long cacheSize = 100L * 1024 * 1024;
 
     private static void usageError(String format, Object... args) {
         System.err.printf("Usage error: " + format, args);
@@ -24,6 +35,9 @@ public class CommandLineOptions {
 
     private static void showUsage(PrintStream out) {
         out.println("Usage: 'java -jar spl.jar' [OPTION] INPUT_FILE [OUTPUT_FILE]");
+        out.println("       'java -jar spl.jar' --batch [OPTION] INPUT...");
+        out.println("       'java -jar spl.jar' --daemon [--port=PORT]");
+        out.println("       'java -jar spl.jar' --client [--port=PORT] [OPTION] INPUT_FILE [OUTPUT_FILE]");
         out.println();
         out.println("Executes all compiler phases up to (and including) the specified one.");
         out.println("If no flag is specified, all phases are run and code is written to the output file.");
@@ -33,9 +47,23 @@ public class CommandLineOptions {
         out.println("  --absyn      Phase 3: Creates an abstract syntax tree from the input tokens and prints it.");
         out.println("  --tables     Phase 4a: Builds a symbol table and prints its entries.");
         out.println("  --semant     Phase 4b: Performs the semantic analysis.");
+        out.println("  --optimize   Phase 4c: Optimizes the procedure bodies, prints the remaining index checks and the optimized abstract syntax tree.");
+        out.println("  --ssa        Phase 4d: Translates the procedure bodies into SSA form (-O2) and prints the control flow graphs.");
         out.println("  --vars       Phase 5: Allocates memory space for variables and prints the amount of allocated memory.");
         out.println("  --ershov     Enable register optimization using the ershov number.");
+        out.println("  --peephole   Print how often each branch and peephole optimization was applied to the generated code.");
         out.println("  --doWhile    Enable the do-while statement.");
+        out.println("  --batch      Compile many programs in parallel. Each INPUT is a directory, a glob pattern, an SPL file or a");
+        out.println("               manifest listing one input per line. The code of 'name.spl' is written to 'name.s'.");
+        out.println("  --daemon     Keep running and compile the programs sent by clients to a port on the loopback interface.");
+        out.println("  --client     Let a running daemon compile the input file instead of compiling it in this process.");
+        out.println("  --port=PORT  The port the daemon listens on (default " + CompileDaemon.DEFAULT_PORT + ").");
+        out.println("  --cache=DIR  Reuse the code generated for identical programs and options, stored in the directory DIR.");
+        out.println("  --cache-size=MB");
+        out.println("               The size limit of the cache in megabytes (default 100). Least recently used code is removed.");
+        out.println("  -O0          Disable all optimizations.");
+        out.println("  -O1          Enable constant folding and keep variables in registers (default).");
+        out.println("  -O2          Additionally translate the procedure bodies into SSA form and generate code from it.");
         out.println("  --help       Show this help.");
     }
 
@@ -46,6 +74,7 @@ public class CommandLineOptions {
 
     static CommandLineOptions parse(String[] args) {
         CommandLineOptions options = new CommandLineOptions();
+        List<String> positionalArguments = new ArrayList<>();
 
         for (String name : args) {
             switch (name) {
@@ -64,34 +93,102 @@ public class CommandLineOptions {
                 case "--semant":
                     options.setPhaseOption(PhaseOption.SEMANT);
                     break;
+                case "--optimize":
+                    options.setPhaseOption(PhaseOption.OPTIMIZE);
+                    break;
+                case "--ssa":
+                    options.setPhaseOption(PhaseOption.SSA);
+                    break;
                 case "--vars":
                     options.setPhaseOption(PhaseOption.VARS);
                     break;
                 case "--ershov":
                     options.ershovOptimization = true;
                     break;
+                case "--peephole":
+                    options.showPeephole = true;
+                    break;
                 case "--doWhile":
                     options.doWhileEnabled = true;
                     break;
+                case "--batch":
+                    options.batch = true;
+                    break;
+                case "--daemon":
+                    options.daemon = true;
+                    break;
+                case "--client":
+                    options.client = true;
+                    break;
+                case "-O0":
+                    options.optimizationLevel = 0;
+                    break;
+                case "-O1":
+                    options.optimizationLevel = 1;
+                    break;
+                case "-O2":
+                    options.optimizationLevel = 2;
+                    break;
                 case "--help":
                     showUsage(System.out);
                     exit(0);
                 default:
                     if (!name.startsWith("--")) {
-                        if (options.inFilename.isEmpty()) options.inFilename = name;
-                        else if (options.outFilename.isEmpty()) options.outFilename = name;
-                        else usageError("Too many positional arguments!");
+                        positionalArguments.add(name);
+                    } else if (name.startsWith("--port=")) {
+                        options.port = parsePort(name.substring("--port=".length()));
+                    } else if (name.startsWith("--cache=")) {
+                        options.cacheDirectory = name.substring("--cache=".length());
+                        if (options.cacheDirectory.isEmpty()) usageError("No cache directory!");
+                    } else if (name.startsWith("--cache-size=")) {
+                        options.cacheSize = parseCacheSize(name.substring("--cache-size=".length()));
                     } else {
                         usageError("Unknown option '%s'!", name);
                     }
             }
         }
 
-        if (options.inFilename.isEmpty()) usageError("No input file!");
+        if ((options.batch ? 1 : 0) + (options.daemon ? 1 : 0) + (options.client ? 1 : 0) > 1) usageError("Only one of --batch, --daemon and --client can be used!");
+        if ((options.batch || options.daemon || options.client) && (options.phaseOption != null || options.showPeephole)) {
+            usageError("Phase options and --peephole cannot be used with --batch, --daemon or --client!");
+        }
+        if (options.daemon) {
+            if (!positionalArguments.isEmpty()) usageError("The daemon does not take any input files!");
+            return options;
+        }
+
+        if (positionalArguments.isEmpty()) usageError("No input file!");
+        if (options.batch) {
+            options.batchInputs.addAll(positionalArguments);
+        } else {
+            if (positionalArguments.size() > 2) usageError("Too many positional arguments!");
+            options.inFilename = positionalArguments.get(0);
+            if (positionalArguments.size() > 1) options.outFilename = positionalArguments.get(1);
+        }
 
         return options;
     }
 
+    private static int parsePort(String port) {
+        try {
+            int number = Integer.parseInt(port);
+            if (number > 0 && number <= 65535) return number;
+        } catch (NumberFormatException ignored) {
+        }
+        usageError("Invalid port '%s'!", port);
+        return 0;
+    }
+
+    private static long parseCacheSize(String megabytes) {
+        try {
+            long number = Long.parseLong(megabytes);
+            if (number > 0 && number <= Long.MAX_VALUE / (1024 * 1024)) return number * 1024 * 1024;
+        } catch (NumberFormatException ignored) {
+        }
+        usageError("Invalid cache size '%s'!", megabytes);
+        return 0;
+    }
+
     PrintWriter getOutputWriter() throws IOException {
         // Unclosable stream to avoid closing stdout when no output file is given.
         // Source: https://stackoverflow.com/a/23791138
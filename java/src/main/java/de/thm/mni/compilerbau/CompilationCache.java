@@ -0,0 +1,235 @@
+package de.thm.mni.compilerbau;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed cache for generated assembly code in a directory on disk.
+ * <p>
+ * The key of an entry is a hash of the source, the options that influence the generated code and the compiler itself,
+ * so an entry never has to be invalidated. Entries are written to a temporary file first and then moved to their
+ * place, so concurrent compilers (threads or processes) never read a partially written entry. The modification time
+ * of an entry is its last use: if the cache grows beyond its size limit, the least recently used entries are removed.
+ * <p>
+ * The cache is only an accelerator. Any error while reading or writing an entry is treated like a miss. If the class
+ * files of the compiler cannot be read to identify it, nothing is cached at all.
+ */
+public class CompilationCache {
+    private static final String ENTRY_SUFFIX = ".s";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * The hash of the running compiler, computed once per JVM. It is null before the first use and empty if the
+     * compiler cannot be identified.
+     */
+    private static Optional<String> compilerVersion = null;
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param directory The directory to store the entries in. It is created if it does not exist.
+     * @param maxSize   The maximum total size of all entries in bytes.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public CompilationCache(Path directory, long maxSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+        this.size.set(entries().stream().mapToLong(CompilationCache::fileSize).sum());
+    }
+
+    /**
+     * Opens the cache selected by --cache and --cache-size.
+     *
+     * @return The cache or null if no cache directory is specified.
+     */
+    static CompilationCache open(CommandLineOptions options) throws IOException {
+        if (options.cacheDirectory.isEmpty()) return null;
+        return new CompilationCache(Path.of(options.cacheDirectory), options.cacheSize);
+    }
+
+    /**
+     * Computes the key of a program.
+     *
+     * @param source  The source text of the program.
+     * @param options The options the program is compiled with.
+     * @return The key as hexadecimal string or empty if the compiler cannot be identified, so the program must not be cached.
+     */
+    public Optional<String> key(String source, CommandLineOptions options) {
+        return compilerVersion().map(version -> {
+            MessageDigest digest = sha256();
+            String header = String.format("%s\0ershov=%b\0doWhile=%b\0level=%d\0",
+                    version, options.ershovOptimization, options.doWhileEnabled, options.optimizationLevel);
+            digest.update(header.getBytes(StandardCharsets.UTF_8));
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            return toHex(digest.digest());
+        });
+    }
+
+    /**
+     * Looks up the assembly code stored for a key and marks the entry as recently used.
+     *
+     * @param key The key of the program.
+     * @return The stored assembly code or empty if the key is not in the cache.
+     */
+    public Optional<String> lookup(String key) {
+        Path entry = directory.resolve(key + ENTRY_SUFFIX);
+        try {
+            String assembly = Files.readString(entry);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return Optional.of(assembly);
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the assembly code for a key and evicts the least recently used entries if the cache is too large.
+     *
+     * @param key      The key of the program.
+     * @param assembly The assembly code generated for the program.
+     */
+    public void store(String key, String assembly) {
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(directory, key, TEMPORARY_SUFFIX);
+            Files.writeString(temporary, assembly);
+            Path entry = directory.resolve(key + ENTRY_SUFFIX);
+            // Ein ersetzter Eintrag gibt seinen Platz frei
+            long replacedSize = fileSize(entry);
+            Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temporary = null;
+            if (size.addAndGet(fileSize(entry) - replacedSize) > maxSize) evict();
+        } catch (IOException | UncheckedIOException e) {
+            // Ohne Eintrag wird das Programm beim nächsten Mal erneut übersetzt
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of lookups that found an entry.
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that did not find an entry.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * @return A summary of the hits and misses of this cache.
+     */
+    public String statistics() {
+        long lookups = hits() + misses();
+        return String.format("cache: %d hits, %d misses (%.1f%% hit rate)", hits(), misses(), lookups == 0 ? 0.0 : 100.0 * hits() / lookups);
+    }
+
+    /**
+     * Removes the least recently used entries until the cache fits its size limit again.
+     * The size is recomputed from the directory, since other processes may share the cache.
+     */
+    private synchronized void evict() throws IOException {
+        List<Path> entries = entries();
+        entries.sort(Comparator.comparing(CompilationCache::lastModified));
+        long total = entries.stream().mapToLong(CompilationCache::fileSize).sum();
+        for (Path entry : entries) {
+            if (total <= maxSize) break;
+            long entrySize = fileSize(entry);
+            Files.deleteIfExists(entry);
+            total -= entrySize;
+        }
+        size.set(total);
+    }
+
+    private List<Path> entries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(ENTRY_SUFFIX)).collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Identifies the running compiler by a hash of its class files, so a rebuilt compiler never uses entries
+     * generated by an older one.
+     */
+    private static synchronized Optional<String> compilerVersion() {
+        if (compilerVersion != null) return compilerVersion;
+        MessageDigest digest = sha256();
+        try {
+            Path location = Path.of(SplCompiler.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(location)) {
+                files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(file));
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            // Ohne Kennung könnten Einträge eines anderen Übersetzers gelesen werden
+            compilerVersion = Optional.empty();
+            return compilerVersion;
+        }
+        compilerVersion = Optional.of(toHex(digest.digest()));
+        return compilerVersion;
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Jede Java-Plattform muss SHA-256 anbieten
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+}
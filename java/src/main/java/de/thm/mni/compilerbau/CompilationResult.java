@@ -0,0 +1,87 @@
+package de.thm.mni.compilerbau;
+
+import de.thm.mni.compilerbau.absyn.Position;
+import de.thm.mni.compilerbau.absyn.Program;
+import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.utils.SplError;
+import java_cup.runtime.Symbol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a single run of the {@link SplCompiler}.
+ * <p>
+ * Every artefact is only present if the phase producing it has been reached, i.e. it was not cut off by the
+ * phase option and no error occurred before. Otherwise the corresponding field is null.
+ */
+public class CompilationResult {
+    /**
+     * A single error reported by the compiler.
+     */
+    public static class Diagnostic {
+        public final int errorCode;
+        public final Position position;
+        public final String message;
+
+        public Diagnostic(int errorCode, Position position, String message) {
+            this.errorCode = errorCode;
+            this.position = position;
+            this.message = message;
+        }
+
+        Diagnostic(SplError error) {
+            this(error.errorCode, error.position, error.getMessage());
+        }
+
+        @Override
+        public String toString() {
+            if (position.line < 0) return message;
+            return String.format("Line %d, Column %d: %s", position.line, position.column, message);
+        }
+    }
+
+    /**
+     * The scanned tokens, only collected for the phase option --tokens since the parser consumes them otherwise.
+     * The list is filled while scanning and thus also holds the tokens in front of a lexical error.
+     */
+    public List<Symbol> tokens = null;
+    public Program program = null;
+    public SymbolTable globalTable = null;
+    /**
+     * The stack layouts of all procedures in declaration order, available after phase 5.
+     */
+    public Map<Identifier, StackLayout> stackLayouts = null;
+    public String assembly = null;
+    /**
+     * The listings requested by the phase options --tables, --optimize, --ssa and --vars or by --peephole, in the
+     * order the phases wrote them. It is empty if no listing was requested.
+     */
+    public String listing = "";
+    /**
+     * Whether the assembly was taken from a {@link CompilationCache}. In this case no other artefacts are present.
+     */
+    public boolean fromCache = false;
+    /**
+     * The procedures whose code was copied from a {@link ProcedureCache} instead of being checked and generated again.
+     */
+    public List<Identifier> reusedProcedures = new ArrayList<>();
+    public final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    /**
+     * @return Whether the compilation finished without errors.
+     */
+    public boolean succeeded() {
+        return diagnostics.isEmpty();
+    }
+
+    /**
+     * @return The exit code the command line compiler terminates with for this result.
+     */
+    public int errorCode() {
+        return succeeded() ? 0 : diagnostics.get(0).errorCode;
+    }
+}
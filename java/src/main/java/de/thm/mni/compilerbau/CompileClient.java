@@ -0,0 +1,68 @@
+package de.thm.mni.compilerbau;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Realizes the --client mode: sends the input file to a running {@link CompileDaemon} and writes its answer like a
+ * compilation in this process would.
+ */
+class CompileClient {
+    private final CommandLineOptions options;
+
+    CompileClient(CommandLineOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * @return The exit code of the compilation.
+     */
+    int run() {
+        byte[] source;
+        try {
+            source = Files.readAllBytes(Path.of(options.inFilename));
+        } catch (IOException e) {
+            System.err.printf("An error occurred: Cannot open input file '%s'\n", options.inFilename);
+            return 1;
+        }
+
+        int exitCode;
+        String text;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), options.port);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            out.writeUTF(CompileDaemon.flags(options));
+            out.writeInt(source.length);
+            out.write(source);
+            out.flush();
+            exitCode = in.readInt();
+            text = new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.printf("An error occurred: Cannot reach the compile daemon on port %d\n", options.port);
+            return 1;
+        }
+
+        if (exitCode != 0) {
+            System.err.println("An error occurred:");
+            System.err.println(text);
+            return exitCode;
+        }
+
+        try (PrintWriter out = options.getOutputWriter()) {
+            out.print(text);
+        } catch (IOException e) {
+            System.err.printf("An error occurred: Cannot open output file '%s'\n", options.outFilename);
+            return 1;
+        }
+        return 0;
+    }
+}
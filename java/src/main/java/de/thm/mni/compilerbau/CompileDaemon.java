@@ -0,0 +1,144 @@
+package de.thm.mni.compilerbau;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Realizes the --daemon mode: a long running compiler that keeps its JIT compiled code and the predefined symbols
+ * between compilations, so a {@link CompileClient} gets its result without paying for the startup of a JVM.
+ * <p>
+ * The daemon only accepts connections from the loopback interface. Each connection carries exactly one request,
+ * which is served on a thread of its own. All values are written with {@link DataOutputStream}:
+ * <ul>
+ *     <li>Request: the flags as UTF string (e.g. "-O2 --ershov"), the length of the source and the source in UTF-8.</li>
+ *     <li>Response: the exit code of the compilation, the length of the text and the text in UTF-8. The text is the
+ *     assembly code if the exit code is 0 and the error message otherwise.</li>
+ * </ul>
+ */
+class CompileDaemon {
+    static final int DEFAULT_PORT = 4711;
+    private static final int MAX_SOURCE_SIZE = 64 * 1024 * 1024;
+    private static final int PROCEDURE_CACHE_CAPACITY = 10000;
+
+    private final CommandLineOptions options;
+
+    CompileDaemon(CommandLineOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Serves requests until the process is terminated.
+     *
+     * @return The exit code if the daemon cannot listen on its port.
+     */
+    int run() {
+        CompilationCache cache;
+        try {
+            cache = CompilationCache.open(options);
+        } catch (IOException e) {
+            System.err.printf("An error occurred: Cannot open cache directory '%s'\n", options.cacheDirectory);
+            return 1;
+        }
+
+        // Eine erneut gesendete, bearbeitete Datei übersetzt bei -O0 nur die geänderten Prozeduren
+        ProcedureCache procedureCache = new ProcedureCache(PROCEDURE_CACHE_CAPACITY);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (ServerSocket server = new ServerSocket(options.port, 50, InetAddress.getLoopbackAddress())) {
+            System.err.printf("Compile daemon listening on %s:%d\n", server.getInetAddress().getHostAddress(), server.getLocalPort());
+            while (true) {
+                Socket socket = server.accept();
+                executor.execute(() -> serve(socket, cache, procedureCache));
+            }
+        } catch (IOException e) {
+            System.err.printf("An error occurred: Cannot listen on port %d\n", options.port);
+            return 1;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void serve(Socket socket, CompilationCache cache, ProcedureCache procedureCache) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            String flags = in.readUTF();
+            int length = in.readInt();
+            if (length < 0 || length > MAX_SOURCE_SIZE) return;
+            String source = new String(in.readNBytes(length), StandardCharsets.UTF_8);
+
+            int exitCode;
+            String text;
+            try {
+                CompilationResult result = new SplCompiler(parseFlags(flags), cache, procedureCache).compile(source);
+                exitCode = result.errorCode();
+                text = result.succeeded() ? result.assembly : result.diagnostics.stream().map(Object::toString).collect(Collectors.joining("\n"));
+            } catch (IllegalArgumentException e) {
+                exitCode = 1;
+                text = e.getMessage();
+            } catch (RuntimeException e) {
+                exitCode = 1;
+                text = "Internal error: " + e;
+            }
+
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(exitCode);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            // Der Client hat die Verbindung abgebrochen, es gibt niemanden, dem der Fehler gemeldet werden kann
+        }
+    }
+
+    /**
+     * @param options The options of the client.
+     * @return The flags of the request, which influence the generated code.
+     */
+    static String flags(CommandLineOptions options) {
+        return "-O" + options.optimizationLevel
+                + (options.ershovOptimization ? " --ershov" : "")
+                + (options.doWhileEnabled ? " --doWhile" : "");
+    }
+
+    /**
+     * Reconstructs the options of the client from the flags of a request.
+     *
+     * @throws IllegalArgumentException If a flag is unknown.
+     */
+    private static CommandLineOptions parseFlags(String flags) {
+        CommandLineOptions options = new CommandLineOptions();
+        for (String flag : flags.trim().split("\\s+")) {
+            switch (flag) {
+                case "":
+                    break;
+                case "--ershov":
+                    options.ershovOptimization = true;
+                    break;
+                case "--doWhile":
+                    options.doWhileEnabled = true;
+                    break;
+                case "-O0":
+                    options.optimizationLevel = 0;
+                    break;
+                case "-O1":
+                    options.optimizationLevel = 1;
+                    break;
+                case "-O2":
+                    options.optimizationLevel = 2;
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown option '%s'!", flag));
+            }
+        }
+        return options;
+    }
+}
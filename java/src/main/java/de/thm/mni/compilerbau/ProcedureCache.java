@@ -0,0 +1,111 @@
+package de.thm.mni.compilerbau;
+
+import de.thm.mni.compilerbau.absyn.CallStatement;
+import de.thm.mni.compilerbau.absyn.ParameterDeclaration;
+import de.thm.mni.compilerbau.absyn.ProcedureDeclaration;
+import de.thm.mni.compilerbau.absyn.VariableDeclaration;
+import de.thm.mni.compilerbau.phases._04c_optimize.AstTraverser;
+import de.thm.mni.compilerbau.phases._06_codegen.ProcedureFragment;
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.SymbolTable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An in-memory cache for the code of single procedures, which makes the recompilation of an edited program
+ * incremental: only the procedures that changed are checked and generated again.
+ * <p>
+ * The fingerprint of a procedure covers its declaration without source positions, the types of its parameters and
+ * variables (and thereby the named types it uses), the signatures of all procedures it calls and the options that
+ * influence the generated code. A procedure with a cached fingerprint has already been checked and generated
+ * successfully under exactly these conditions, so its code and stack layout can be copied from the cache.
+ * <p>
+ * This only holds at -O0. At higher levels the optimizer inlines, specializes and analyses procedures across their
+ * boundaries, so the code of a procedure also depends on the bodies of other procedures.
+ */
+public class ProcedureCache {
+    private final Map<String, ProcedureFragment> fragments;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param capacity The maximum number of fragments. The least recently used fragments are dropped first.
+     */
+    public ProcedureCache(int capacity) {
+        this.fragments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ProcedureFragment> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return Whether the cache can be used for a compilation with the given options.
+     */
+    static boolean appliesTo(CommandLineOptions options) {
+        return options.optimizationLevel == 0 && options.phaseOption == null && !options.showPeephole;
+    }
+
+    /**
+     * Computes the fingerprint of a procedure. The symbol table has to be built already.
+     *
+     * @param procedure   The declaration of the procedure.
+     * @param globalTable The global symbol table of the program.
+     * @param options     The options the program is compiled with.
+     * @return The fingerprint as hexadecimal string.
+     */
+    String fingerprint(ProcedureDeclaration procedure, SymbolTable globalTable, CommandLineOptions options) {
+        StringBuilder text = new StringBuilder();
+        text.append("ershov=").append(options.ershovOptimization).append('\n');
+        text.append(procedure).append('\n');
+        for (ParameterDeclaration parameter : procedure.parameters) {
+            text.append(parameter.name).append(": ").append(parameter.typeExpression.dataType).append('\n');
+        }
+        for (VariableDeclaration variable : procedure.variables) {
+            text.append(variable.name).append(": ").append(variable.typeExpression.dataType).append('\n');
+        }
+
+        Set<String> callees = new TreeSet<>();
+        procedure.accept(new AstTraverser() {
+            @Override
+            public void visit(CallStatement callStatement) {
+                callees.add(callStatement.procedureName.toString());
+                super.visit(callStatement);
+            }
+        });
+        for (String callee : callees) {
+            text.append(callee).append(" -> ").append(globalTable.lookup(new Identifier(callee))).append('\n');
+        }
+
+        MessageDigest digest = CompilationCache.sha256();
+        return CompilationCache.toHex(digest.digest(text.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @param fingerprint The fingerprint of a procedure.
+     * @return The fragment stored for the fingerprint or null.
+     */
+    synchronized ProcedureFragment lookup(String fingerprint) {
+        ProcedureFragment fragment = fragments.get(fingerprint);
+        if (fragment != null) hits++;
+        else misses++;
+        return fragment;
+    }
+
+    synchronized void store(String fingerprint, ProcedureFragment fragment) {
+        fragments.put(fingerprint, fragment);
+    }
+
+    /**
+     * @return A summary of the reused and generated procedures.
+     */
+    public synchronized String statistics() {
+        return String.format("procedures: %d reused, %d generated", hits, misses);
+    }
+}
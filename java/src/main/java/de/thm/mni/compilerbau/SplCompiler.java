@@ -0,0 +1,237 @@
+package de.thm.mni.compilerbau;
+
+import de.thm.mni.compilerbau.absyn.GlobalDeclaration;
+import de.thm.mni.compilerbau.absyn.ProcedureDeclaration;
+import de.thm.mni.compilerbau.absyn.Program;
+import de.thm.mni.compilerbau.phases._01_scanner.Scanner;
+import de.thm.mni.compilerbau.phases._02_03_parser.Parser;
+import de.thm.mni.compilerbau.phases._02_03_parser.Sym;
+import de.thm.mni.compilerbau.phases._04a_tablebuild.TableBuilder;
+import de.thm.mni.compilerbau.phases._04b_semant.ProcedureBodyChecker;
+import de.thm.mni.compilerbau.phases._04c_optimize.Optimizer;
+import de.thm.mni.compilerbau.phases._04d_ssa.SsaTranslator;
+import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
+import de.thm.mni.compilerbau.phases._05_varalloc.VarAllocator;
+import de.thm.mni.compilerbau.phases._06_codegen.CodeGenerator;
+import de.thm.mni.compilerbau.phases._06_codegen.ProcedureFragment;
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.utils.SplError;
+import java_cup.runtime.DefaultSymbolFactory;
+import java_cup.runtime.Symbol;
+import java_cup.runtime.SymbolFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-process entry point of the compiler.
+ * <p>
+ * Runs all phases up to the phase option of the given {@link CommandLineOptions} and returns the artefacts and errors
+ * as a {@link CompilationResult} instead of printing them and terminating the JVM. The listings requested by a phase
+ * option or --peephole are collected in the result as well. Every call works on its own scanner, parser and symbol
+ * table, so a single instance can be used by several threads at once.
+ */
+public class SplCompiler {
+
+    /**
+     * CUP encourages you to use {@link java_cup.runtime.ComplexSymbolFactory} as a {@link SymbolFactory} which we
+     * don't need. The default implementation provides more than enough information for our needs.
+     */
+    @SuppressWarnings("deprecation")
+    private static final SymbolFactory symbolFactory = new DefaultSymbolFactory();
+
+    private final CommandLineOptions options;
+    private final CompilationCache cache;
+    private final ProcedureCache procedureCache;
+
+    /**
+     * @param options The feature flags, optimization level and phase option to compile with. The file names are ignored.
+     */
+    public SplCompiler(CommandLineOptions options) {
+        this(options, null);
+    }
+
+    /**
+     * @param options The feature flags, optimization level and phase option to compile with. The file names are ignored.
+     * @param cache   The cache for the generated code or null. It is only used if all phases are run.
+     */
+    public SplCompiler(CommandLineOptions options, CompilationCache cache) {
+        this(options, cache, null);
+    }
+
+    /**
+     * @param options        The feature flags, optimization level and phase option to compile with. The file names are ignored.
+     * @param cache          The cache for the generated code or null. It is only used if all phases are run.
+     * @param procedureCache The cache for the code of single procedures or null. It is only used at -O0 if all phases are run.
+     */
+    public SplCompiler(CommandLineOptions options, CompilationCache cache, ProcedureCache procedureCache) {
+        this.options = options;
+        this.cache = cache;
+        this.procedureCache = procedureCache;
+    }
+
+    /**
+     * Compiles the SPL program in the given file.
+     *
+     * @param path The file to read the program from, encoded in UTF-8.
+     * @return The result of the compilation.
+     * @throws IOException If the file cannot be read.
+     */
+    public CompilationResult compile(Path path) throws IOException {
+        return compile(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compiles the given SPL program.
+     *
+     * @param source The source text of the program.
+     * @return The result of the compilation. Errors of the program are reported as diagnostics.
+     */
+    public CompilationResult compile(String source) {
+        CompilationResult result = new CompilationResult();
+        boolean cacheable = cache != null && options.phaseOption == null && !options.showPeephole;
+        Optional<String> key = Optional.empty();
+        if (cacheable) {
+            key = cache.key(source, options);
+            Optional<String> assembly = key.flatMap(cache::lookup);
+            if (assembly.isPresent()) {
+                result.assembly = assembly.get();
+                result.fromCache = true;
+                return result;
+            }
+        }
+
+        StringWriter listing = new StringWriter();
+        PrintWriter listingWriter = new PrintWriter(listing);
+        try {
+            runPhases(source, result, listingWriter);
+        } catch (SplError error) {
+            result.diagnostics.add(new CompilationResult.Diagnostic(error));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // Parser.parse() declares a checked exception, but reports all syntax errors as SplError.
+            throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            // Auch die Ausgaben der Phasen vor einem Fehler gehören zum Ergebnis
+            listingWriter.flush();
+            result.listing = listing.toString();
+        }
+        if (result.succeeded()) key.ifPresent(k -> cache.store(k, result.assembly));
+        return result;
+    }
+
+    private boolean phase(CommandLineOptions.PhaseOption phaseOption) {
+        return options.phaseOption == phaseOption;
+    }
+
+    /**
+     * @return The writer for the listing of the phase if it is selected by the phase option, null otherwise.
+     */
+    private PrintWriter listingOf(CommandLineOptions.PhaseOption phaseOption, PrintWriter listing) {
+        return phase(phaseOption) ? listing : null;
+    }
+
+    private void runPhases(String source, CompilationResult result, PrintWriter listing) throws Exception {
+        Scanner scanner = new Scanner(new StringReader(source));
+        scanner.options = options; // Inject the command line options into the scanner to grant it access to feature flags.
+
+        if (phase(CommandLineOptions.PhaseOption.TOKENS)) {
+            result.tokens = new ArrayList<>();
+            Symbol token;
+            do {
+                token = scanner.next_token();
+                result.tokens.add(token);
+            } while (token.sym != Sym.EOF);
+            return;
+        }
+
+        //Parse errors are reported as SplError
+        Parser parser = new Parser(scanner, symbolFactory);
+        parser.options = options; // Inject the command line options into the parser to grant it access to feature flags.
+        Program program = (Program) parser.parse().value;
+        result.program = program;
+        if (phase(CommandLineOptions.PhaseOption.PARSE) || phase(CommandLineOptions.PhaseOption.ABSYN)) return;
+
+        SymbolTable table = new TableBuilder(listingOf(CommandLineOptions.PhaseOption.TABLES, listing)).buildSymbolTable(program);
+        result.globalTable = table;
+        if (phase(CommandLineOptions.PhaseOption.TABLES)) return;
+
+        // Unveränderte Prozeduren werden weder geprüft noch neu übersetzt
+        boolean incremental = procedureCache != null && ProcedureCache.appliesTo(options);
+        Map<Identifier, String> fingerprints = new HashMap<>();
+        Map<Identifier, ProcedureFragment> reusedFragments = new HashMap<>();
+        if (incremental) {
+            for (ProcedureDeclaration procedure : procedures(program)) {
+                String fingerprint = procedureCache.fingerprint(procedure, table, options);
+                fingerprints.put(procedure.name, fingerprint);
+                ProcedureFragment fragment = procedureCache.lookup(fingerprint);
+                if (fragment != null) reusedFragments.put(procedure.name, fragment);
+            }
+        }
+
+        List<GlobalDeclaration> changedDeclarations = new ArrayList<>(program.declarations);
+        changedDeclarations.removeIf(declaration -> reusedFragments.containsKey(declaration.name));
+        new ProcedureBodyChecker().checkProcedures(new Program(program.position, changedDeclarations), table);
+        if (phase(CommandLineOptions.PhaseOption.SEMANT)) return;
+
+        new Optimizer(options.optimizationLevel, listingOf(CommandLineOptions.PhaseOption.OPTIMIZE, listing)).optimize(program, table);
+        if (phase(CommandLineOptions.PhaseOption.OPTIMIZE)) return;
+
+        new SsaTranslator(options.optimizationLevel, listingOf(CommandLineOptions.PhaseOption.SSA, listing)).translate(program, table);
+        if (phase(CommandLineOptions.PhaseOption.SSA)) return;
+
+        new VarAllocator(listingOf(CommandLineOptions.PhaseOption.VARS, listing), options.ershovOptimization, options.optimizationLevel == 1).allocVars(program, table);
+        result.stackLayouts = stackLayouts(program, table);
+        if (phase(CommandLineOptions.PhaseOption.VARS)) return;
+
+        StringWriter assembly = new StringWriter();
+        CodeGenerator codeGenerator;
+        try (PrintWriter out = new PrintWriter(assembly)) {
+            codeGenerator = new CodeGenerator(out, options.ershovOptimization, options.optimizationLevel, options.showPeephole ? listing : null);
+            codeGenerator.reuseFragments(reusedFragments);
+            codeGenerator.generateCode(program, table);
+        }
+        result.assembly = assembly.toString();
+
+        if (incremental) {
+            codeGenerator.fragments().forEach((name, fragment) -> {
+                if (reusedFragments.containsKey(name)) result.reusedProcedures.add(name);
+                else procedureCache.store(fingerprints.get(name), fragment);
+            });
+        }
+    }
+
+    /**
+     * Collects the stack layouts of all procedures declared in the program.
+     * The map shares the layouts with the symbol table, so it also reflects the sizes set during code generation.
+     */
+    private static Map<Identifier, StackLayout> stackLayouts(Program program, SymbolTable table) {
+        Map<Identifier, StackLayout> stackLayouts = new LinkedHashMap<>();
+        for (ProcedureDeclaration procedure : procedures(program)) {
+            stackLayouts.put(procedure.name, ((ProcedureEntry) table.lookup(procedure.name)).stackLayout);
+        }
+        return stackLayouts;
+    }
+
+    private static List<ProcedureDeclaration> procedures(Program program) {
+        List<ProcedureDeclaration> procedures = new ArrayList<>();
+        for (GlobalDeclaration declaration : program.declarations) {
+            if (declaration instanceof ProcedureDeclaration) procedures.add((ProcedureDeclaration) declaration);
+        }
+        return procedures;
+    }
+}
@@ -0,0 +1,35 @@
+package de.thm.mni.compilerbau.absyn;
+
+import de.thm.mni.compilerbau.absyn.visitor.Visitor;
+
+/**
+ * This class represents the address of a variable used as an {@link Expression}.
+ * <p>
+ * SPL has no syntax for addresses, so this node is only created by optimizations in phase 4c, e.g. to compute the
+ * address a {@link BindStatement} binds a reference to. For a reference variable, the address is the one the
+ * reference holds. The semantic type of an {@link AddressExpression} is int.
+ */
+public class AddressExpression extends Expression {
+    public final Variable variable;
+
+    /**
+     * Creates a new node representing the address of a variable.
+     *
+     * @param position The position of the variable in the source code.
+     * @param variable The variable whose address is used as a value for this expression.
+     */
+    public AddressExpression(Position position, Variable variable) {
+        super(position);
+        this.variable = variable;
+    }
+
+    @Override
+    public void accept(Visitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public String toString() {
+        return formatAst("AddressExpression", variable);
+    }
+}
@@ -11,6 +11,7 @@ import de.thm.mni.compilerbau.absyn.visitor.Visitor;
 public class ArrayAccess extends Variable {
     public final Variable array;
     public final Expression index;
+    public boolean indexCheckNeeded = true; // This value is cleared in phase 4c if the index is always in bounds
 
     /**
      * Creates a new node representing an array access.
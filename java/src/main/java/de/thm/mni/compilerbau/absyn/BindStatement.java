@@ -0,0 +1,38 @@
+package de.thm.mni.compilerbau.absyn;
+
+import de.thm.mni.compilerbau.absyn.visitor.Visitor;
+
+/**
+ * This class represents the binding of a reference variable to an address.
+ * <p>
+ * After the binding, every use of the reference accesses the memory at the given address. Like the
+ * {@link AddressExpression}, this node is only created by optimizations in phase 4c, which introduce local reference
+ * variables holding addresses they compute.
+ */
+public class BindStatement extends Statement {
+    public final NamedVariable reference;
+    public final Expression address;
+
+    /**
+     * Creates a new node representing the binding of a reference.
+     *
+     * @param position  The position of the statement in the source code.
+     * @param reference The reference variable that is bound.
+     * @param address   The address the reference is bound to.
+     */
+    public BindStatement(Position position, NamedVariable reference, Expression address) {
+        super(position);
+        this.reference = reference;
+        this.address = address;
+    }
+
+    @Override
+    public void accept(Visitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    public String toString() {
+        return formatAst("BindStatement", reference, address);
+    }
+}
@@ -86,4 +86,12 @@ public class DoNothingVisitor implements Visitor {
     @Override
     public void visit(DoWhileStatement doWhileStatement) {
     }
+
+    @Override
+    public void visit(AddressExpression addressExpression) {
+    }
+
+    @Override
+    public void visit(BindStatement bindStatement) {
+    }
 }
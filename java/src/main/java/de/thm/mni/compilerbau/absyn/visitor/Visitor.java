@@ -45,4 +45,8 @@ public interface Visitor {
     void visit(WhileStatement whileStatement);
 
     void visit(DoWhileStatement doWhileStatement);
+
+    void visit(AddressExpression addressExpression);
+
+    void visit(BindStatement bindStatement);
 }
@@ -8,6 +8,7 @@ import de.thm.mni.compilerbau.types.Type;
 import de.thm.mni.compilerbau.utils.NotImplemented;
 import de.thm.mni.compilerbau.utils.SplError;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,12 +22,15 @@ import java.util.stream.Collectors;
  * {@link TypeExpression} or {@link Variable} classes.
  */
 public class TableBuilder {
-    private final boolean showTables;
+    private final PrintWriter listing;
     private SymbolTable globalTable;
     private SymbolTable localTable;
 
-    public TableBuilder(boolean showTables) {
-        this.showTables = showTables;
+    /**
+     * @param listing The writer to print the local symbol tables to (--tables) or null
+     */
+    public TableBuilder(PrintWriter listing) {
+        this.listing = listing;
     }
 
     public class MyVisitor extends DoNothingVisitor {
@@ -71,7 +75,7 @@ public class TableBuilder {
                 pE.parameterTypes.add(new ParameterType(p.typeExpression.dataType, p.isReference));
             });
             prd.variables.forEach(v -> v.accept(this));
-            printSymbolTableAtEndOfProcedure(prd.name, pE);
+            if (listing != null) printSymbolTableAtEndOfProcedure(prd.name, pE);
             globalTable.enter(prd.name, pE, SplError.RedeclarationAsProcedure(prd.position, prd.name));
         }
 
@@ -118,8 +122,8 @@ public class TableBuilder {
      * @param name  The name of the procedure
      * @param entry The entry of the procedure to print
      */
-    private static void printSymbolTableAtEndOfProcedure(Identifier name, ProcedureEntry entry) {
-        System.out.format("Symbol table at end of procedure '%s':\n", name);
-        System.out.println(entry.localTable.toString());
+    private void printSymbolTableAtEndOfProcedure(Identifier name, ProcedureEntry entry) {
+        listing.format("Symbol table at end of procedure '%s':\n", name);
+        listing.println(entry.localTable.toString());
     }
 }
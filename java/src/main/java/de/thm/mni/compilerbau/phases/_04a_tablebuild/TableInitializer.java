@@ -7,15 +7,25 @@ import de.thm.mni.compilerbau.types.PrimitiveType;
 import java.util.List;
 
 final class TableInitializer {
+    /**
+     * The predefined types and procedures, built only once per JVM. Their entries are never modified by the later
+     * phases, so all compilations can share them.
+     */
+    private static final SymbolTable predefinedTable = createPredefinedTable();
+
     private TableInitializer() {
     }
 
     /**
-     * Creates a new SymbolTable and enters entries for all predefined types and procedures.
+     * Creates a new SymbolTable containing the entries for all predefined types and procedures.
      *
      * @return A new instance of the symbol table representing the global definition scope.
      */
     static SymbolTable initializeGlobalTable() {
+        return predefinedTable.copy();
+    }
+
+    private static SymbolTable createPredefinedTable() {
         SymbolTable table = new SymbolTable();
         enterPredefinedTypes(table);
         enterPredefinedProcedures(table);
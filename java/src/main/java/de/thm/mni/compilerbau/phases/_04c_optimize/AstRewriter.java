@@ -0,0 +1,241 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * This class is the superclass of all optimizations that transform the abstract syntax tree of a procedure body.
+ * <p>
+ * Since the fields of the nodes are final, a node is rewritten by building a new node from its rewritten children.
+ * Every visit-method has to store the node replacing the visited one in {@link #result}. The implementations of this
+ * class rewrite all children and keep a node unchanged if none of its children changed.
+ * Only the statement list of the procedure body itself is rewritten in place.
+ */
+abstract class AstRewriter extends DoNothingVisitor {
+    protected Node result;
+
+    Expression rewrite(Expression expression) {
+        expression.accept(this);
+        return (Expression) result;
+    }
+
+    Variable rewrite(Variable variable) {
+        variable.accept(this);
+        return (Variable) result;
+    }
+
+    Statement rewrite(Statement statement) {
+        statement.accept(this);
+        return (Statement) result;
+    }
+
+    /**
+     * Rewrites all statements in the body of a procedure.
+     *
+     * @param procedureDeclaration The procedure to rewrite.
+     */
+    void rewrite(ProcedureDeclaration procedureDeclaration) {
+        procedureDeclaration.body.replaceAll(this::rewrite);
+    }
+
+    @Override
+    public void visit(IntLiteral intLiteral) {
+        result = intLiteral;
+    }
+
+    @Override
+    public void visit(NamedVariable namedVariable) {
+        result = namedVariable;
+    }
+
+    @Override
+    public void visit(ArrayAccess arrayAccess) {
+        Variable array = rewrite(arrayAccess.array);
+        Expression index = rewrite(arrayAccess.index);
+        if (array == arrayAccess.array && index == arrayAccess.index) {
+            result = arrayAccess;
+        } else {
+            ArrayAccess rewritten = new ArrayAccess(arrayAccess.position, array, index);
+            rewritten.dataType = arrayAccess.dataType;
+            rewritten.indexCheckNeeded = arrayAccess.indexCheckNeeded;
+            result = rewritten;
+        }
+    }
+
+    @Override
+    public void visit(VariableExpression variableExpression) {
+        Variable variable = rewrite(variableExpression.variable);
+        if (variable == variableExpression.variable) {
+            result = variableExpression;
+        } else {
+            VariableExpression rewritten = new VariableExpression(variableExpression.position, variable);
+            rewritten.dataType = variableExpression.dataType;
+            result = rewritten;
+        }
+    }
+
+    @Override
+    public void visit(BinaryExpression binaryExpression) {
+        Expression leftOperand = rewrite(binaryExpression.leftOperand);
+        Expression rightOperand = rewrite(binaryExpression.rightOperand);
+        if (leftOperand == binaryExpression.leftOperand && rightOperand == binaryExpression.rightOperand) {
+            result = binaryExpression;
+        } else {
+            result = binaryExpression(binaryExpression, binaryExpression.operator, leftOperand, rightOperand);
+        }
+    }
+
+    @Override
+    public void visit(AssignStatement assignStatement) {
+        Variable target = rewrite(assignStatement.target);
+        Expression value = rewrite(assignStatement.value);
+        if (target == assignStatement.target && value == assignStatement.value) {
+            result = assignStatement;
+        } else {
+            result = new AssignStatement(assignStatement.position, target, value);
+        }
+    }
+
+    @Override
+    public void visit(CallStatement callStatement) {
+        List<Expression> arguments = rewriteAll(callStatement.arguments, this::rewrite);
+        if (arguments == callStatement.arguments) {
+            result = callStatement;
+        } else {
+            result = new CallStatement(callStatement.position, callStatement.procedureName, arguments);
+        }
+    }
+
+    @Override
+    public void visit(CompoundStatement compoundStatement) {
+        List<Statement> statements = rewriteAll(compoundStatement.statements, this::rewrite);
+        if (statements == compoundStatement.statements) {
+            result = compoundStatement;
+        } else {
+            result = new CompoundStatement(compoundStatement.position, statements);
+        }
+    }
+
+    @Override
+    public void visit(EmptyStatement emptyStatement) {
+        result = emptyStatement;
+    }
+
+    @Override
+    public void visit(IfStatement ifStatement) {
+        Expression condition = rewrite(ifStatement.condition);
+        Statement thenPart = rewrite(ifStatement.thenPart);
+        Statement elsePart = rewrite(ifStatement.elsePart);
+        if (condition == ifStatement.condition && thenPart == ifStatement.thenPart && elsePart == ifStatement.elsePart) {
+            result = ifStatement;
+        } else {
+            result = new IfStatement(ifStatement.position, condition, thenPart, elsePart);
+        }
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+        Expression condition = rewrite(whileStatement.condition);
+        Statement body = rewrite(whileStatement.body);
+        if (condition == whileStatement.condition && body == whileStatement.body) {
+            result = whileStatement;
+        } else {
+            result = new WhileStatement(whileStatement.position, condition, body);
+        }
+    }
+
+    @Override
+    public void visit(DoWhileStatement doWhileStatement) {
+        Statement body = rewrite(doWhileStatement.body);
+        Expression condition = rewrite(doWhileStatement.condition);
+        if (condition == doWhileStatement.condition && body == doWhileStatement.body) {
+            result = doWhileStatement;
+        } else {
+            result = new DoWhileStatement(doWhileStatement.position, condition, body);
+        }
+    }
+
+    @Override
+    public void visit(AddressExpression addressExpression) {
+        Variable variable = rewrite(addressExpression.variable);
+        if (variable == addressExpression.variable) {
+            result = addressExpression;
+        } else {
+            result = addressExpression(addressExpression, variable);
+        }
+    }
+
+    @Override
+    public void visit(BindStatement bindStatement) {
+        Expression address = rewrite(bindStatement.address);
+        if (address == bindStatement.address) {
+            result = bindStatement;
+        } else {
+            result = new BindStatement(bindStatement.position, bindStatement.reference, address);
+        }
+    }
+
+    /**
+     * Rewrites all elements of a list.
+     *
+     * @param list    The list to rewrite. It is never modified, since lists built by the parser may be immutable.
+     * @param rewrite The function rewriting a single element.
+     * @return The list itself if no element changed, a new list of the rewritten elements otherwise.
+     */
+    static <E> List<E> rewriteAll(List<E> list, UnaryOperator<E> rewrite) {
+        List<E> rewritten = new ArrayList<>(list.size());
+        boolean changed = false;
+        for (E element : list) {
+            E newElement = rewrite.apply(element);
+            changed |= newElement != element;
+            rewritten.add(newElement);
+        }
+        return changed ? rewritten : list;
+    }
+
+    /**
+     * Creates a new binary expression with the position and type of an existing one.
+     *
+     * @param original     The expression that is replaced by the new one.
+     * @param operator     The operator of the new expression.
+     * @param leftOperand  The left operand of the new expression.
+     * @param rightOperand The right operand of the new expression.
+     * @return The new expression.
+     */
+    static BinaryExpression binaryExpression(Expression original, BinaryExpression.Operator operator, Expression leftOperand, Expression rightOperand) {
+        BinaryExpression expression = new BinaryExpression(original.position, operator, leftOperand, rightOperand);
+        expression.dataType = original.dataType;
+        return expression;
+    }
+
+    /**
+     * Creates a new address expression with the position of an existing node.
+     *
+     * @param original The node that is replaced by the new expression.
+     * @param variable The variable whose address is computed.
+     * @return The new expression.
+     */
+    static AddressExpression addressExpression(Node original, Variable variable) {
+        AddressExpression expression = new AddressExpression(original.position, variable);
+        expression.dataType = PrimitiveType.intType;
+        return expression;
+    }
+
+    /**
+     * Creates a new integer literal with the position of an existing expression.
+     *
+     * @param original The expression that is replaced by the literal.
+     * @param value    The value of the literal.
+     * @return The new literal.
+     */
+    static IntLiteral intLiteral(Node original, int value) {
+        IntLiteral literal = new IntLiteral(original.position, value);
+        literal.dataType = PrimitiveType.intType;
+        return literal;
+    }
+}
@@ -0,0 +1,78 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+
+/**
+ * This visitor visits all statements, variables and expressions of a procedure body in the order they are executed.
+ * Analyses of procedure bodies extend it and override the visit-methods of the nodes they are interested in.
+ */
+public class AstTraverser extends DoNothingVisitor {
+    @Override
+    public void visit(ProcedureDeclaration procedureDeclaration) {
+        procedureDeclaration.body.forEach(s -> s.accept(this));
+    }
+
+    @Override
+    public void visit(ArrayAccess arrayAccess) {
+        arrayAccess.array.accept(this);
+        arrayAccess.index.accept(this);
+    }
+
+    @Override
+    public void visit(VariableExpression variableExpression) {
+        variableExpression.variable.accept(this);
+    }
+
+    @Override
+    public void visit(BinaryExpression binaryExpression) {
+        binaryExpression.leftOperand.accept(this);
+        binaryExpression.rightOperand.accept(this);
+    }
+
+    @Override
+    public void visit(AssignStatement assignStatement) {
+        assignStatement.target.accept(this);
+        assignStatement.value.accept(this);
+    }
+
+    @Override
+    public void visit(CallStatement callStatement) {
+        callStatement.arguments.forEach(a -> a.accept(this));
+    }
+
+    @Override
+    public void visit(CompoundStatement compoundStatement) {
+        compoundStatement.statements.forEach(s -> s.accept(this));
+    }
+
+    @Override
+    public void visit(IfStatement ifStatement) {
+        ifStatement.condition.accept(this);
+        ifStatement.thenPart.accept(this);
+        ifStatement.elsePart.accept(this);
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+        whileStatement.condition.accept(this);
+        whileStatement.body.accept(this);
+    }
+
+    @Override
+    public void visit(DoWhileStatement doWhileStatement) {
+        doWhileStatement.body.accept(this);
+        doWhileStatement.condition.accept(this);
+    }
+
+    @Override
+    public void visit(AddressExpression addressExpression) {
+        addressExpression.variable.accept(this);
+    }
+
+    @Override
+    public void visit(BindStatement bindStatement) {
+        bindStatement.reference.accept(this);
+        bindStatement.address.accept(this);
+    }
+}
@@ -0,0 +1,456 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.table.VariableEntry;
+import de.thm.mni.compilerbau.types.ArrayType;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.*;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * This class removes index checks of array accesses whose index is always within the bounds of the array.
+ * <p>
+ * The value ranges of integer variables are computed by abstract interpretation of the procedure body. Assignments
+ * set the range of a variable to the range of the assigned expression, conditions of if, while and do-while
+ * statements narrow the ranges in the branches they guard. For loops, the ranges at the loop head are widened
+ * until they are stable. A final iteration starting with the ranges reached after one more iteration narrows them
+ * again, so e.g. a counter starting at 0 and only incremented in a loop guarded by i &lt; 32 is in [0, 31] in the
+ * body and in [32, 32] after the loop.
+ * <p>
+ * Only local variables and value parameters that are never passed as reference argument are tracked, since they
+ * cannot change without an assignment in the procedure itself. All other values may be anything.
+ * Arithmetic that may overflow results in the full integer range, because the ECO32 wraps around.
+ * <p>
+ * An index check is removed if its access is reachable and its index range lies within [0, size - 1] every time the
+ * access is analyzed with the final ranges.
+ */
+class BoundsCheckEliminator {
+    /**
+     * An index check that could not be removed.
+     */
+    static class KeptCheck {
+        final ArrayAccess arrayAccess;
+        final Range indexRange;
+
+        KeptCheck(ArrayAccess arrayAccess, Range indexRange) {
+            this.arrayAccess = arrayAccess;
+            this.indexRange = indexRange;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Line %d, Column %d: index in %s, array size %d",
+                    arrayAccess.position.line, arrayAccess.position.column, indexRange,
+                    ((ArrayType) arrayAccess.array.dataType).arraySize);
+        }
+    }
+
+    /**
+     * A range of integer values [low, high]. Bounds are stored as long, so arithmetic on them cannot overflow.
+     */
+    static class Range {
+        static final Range FULL = new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        static final long WIDENING_LIMIT = Integer.MAX_VALUE / 2;
+
+        final long low;
+        final long high;
+
+        private Range(long low, long high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        /**
+         * @return The range [low, high], or the full integer range if a bound is not a 32 bit integer, since the
+         * computation producing the range wraps around in this case.
+         */
+        static Range of(long low, long high) {
+            if (low < Integer.MIN_VALUE || high > Integer.MAX_VALUE) return FULL;
+            return new Range(low, high);
+        }
+
+        Range join(Range other) {
+            return new Range(Math.min(low, other.low), Math.max(high, other.high));
+        }
+
+        /**
+         * Widens a decreasing lower bound to 0 first, since most loops counting down stop there. An increasing upper
+         * bound is widened to {@link #WIDENING_LIMIT} first, so incrementing a counter in the body of a do-while loop
+         * does not overflow before the condition limits it.
+         */
+        Range widen(Range next) {
+            long widenedLow = next.low >= low ? low : next.low >= 0 ? 0 : Integer.MIN_VALUE;
+            long widenedHigh = next.high <= high ? high : next.high <= WIDENING_LIMIT ? WIDENING_LIMIT : Integer.MAX_VALUE;
+            return new Range(widenedLow, widenedHigh);
+        }
+
+        Range intersect(long low, long high) {
+            return new Range(Math.max(this.low, low), Math.min(this.high, high));
+        }
+
+        boolean isEmpty() {
+            return low > high;
+        }
+
+        boolean isConstant() {
+            return low == high;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Range)) return false;
+            Range range = (Range) o;
+            return low == range.low && high == range.high;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(low, high);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%d, %d]", low, high);
+        }
+    }
+
+    private final SymbolTable globalTable;
+    private final SymbolTable localTable;
+    private final Set<VariableEntry> tracked = new HashSet<>();
+    /**
+     * The index range of every analyzed array access, from its last analysis.
+     */
+    private final Map<ArrayAccess, Range> indexRanges = new LinkedHashMap<>();
+    private final List<ArrayAccess> accesses = new ArrayList<>();
+    /**
+     * The ranges of the tracked variables in front of every reachable loop, from its last analysis.
+     */
+    private final Map<Statement, Map<VariableEntry, Range>> loopEntryRanges = new IdentityHashMap<>();
+
+    BoundsCheckEliminator(SymbolTable globalTable, SymbolTable localTable) {
+        this.globalTable = globalTable;
+        this.localTable = localTable;
+    }
+
+    class MyVisitor extends DoNothingVisitor {
+        /**
+         * The ranges of all tracked variables before the visited statement, null if the statement is unreachable.
+         */
+        private Map<VariableEntry, Range> state;
+        /**
+         * The range of the last visited expression.
+         */
+        private Range range;
+
+        private Range range(Expression expression) {
+            expression.accept(this);
+            return range;
+        }
+
+        private VariableEntry trackedVariable(Node node) {
+            if (node instanceof VariableExpression) node = ((VariableExpression) node).variable;
+            if (!(node instanceof NamedVariable)) return null;
+            VariableEntry entry = (VariableEntry) localTable.lookup(((NamedVariable) node).name);
+            return tracked.contains(entry) ? entry : null;
+        }
+
+        @Override
+        public void visit(IntLiteral intLiteral) {
+            range = Range.of(intLiteral.value, intLiteral.value);
+        }
+
+        @Override
+        public void visit(VariableExpression variableExpression) {
+            variableExpression.variable.accept(this);
+            VariableEntry entry = trackedVariable(variableExpression);
+            range = entry == null ? Range.FULL : state.get(entry);
+        }
+
+        @Override
+        public void visit(NamedVariable namedVariable) {
+            range = Range.FULL;
+        }
+
+        @Override
+        public void visit(ArrayAccess arrayAccess) {
+            arrayAccess.array.accept(this);
+            indexRanges.put(arrayAccess, range(arrayAccess.index));
+            range = Range.FULL;
+        }
+
+        @Override
+        public void visit(BinaryExpression binaryExpression) {
+            Range left = range(binaryExpression.leftOperand);
+            Range right = range(binaryExpression.rightOperand);
+            switch (binaryExpression.operator) {
+                case ADD:
+                    range = Range.of(left.low + right.low, left.high + right.high);
+                    break;
+                case SUB:
+                    range = Range.of(left.low - right.high, left.high - right.low);
+                    break;
+                case MUL:
+                    range = corners(left, right, (a, b) -> a * b);
+                    break;
+                case DIV:
+                    // Bei einem Divisor, der 0 sein kann, ist das Ergebnis unbekannt
+                    range = right.low <= 0 && right.high >= 0 ? Range.FULL : corners(left, right, (a, b) -> a / b);
+                    break;
+                default:
+                    range = Range.FULL;
+            }
+        }
+
+        private Range corners(Range left, Range right, LongBinaryOperator operation) {
+            long[] values = {
+                    operation.applyAsLong(left.low, right.low), operation.applyAsLong(left.low, right.high),
+                    operation.applyAsLong(left.high, right.low), operation.applyAsLong(left.high, right.high)
+            };
+            return Range.of(Arrays.stream(values).min().getAsLong(), Arrays.stream(values).max().getAsLong());
+        }
+
+        @Override
+        public void visit(AssignStatement assignStatement) {
+            if (state == null) return;
+            assignStatement.target.accept(this);
+            Range value = range(assignStatement.value);
+            VariableEntry entry = trackedVariable(assignStatement.target);
+            if (entry != null) state.put(entry, value);
+        }
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            if (state == null) return;
+            callStatement.arguments.forEach(this::range);
+        }
+
+        @Override
+        public void visit(CompoundStatement compoundStatement) {
+            compoundStatement.statements.forEach(s -> s.accept(this));
+        }
+
+        @Override
+        public void visit(IfStatement ifStatement) {
+            if (state == null) return;
+            range(ifStatement.condition);
+            Map<VariableEntry, Range> entry = state;
+            state = refine(entry, ifStatement.condition, true);
+            ifStatement.thenPart.accept(this);
+            Map<VariableEntry, Range> thenState = state;
+            state = refine(entry, ifStatement.condition, false);
+            ifStatement.elsePart.accept(this);
+            state = join(thenState, state);
+        }
+
+        @Override
+        public void visit(WhileStatement whileStatement) {
+            if (state == null) return;
+            Map<VariableEntry, Range> entry = state;
+            loopEntryRanges.put(whileStatement, new HashMap<>(entry));
+            Map<VariableEntry, Range> head = entry;
+            while (true) {
+                analyzeIteration(whileStatement, head);
+                Map<VariableEntry, Range> next = join(head, state);
+                if (next.equals(head)) break;
+                head = widen(head, next);
+            }
+            // Ein Durchlauf mit den Bereichen nach einer Iteration stellt die durch das Widening verlorenen Grenzen wieder her
+            head = join(entry, state);
+            analyzeIteration(whileStatement, head);
+            state = refine(head, whileStatement.condition, false);
+        }
+
+        private void analyzeIteration(WhileStatement whileStatement, Map<VariableEntry, Range> head) {
+            state = head;
+            range(whileStatement.condition);
+            state = refine(head, whileStatement.condition, true);
+            whileStatement.body.accept(this);
+        }
+
+        @Override
+        public void visit(DoWhileStatement doWhileStatement) {
+            if (state == null) return;
+            Map<VariableEntry, Range> entry = state;
+            loopEntryRanges.put(doWhileStatement, new HashMap<>(entry));
+            Map<VariableEntry, Range> head = entry;
+            while (true) {
+                analyzeIteration(doWhileStatement, head);
+                Map<VariableEntry, Range> next = join(head, refine(state, doWhileStatement.condition, true));
+                if (next.equals(head)) break;
+                head = widen(head, next);
+            }
+            head = join(entry, refine(state, doWhileStatement.condition, true));
+            analyzeIteration(doWhileStatement, head);
+            state = refine(state, doWhileStatement.condition, false);
+        }
+
+        private void analyzeIteration(DoWhileStatement doWhileStatement, Map<VariableEntry, Range> head) {
+            state = new HashMap<>(head);
+            doWhileStatement.body.accept(this);
+            if (state != null) range(doWhileStatement.condition);
+        }
+    }
+
+    /**
+     * Narrows the ranges of the variables compared in a condition.
+     *
+     * @param state     The ranges before the condition is evaluated.
+     * @param condition The condition, a comparison.
+     * @param holds     Whether the narrowed ranges are the ones where the condition holds or where it does not hold.
+     * @return A new map of the narrowed ranges, or null if the condition can never have the requested value.
+     */
+    private Map<VariableEntry, Range> refine(Map<VariableEntry, Range> state, Expression condition, boolean holds) {
+        if (state == null) return null;
+        Map<VariableEntry, Range> refined = new HashMap<>(state);
+        if (!(condition instanceof BinaryExpression)) return refined;
+        BinaryExpression comparison = (BinaryExpression) condition;
+        BinaryExpression.Operator operator = holds ? comparison.operator : comparison.operator.flipComparison();
+        MyVisitor visitor = new MyVisitor();
+        visitor.state = refined;
+
+        VariableEntry left = visitor.trackedVariable(comparison.leftOperand);
+        if (left != null && !refine(refined, left, operator, visitor.range(comparison.rightOperand))) return null;
+        VariableEntry right = visitor.trackedVariable(comparison.rightOperand);
+        if (right != null && !refine(refined, right, mirror(operator), visitor.range(comparison.leftOperand))) return null;
+        return refined;
+    }
+
+    /**
+     * Narrows the range of a variable that is compared to a value in a given range.
+     *
+     * @return false if the comparison can never hold.
+     */
+    private static boolean refine(Map<VariableEntry, Range> state, VariableEntry variable, BinaryExpression.Operator operator, Range other) {
+        Range range = state.get(variable);
+        switch (operator) {
+            case EQU:
+                range = range.intersect(other.low, other.high);
+                break;
+            case NEQ:
+                if (other.isConstant() && range.low == other.low) range = range.intersect(range.low + 1, range.high);
+                else if (other.isConstant() && range.high == other.low) range = range.intersect(range.low, range.high - 1);
+                break;
+            case LST:
+                range = range.intersect(range.low, other.high - 1);
+                break;
+            case LSE:
+                range = range.intersect(range.low, other.high);
+                break;
+            case GRT:
+                range = range.intersect(other.low + 1, range.high);
+                break;
+            case GRE:
+                range = range.intersect(other.low, range.high);
+                break;
+        }
+        state.put(variable, range);
+        return !range.isEmpty();
+    }
+
+    /**
+     * @return The operator of the comparison with swapped operands, e.g. GRT for LST.
+     */
+    private static BinaryExpression.Operator mirror(BinaryExpression.Operator operator) {
+        switch (operator) {
+            case LST:
+                return BinaryExpression.Operator.GRT;
+            case LSE:
+                return BinaryExpression.Operator.GRE;
+            case GRT:
+                return BinaryExpression.Operator.LST;
+            case GRE:
+                return BinaryExpression.Operator.LSE;
+            default:
+                return operator;
+        }
+    }
+
+    private static Map<VariableEntry, Range> join(Map<VariableEntry, Range> first, Map<VariableEntry, Range> second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        Map<VariableEntry, Range> joined = new HashMap<>(first);
+        second.forEach((variable, range) -> joined.merge(variable, range, Range::join));
+        return joined;
+    }
+
+    private static Map<VariableEntry, Range> widen(Map<VariableEntry, Range> head, Map<VariableEntry, Range> next) {
+        Map<VariableEntry, Range> widened = new HashMap<>(head);
+        next.forEach((variable, range) -> widened.merge(variable, range, Range::widen));
+        return widened;
+    }
+
+    /**
+     * Analyzes a procedure and clears {@link ArrayAccess#indexCheckNeeded} for every access proven to be in bounds.
+     *
+     * @param procedureDeclaration The procedure to analyze.
+     * @return The index checks that have to be kept, in the order of the source code.
+     */
+    List<KeptCheck> eliminate(ProcedureDeclaration procedureDeclaration) {
+        collectTrackedVariables(procedureDeclaration);
+        MyVisitor visitor = new MyVisitor();
+        visitor.state = new HashMap<>();
+        tracked.forEach(variable -> visitor.state.put(variable, Range.FULL));
+        procedureDeclaration.body.forEach(s -> s.accept(visitor));
+
+        List<KeptCheck> keptChecks = new ArrayList<>();
+        for (ArrayAccess arrayAccess : accesses) {
+            Range range = indexRanges.get(arrayAccess);
+            int size = ((ArrayType) arrayAccess.array.dataType).arraySize;
+            if (range != null && range.low >= 0 && range.high < size) {
+                arrayAccess.indexCheckNeeded = false;
+            } else if (arrayAccess.indexCheckNeeded) {
+                keptChecks.add(new KeptCheck(arrayAccess, range == null ? Range.FULL : range));
+            }
+        }
+        return keptChecks;
+    }
+
+    /**
+     * @param loop     A while or do-while statement of the analyzed procedure.
+     * @param variable The variable.
+     * @return The range of the variable in front of the loop, the full integer range if the variable is not tracked or
+     * the loop is unreachable.
+     */
+    Range entryRange(Statement loop, VariableEntry variable) {
+        Map<VariableEntry, Range> ranges = loopEntryRanges.get(loop);
+        return ranges == null ? Range.FULL : ranges.getOrDefault(variable, Range.FULL);
+    }
+
+    /**
+     * Determines the variables whose ranges are tracked and collects all array accesses of the procedure.
+     */
+    private void collectTrackedVariables(ProcedureDeclaration procedureDeclaration) {
+        Set<VariableEntry> addressTaken = new HashSet<>();
+        AstTraverser collector = new AstTraverser() {
+            @Override
+            public void visit(ArrayAccess arrayAccess) {
+                accesses.add(arrayAccess);
+                super.visit(arrayAccess);
+            }
+
+            @Override
+            public void visit(CallStatement callStatement) {
+                var entry = (ProcedureEntry) globalTable.lookup(callStatement.procedureName);
+                for (int i = 0; i < callStatement.arguments.size(); i++) {
+                    Expression argument = callStatement.arguments.get(i);
+                    argument.accept(this);
+                    if (entry.parameterTypes.get(i).isReference && ((VariableExpression) argument).variable instanceof NamedVariable) {
+                        addressTaken.add((VariableEntry) localTable.lookup(((NamedVariable) ((VariableExpression) argument).variable).name));
+                    }
+                }
+            }
+        };
+        procedureDeclaration.accept(collector);
+
+        procedureDeclaration.parameters.forEach(p -> addIfTracked((VariableEntry) localTable.lookup(p.name), addressTaken));
+        procedureDeclaration.variables.forEach(v -> addIfTracked((VariableEntry) localTable.lookup(v.name), addressTaken));
+    }
+
+    private void addIfTracked(VariableEntry entry, Set<VariableEntry> addressTaken) {
+        if (entry.type == PrimitiveType.intType && !entry.isReference && !addressTaken.contains(entry)) tracked.add(entry);
+    }
+}
@@ -0,0 +1,86 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.Identifier;
+
+import java.util.*;
+
+/**
+ * This class represents the call graph of a program, built from the {@link CallStatement}s of the procedure bodies.
+ * Predefined procedures have no declaration in the program and are not part of the graph.
+ */
+class CallGraph {
+    private final Map<Identifier, ProcedureDeclaration> procedures = new LinkedHashMap<>();
+    private final Map<Identifier, Set<Identifier>> callees = new HashMap<>();
+
+    /**
+     * Collects the names of the procedures called in a procedure body.
+     */
+    private static class CallCollector extends AstTraverser {
+        final Set<Identifier> callees = new LinkedHashSet<>();
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            super.visit(callStatement);
+            callees.add(callStatement.procedureName);
+        }
+    }
+
+    CallGraph(Program program) {
+        for (GlobalDeclaration declaration : program.declarations) {
+            if (declaration instanceof ProcedureDeclaration) procedures.put(declaration.name, (ProcedureDeclaration) declaration);
+        }
+        for (ProcedureDeclaration procedure : procedures.values()) {
+            CallCollector collector = new CallCollector();
+            procedure.accept(collector);
+            collector.callees.retainAll(procedures.keySet());
+            callees.put(procedure.name, collector.callees);
+        }
+    }
+
+    /**
+     * @return The declaration of a procedure, or null for a predefined procedure.
+     */
+    ProcedureDeclaration declaration(Identifier name) {
+        return procedures.get(name);
+    }
+
+    /**
+     * @return The procedures reachable from a procedure, including itself.
+     */
+    Set<Identifier> reachableFrom(Identifier name) {
+        Set<Identifier> reachable = new LinkedHashSet<>();
+        Deque<Identifier> worklist = new ArrayDeque<>(List.of(name));
+        while (!worklist.isEmpty()) {
+            Identifier next = worklist.poll();
+            if (procedures.containsKey(next) && reachable.add(next)) worklist.addAll(callees.get(next));
+        }
+        return reachable;
+    }
+
+    /**
+     * @return true if the procedure may call itself, directly or through other procedures.
+     */
+    boolean isRecursive(Identifier name) {
+        for (Identifier callee : callees.getOrDefault(name, Set.of())) {
+            if (reachableFrom(callee).contains(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return All declared procedures, each one after the procedures it calls unless they call each other.
+     */
+    List<ProcedureDeclaration> bottomUpOrder() {
+        List<ProcedureDeclaration> order = new ArrayList<>();
+        Set<Identifier> visited = new HashSet<>();
+        for (Identifier name : procedures.keySet()) addPostorder(name, visited, order);
+        return order;
+    }
+
+    private void addPostorder(Identifier name, Set<Identifier> visited, List<ProcedureDeclaration> order) {
+        if (!visited.add(name)) return;
+        for (Identifier callee : callees.get(name)) addPostorder(callee, visited, order);
+        order.add(procedures.get(name));
+    }
+}
@@ -0,0 +1,203 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static de.thm.mni.compilerbau.absyn.BinaryExpression.Operator.*;
+
+/**
+ * This class evaluates constant subexpressions at compile time and simplifies arithmetic identities.
+ * <p>
+ * Arithmetic is done with 32 bit integers that wrap around, exactly like the ECO32 does at runtime. Divisions by zero
+ * are not folded, so the error still happens at runtime. Operands are only removed from an expression if evaluating
+ * them cannot fail, i.e. if they contain neither an array access nor a division.
+ * <p>
+ * Conditions of {@link IfStatement}s, {@link WhileStatement}s and {@link DoWhileStatement}s comparing two constants
+ * are decided here and the branch that is never executed is removed.
+ */
+class ConstantFolder extends AstRewriter {
+
+    @Override
+    public void visit(BinaryExpression binaryExpression) {
+        super.visit(binaryExpression);
+        result = simplify((BinaryExpression) result);
+    }
+
+    @Override
+    public void visit(IfStatement ifStatement) {
+        super.visit(ifStatement);
+        IfStatement folded = (IfStatement) result;
+        Boolean condition = constantCondition(folded.condition);
+        if (condition != null) result = condition ? folded.thenPart : folded.elsePart;
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+        super.visit(whileStatement);
+        WhileStatement folded = (WhileStatement) result;
+        if (Boolean.FALSE.equals(constantCondition(folded.condition))) result = new EmptyStatement(folded.position);
+    }
+
+    @Override
+    public void visit(DoWhileStatement doWhileStatement) {
+        super.visit(doWhileStatement);
+        DoWhileStatement folded = (DoWhileStatement) result;
+        if (Boolean.FALSE.equals(constantCondition(folded.condition))) result = folded.body;
+    }
+
+    @Override
+    public void visit(CompoundStatement compoundStatement) {
+        super.visit(compoundStatement);
+        CompoundStatement folded = (CompoundStatement) result;
+        if (folded.statements.stream().anyMatch(s -> s instanceof EmptyStatement)) {
+            List<Statement> statements = folded.statements.stream().filter(s -> !(s instanceof EmptyStatement)).collect(Collectors.toList());
+            result = new CompoundStatement(folded.position, statements);
+        }
+    }
+
+    /**
+     * Simplifies a binary expression whose operands are already simplified.
+     *
+     * @param expression The expression to simplify.
+     * @return The simplified expression, or the expression itself if nothing could be simplified.
+     */
+    private Expression simplify(BinaryExpression expression) {
+        Expression left = expression.leftOperand;
+        Expression right = expression.rightOperand;
+        if (!expression.operator.isArithmetic()) return expression;
+
+        if (left instanceof IntLiteral && right instanceof IntLiteral) {
+            Integer value = evaluate(expression.operator, ((IntLiteral) left).value, ((IntLiteral) right).value);
+            if (value != null) return intLiteral(expression, value);
+        }
+
+        switch (expression.operator) {
+            case ADD:
+                if (isConstant(left, 0)) return right;
+                if (isConstant(right, 0)) return left;
+                // x + (0 - y) = x - y, (0 - x) + y = y - x
+                if (isNegation(right)) return binaryExpression(expression, SUB, left, negated(right));
+                if (isNegation(left)) return binaryExpression(expression, SUB, right, negated(left));
+                return reassociate(expression);
+            case SUB:
+                if (isConstant(right, 0)) return left;
+                // 0 - (0 - x) = x, x - (0 - y) = x + y
+                if (isConstant(left, 0) && isNegation(right)) return negated(right);
+                if (isNegation(right)) return binaryExpression(expression, ADD, left, negated(right));
+                return reassociate(expression);
+            case MUL:
+                if (isConstant(left, 1)) return right;
+                if (isConstant(right, 1)) return left;
+                if (isConstant(left, 0) && cannotFail(right)) return left;
+                if (isConstant(right, 0) && cannotFail(left)) return right;
+                return expression;
+            case DIV:
+                if (isConstant(right, 1)) return left;
+                return expression;
+            default:
+                return expression;
+        }
+    }
+
+    /**
+     * Combines the constants of nested additions and subtractions, e.g. (x + 1) - 3 becomes x + -2.
+     *
+     * @param expression An addition or subtraction whose operands are already simplified.
+     * @return The combined expression, or the expression itself if there is nothing to combine.
+     */
+    private Expression reassociate(BinaryExpression expression) {
+        if (!(expression.rightOperand instanceof IntLiteral) || !(expression.leftOperand instanceof BinaryExpression)) return expression;
+        BinaryExpression inner = (BinaryExpression) expression.leftOperand;
+        if ((inner.operator != ADD && inner.operator != SUB) || !(inner.rightOperand instanceof IntLiteral)) return expression;
+
+        int innerConstant = inner.operator == ADD ? ((IntLiteral) inner.rightOperand).value : -((IntLiteral) inner.rightOperand).value;
+        int outerConstant = expression.operator == ADD ? ((IntLiteral) expression.rightOperand).value : -((IntLiteral) expression.rightOperand).value;
+        int constant = innerConstant + outerConstant;
+        if (constant == 0) return inner.leftOperand;
+        return binaryExpression(expression, ADD, inner.leftOperand, intLiteral(expression.rightOperand, constant));
+    }
+
+    /**
+     * Evaluates an arithmetic operation on two constants.
+     *
+     * @return The result of the operation, or null if the operation would fail at runtime.
+     */
+    static Integer evaluate(BinaryExpression.Operator operator, int left, int right) {
+        switch (operator) {
+            case ADD:
+                return left + right;
+            case SUB:
+                return left - right;
+            case MUL:
+                return left * right;
+            case DIV:
+                if (right == 0 || (left == Integer.MIN_VALUE && right == -1)) return null;
+                return left / right;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Decides a comparison of two constants.
+     *
+     * @param condition The condition of a statement.
+     * @return The value of the condition, or null if it is not constant.
+     */
+    static Boolean constantCondition(Expression condition) {
+        if (!(condition instanceof BinaryExpression)) return null;
+        BinaryExpression comparison = (BinaryExpression) condition;
+        if (!(comparison.leftOperand instanceof IntLiteral) || !(comparison.rightOperand instanceof IntLiteral)) return null;
+        int left = ((IntLiteral) comparison.leftOperand).value;
+        int right = ((IntLiteral) comparison.rightOperand).value;
+        switch (comparison.operator) {
+            case EQU:
+                return left == right;
+            case NEQ:
+                return left != right;
+            case LST:
+                return left < right;
+            case LSE:
+                return left <= right;
+            case GRT:
+                return left > right;
+            case GRE:
+                return left >= right;
+            default:
+                return null;
+        }
+    }
+
+    static boolean isConstant(Expression expression, int value) {
+        return expression instanceof IntLiteral && ((IntLiteral) expression).value == value;
+    }
+
+    /**
+     * The parser represents the unary minus -x as 0 - x.
+     */
+    private static boolean isNegation(Expression expression) {
+        return expression instanceof BinaryExpression
+                && ((BinaryExpression) expression).operator == SUB
+                && isConstant(((BinaryExpression) expression).leftOperand, 0);
+    }
+
+    private static Expression negated(Expression negation) {
+        return ((BinaryExpression) negation).rightOperand;
+    }
+
+    /**
+     * @param expression The expression to check.
+     * @return true if evaluating the expression can neither fail an index check nor divide by zero.
+     */
+    static boolean cannotFail(Expression expression) {
+        if (expression instanceof IntLiteral) return true;
+        if (expression instanceof VariableExpression) return ((VariableExpression) expression).variable instanceof NamedVariable;
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            return binaryExpression.operator != DIV && cannotFail(binaryExpression.leftOperand) && cannotFail(binaryExpression.rightOperand);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,158 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.table.VariableEntry;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * This class removes assignments to local integer variables whose value is never read afterwards.
+ * <p>
+ * A backward liveness analysis computes which variables may still be read after each statement. Loops are analyzed
+ * until the variables live at their beginning do not change anymore. Passing a variable as reference argument
+ * counts as reading it, since the called procedure may do so. Variables whose address is taken by an
+ * {@link AddressExpression} are not considered, as they may be read through a reference.
+ * <p>
+ * An assignment to a variable that is not live after it is removed, if evaluating its value cannot fail.
+ * Otherwise the assignment is kept, so the error still happens at runtime.
+ */
+class DeadStoreEliminator extends AstRewriter {
+    private final SymbolTable localTable;
+    private final Set<VariableEntry> addressTaken = new HashSet<>();
+    /**
+     * The assignments to variables, with the result of their last analysis.
+     */
+    private final Map<AssignStatement, Boolean> dead = new IdentityHashMap<>();
+
+    DeadStoreEliminator(SymbolTable localTable) {
+        this.localTable = localTable;
+    }
+
+    /**
+     * Collects the tracked variables read by an expression or a variable.
+     */
+    private class UseCollector extends AstTraverser {
+        final Set<VariableEntry> uses = new HashSet<>();
+
+        @Override
+        public void visit(NamedVariable namedVariable) {
+            VariableEntry entry = lookup(namedVariable);
+            if (isTracked(entry)) uses.add(entry);
+        }
+
+        @Override
+        public void visit(AddressExpression addressExpression) {
+            super.visit(addressExpression);
+            Variable variable = addressExpression.variable;
+            while (variable instanceof ArrayAccess) variable = ((ArrayAccess) variable).array;
+            addressTaken.add(lookup((NamedVariable) variable));
+        }
+    }
+
+    @Override
+    void rewrite(ProcedureDeclaration procedureDeclaration) {
+        procedureDeclaration.accept(new UseCollector());
+        liveBefore(procedureDeclaration.body, Set.of());
+        super.rewrite(procedureDeclaration);
+        procedureDeclaration.body.removeIf(statement -> statement instanceof EmptyStatement);
+    }
+
+    private VariableEntry lookup(NamedVariable namedVariable) {
+        return (VariableEntry) localTable.lookup(namedVariable.name);
+    }
+
+    private boolean isTracked(VariableEntry entry) {
+        return entry.type == PrimitiveType.intType && !entry.isReference && !addressTaken.contains(entry);
+    }
+
+    private Set<VariableEntry> uses(Node node) {
+        UseCollector collector = new UseCollector();
+        node.accept(collector);
+        return collector.uses;
+    }
+
+    private Set<VariableEntry> union(Set<VariableEntry> first, Set<VariableEntry> second) {
+        Set<VariableEntry> union = new HashSet<>(first);
+        union.addAll(second);
+        return union;
+    }
+
+    private Set<VariableEntry> liveBefore(List<Statement> statements, Set<VariableEntry> liveAfter) {
+        Set<VariableEntry> live = liveAfter;
+        for (int i = statements.size() - 1; i >= 0; i--) live = liveBefore(statements.get(i), live);
+        return live;
+    }
+
+    /**
+     * Computes the variables live in front of a statement and records which assignments in it are dead.
+     *
+     * @param statement The statement to analyze.
+     * @param liveAfter The variables live after the statement.
+     * @return The variables live in front of the statement.
+     */
+    private Set<VariableEntry> liveBefore(Statement statement, Set<VariableEntry> liveAfter) {
+        if (statement instanceof AssignStatement) {
+            AssignStatement assignStatement = (AssignStatement) statement;
+            if (assignStatement.target instanceof NamedVariable && isTracked(lookup((NamedVariable) assignStatement.target))) {
+                VariableEntry target = lookup((NamedVariable) assignStatement.target);
+                boolean isDead = !liveAfter.contains(target) && ConstantFolder.cannotFail(assignStatement.value);
+                dead.put(assignStatement, isDead);
+                if (isDead) return liveAfter;
+                Set<VariableEntry> live = new HashSet<>(liveAfter);
+                live.remove(target);
+                live.addAll(uses(assignStatement.value));
+                return live;
+            }
+            return union(liveAfter, union(uses(assignStatement.target), uses(assignStatement.value)));
+        } else if (statement instanceof CallStatement) {
+            Set<VariableEntry> live = new HashSet<>(liveAfter);
+            ((CallStatement) statement).arguments.forEach(argument -> live.addAll(uses(argument)));
+            return live;
+        } else if (statement instanceof BindStatement) {
+            return union(liveAfter, uses(((BindStatement) statement).address));
+        } else if (statement instanceof CompoundStatement) {
+            return liveBefore(((CompoundStatement) statement).statements, liveAfter);
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            Set<VariableEntry> live = union(liveBefore(ifStatement.thenPart, liveAfter), liveBefore(ifStatement.elsePart, liveAfter));
+            return union(live, uses(ifStatement.condition));
+        } else if (statement instanceof WhileStatement) {
+            WhileStatement whileStatement = (WhileStatement) statement;
+            // Vor der Bedingung ist lebendig, was danach oder am Anfang des Rumpfes lebendig ist
+            Set<VariableEntry> head = union(liveAfter, uses(whileStatement.condition));
+            while (true) {
+                Set<VariableEntry> next = union(head, liveBefore(whileStatement.body, head));
+                if (next.equals(head)) return head;
+                head = next;
+            }
+        } else if (statement instanceof DoWhileStatement) {
+            DoWhileStatement doWhileStatement = (DoWhileStatement) statement;
+            Set<VariableEntry> condition = union(liveAfter, uses(doWhileStatement.condition));
+            Set<VariableEntry> head = liveBefore(doWhileStatement.body, condition);
+            while (true) {
+                Set<VariableEntry> next = liveBefore(doWhileStatement.body, union(condition, head));
+                if (next.equals(head)) return head;
+                head = next;
+            }
+        }
+        return liveAfter;
+    }
+
+    @Override
+    public void visit(AssignStatement assignStatement) {
+        result = dead.getOrDefault(assignStatement, false) ? new EmptyStatement(assignStatement.position) : assignStatement;
+    }
+
+    @Override
+    public void visit(CompoundStatement compoundStatement) {
+        super.visit(compoundStatement);
+        CompoundStatement rewritten = (CompoundStatement) result;
+        if (rewritten.statements.stream().anyMatch(s -> s instanceof EmptyStatement)) {
+            List<Statement> statements = rewritten.statements.stream().filter(s -> !(s instanceof EmptyStatement)).collect(Collectors.toList());
+            result = new CompoundStatement(rewritten.position, statements);
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.table.VariableEntry;
+import de.thm.mni.compilerbau.types.ArrayType;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.*;
+
+/**
+ * This class replaces array accesses indexed by an induction variable of a loop with pointers that walk through the
+ * array.
+ * <p>
+ * A basic induction variable i of a loop is an integer variable that is assigned exactly once in the loop, by an
+ * assignment i := i + c at the top level of the loop body. For every array a that does not change during the loop,
+ * the accesses a[i + d] without index check share a reference {@link Temporary} p, which is bound to a[i + d] in front
+ * of the loop and advanced by c times the element size right after i is incremented. The accesses then use p instead
+ * of computing the address from i in every iteration.
+ * <p>
+ * If i is only used to compute these addresses and to decide whether the loop continues, it is dropped from the loop:
+ * the increment is removed and a condition like i &lt; n is replaced by comparing the address held by p with the
+ * address of a[n + d]. This is only done if i is assigned again before it is read after the loop, if n is a
+ * constant close to the bounds of the array, so the end address cannot overflow, and if the range analysis of the
+ * {@link BoundsCheckEliminator} proves that a[i + d] lies within the array or directly behind it in front of the loop.
+ * Otherwise the pointer bound in front of a loop that is never entered could point anywhere, and comparing it would
+ * change the number of iterations.
+ * <p>
+ * Loops are processed from the inside out. Pointer bindings in front of an inner loop are treated like other accesses,
+ * so rows of two-dimensional arrays are walked through as well.
+ */
+class InductionVariableReduction extends AstRewriter {
+    /**
+     * Every pointer needs a register in the loop, so only the most frequently used ones are created.
+     */
+    private static final int MAX_POINTERS_PER_LOOP = 3;
+
+    private final SymbolTable globalTable;
+    private final SymbolTable localTable;
+    private final ProcedureDeclaration procedureDeclaration;
+    private final BoundsCheckEliminator boundsCheckEliminator;
+    /**
+     * The loops of the procedure body before their inner loops were rewritten. The liveness of variables is analyzed
+     * on the unchanged procedure body.
+     */
+    private final Map<Statement, Statement> originalLoops = new IdentityHashMap<>();
+
+    /**
+     * @param boundsCheckEliminator The analysis of the unchanged procedure body, which provides the ranges of the
+     *                              variables in front of its loops.
+     */
+    InductionVariableReduction(SymbolTable globalTable, SymbolTable localTable, ProcedureDeclaration procedureDeclaration,
+                               BoundsCheckEliminator boundsCheckEliminator) {
+        this.globalTable = globalTable;
+        this.localTable = localTable;
+        this.procedureDeclaration = procedureDeclaration;
+        this.boundsCheckEliminator = boundsCheckEliminator;
+    }
+
+    /**
+     * An array access a[i + d] whose address can be held by a pointer.
+     */
+    private static class Access {
+        final ArrayAccess arrayAccess;
+        final int offset;
+
+        Access(ArrayAccess arrayAccess, int offset) {
+            this.arrayAccess = arrayAccess;
+            this.offset = offset;
+        }
+
+        /**
+         * Accesses with the same key always have the same address and share a pointer.
+         */
+        String key() {
+            return arrayAccess.array + "+" + offset;
+        }
+    }
+
+    /**
+     * Collects the accesses indexed by an induction variable and counts its other uses.
+     */
+    private static class UseCollector extends AstTraverser {
+        private final LoopEffects effects;
+        private final VariableEntry variable;
+        final Map<String, List<Access>> accesses = new LinkedHashMap<>();
+        int reads = 0;
+
+        UseCollector(LoopEffects effects, VariableEntry variable) {
+            this.effects = effects;
+            this.variable = variable;
+        }
+
+        @Override
+        public void visit(ArrayAccess arrayAccess) {
+            Integer offset = offset(arrayAccess.index);
+            if (offset != null && !arrayAccess.indexCheckNeeded && effects.isInvariantAddress(arrayAccess.array)) {
+                Access access = new Access(arrayAccess, offset);
+                accesses.computeIfAbsent(access.key(), k -> new ArrayList<>()).add(access);
+                arrayAccess.array.accept(this);
+            } else {
+                super.visit(arrayAccess);
+            }
+        }
+
+        @Override
+        public void visit(VariableExpression variableExpression) {
+            if (isVariable(variableExpression)) reads++;
+            super.visit(variableExpression);
+        }
+
+        /**
+         * @return d if the index has the form i, i + d, d + i or i - d, null otherwise.
+         */
+        private Integer offset(Expression index) {
+            if (isVariable(index)) return 0;
+            if (!(index instanceof BinaryExpression)) return null;
+            BinaryExpression binaryExpression = (BinaryExpression) index;
+            Expression left = binaryExpression.leftOperand;
+            Expression right = binaryExpression.rightOperand;
+            switch (binaryExpression.operator) {
+                case ADD:
+                    if (isVariable(left) && right instanceof IntLiteral) return ((IntLiteral) right).value;
+                    if (isVariable(right) && left instanceof IntLiteral) return ((IntLiteral) left).value;
+                    return null;
+                case SUB:
+                    if (isVariable(left) && right instanceof IntLiteral && ((IntLiteral) right).value != Integer.MIN_VALUE) {
+                        return -((IntLiteral) right).value;
+                    }
+                    return null;
+                default:
+                    return null;
+            }
+        }
+
+        private boolean isVariable(Expression expression) {
+            return expression instanceof VariableExpression
+                    && ((VariableExpression) expression).variable instanceof NamedVariable
+                    && effects.lookup((NamedVariable) ((VariableExpression) expression).variable) == variable;
+        }
+    }
+
+    /**
+     * Counts the reads of a variable.
+     */
+    private class ReadCounter extends AstTraverser {
+        private final VariableEntry variable;
+        int reads = 0;
+
+        ReadCounter(VariableEntry variable) {
+            this.variable = variable;
+        }
+
+        int count(Node node) {
+            node.accept(this);
+            return reads;
+        }
+
+        @Override
+        public void visit(VariableExpression variableExpression) {
+            if (variableExpression.variable instanceof NamedVariable && lookup((NamedVariable) variableExpression.variable) == variable) reads++;
+            super.visit(variableExpression);
+        }
+    }
+
+    /**
+     * Decides whether a variable may be read after a loop before it is assigned again, by a backward analysis of the
+     * procedure body. Reference arguments count as reads.
+     */
+    private class Liveness {
+        private final VariableEntry variable;
+        private final Statement loop;
+        private boolean liveAfterLoop = false;
+
+        Liveness(VariableEntry variable, Statement loop) {
+            this.variable = variable;
+            this.loop = loop;
+        }
+
+        boolean isLiveAfterLoop() {
+            liveBefore(procedureDeclaration.body, false);
+            return liveAfterLoop;
+        }
+
+        /**
+         * @param statements The statements to analyze.
+         * @param live       Whether the variable is live after the statements.
+         * @return Whether the variable is live in front of the statements.
+         */
+        private boolean liveBefore(List<Statement> statements, boolean live) {
+            for (int i = statements.size() - 1; i >= 0; i--) live = liveBefore(statements.get(i), live);
+            return live;
+        }
+
+        private boolean liveBefore(Statement statement, boolean live) {
+            if (statement == loop) liveAfterLoop |= live;
+            if (statement instanceof AssignStatement) {
+                AssignStatement assignStatement = (AssignStatement) statement;
+                boolean assigned = assignStatement.target instanceof NamedVariable && lookup((NamedVariable) assignStatement.target) == variable;
+                return live && !assigned || reads(assignStatement.target) || reads(assignStatement.value);
+            }
+            if (statement instanceof BindStatement || statement instanceof CallStatement) return live || reads(statement);
+            if (statement instanceof CompoundStatement) return liveBefore(((CompoundStatement) statement).statements, live);
+            if (statement instanceof IfStatement) {
+                IfStatement ifStatement = (IfStatement) statement;
+                boolean thenLive = liveBefore(ifStatement.thenPart, live);
+                boolean elseLive = liveBefore(ifStatement.elsePart, live);
+                return reads(ifStatement.condition) || thenLive || elseLive;
+            }
+            if (statement instanceof WhileStatement) {
+                WhileStatement whileStatement = (WhileStatement) statement;
+                boolean head = live || reads(whileStatement.condition);
+                while (true) {
+                    boolean next = head || liveBefore(whileStatement.body, head);
+                    if (next == head) return head;
+                    head = next;
+                }
+            }
+            if (statement instanceof DoWhileStatement) {
+                DoWhileStatement doWhileStatement = (DoWhileStatement) statement;
+                boolean head = false;
+                while (true) {
+                    boolean next = liveBefore(doWhileStatement.body, live || reads(doWhileStatement.condition) || head);
+                    if (next == head) return head;
+                    head = next;
+                }
+            }
+            return live;
+        }
+
+        private boolean reads(Node node) {
+            return new ReadCounter(variable).count(node) > 0;
+        }
+    }
+
+    /**
+     * Replaces the accesses by their pointers.
+     */
+    private static class PointerReplacer extends AstRewriter {
+        private final Map<ArrayAccess, Temporary> pointers = new IdentityHashMap<>();
+
+        @Override
+        public void visit(ArrayAccess arrayAccess) {
+            Temporary pointer = pointers.get(arrayAccess);
+            if (pointer != null) result = pointer.variable(arrayAccess.position);
+            else super.visit(arrayAccess);
+        }
+    }
+
+    /**
+     * Rewrites all statements in the body of a procedure and reduces the induction variables of its loops.
+     *
+     * @param procedureDeclaration The procedure to rewrite.
+     */
+    @Override
+    void rewrite(ProcedureDeclaration procedureDeclaration) {
+        List<Statement> statements = reduceLoops(rewriteAll(procedureDeclaration.body, this::rewrite));
+        if (statements != procedureDeclaration.body) {
+            procedureDeclaration.body.clear();
+            procedureDeclaration.body.addAll(statements);
+        }
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+        super.visit(whileStatement);
+        originalLoops.put((Statement) result, whileStatement);
+    }
+
+    @Override
+    public void visit(DoWhileStatement doWhileStatement) {
+        super.visit(doWhileStatement);
+        originalLoops.put((Statement) result, doWhileStatement);
+    }
+
+    @Override
+    public void visit(CompoundStatement compoundStatement) {
+        super.visit(compoundStatement);
+        CompoundStatement rewritten = (CompoundStatement) result;
+        List<Statement> statements = reduceLoops(rewritten.statements);
+        if (statements != rewritten.statements) result = new CompoundStatement(rewritten.position, statements);
+    }
+
+    /**
+     * Reduces the induction variables of all loops in a statement list.
+     *
+     * @param statements The statements, whose inner loops are already processed.
+     * @return The list itself if nothing changed, a new list with the pointer bindings in front of the loops otherwise.
+     */
+    private List<Statement> reduceLoops(List<Statement> statements) {
+        List<Statement> reduced = new ArrayList<>();
+        boolean changed = false;
+        for (Statement statement : statements) {
+            if (statement instanceof WhileStatement || statement instanceof DoWhileStatement) {
+                int size = reduced.size();
+                Statement loop = reduce(statement, reduced);
+                changed |= loop != statement || reduced.size() != size;
+                reduced.add(loop);
+            } else {
+                reduced.add(statement);
+            }
+        }
+        return changed ? reduced : statements;
+    }
+
+    /**
+     * Reduces the induction variables of a loop one after another.
+     *
+     * @param loop   The loop.
+     * @param before The statements in front of the loop. The pointer bindings are appended.
+     * @return The rewritten loop.
+     */
+    private Statement reduce(Statement loop, List<Statement> before) {
+        Statement originalLoop = originalLoops.getOrDefault(loop, loop);
+        int pointers = 0;
+        for (AssignStatement increment : increments(loop)) {
+            if (pointers >= MAX_POINTERS_PER_LOOP) break;
+            VariableEntry variable = lookup((NamedVariable) increment.target);
+            LoopEffects effects = new LoopEffects(globalTable, localTable, loop);
+            if (effects.changed.get(variable) != 1) continue;
+
+            UseCollector uses = new UseCollector(effects, variable);
+            condition(loop).accept(uses);
+            int conditionReads = uses.reads;
+            body(loop).accept(uses);
+            if (uses.accesses.isEmpty()) continue;
+
+            List<List<Access>> groups = new ArrayList<>(uses.accesses.values());
+            groups.sort(Comparator.comparingInt(group -> -group.size()));
+            PointerReplacer replacer = new PointerReplacer();
+            List<Statement> bumps = new ArrayList<>();
+            Temporary firstPointer = null;
+            Access firstAccess = null;
+            int replacedGroups = 0;
+            for (List<Access> group : groups) {
+                if (pointers >= MAX_POINTERS_PER_LOOP) break;
+                pointers++;
+                Access access = group.get(0);
+                Temporary pointer = Temporary.declare(procedureDeclaration, localTable, access.arrayAccess.dataType, true);
+                before.add(pointer.bind(addressExpression(access.arrayAccess, uncheckedAccess(access.arrayAccess, access.arrayAccess.index))));
+                int step = step(increment) * access.arrayAccess.dataType.byteSize;
+                NamedVariable pointerVariable = pointer.variable(increment.position);
+                bumps.add(pointer.bind(binaryExpression(increment.value, BinaryExpression.Operator.ADD,
+                        addressExpression(increment, pointerVariable), intLiteral(increment, step))));
+                group.forEach(a -> replacer.pointers.put(a.arrayAccess, pointer));
+                replacedGroups++;
+                if (firstPointer == null) {
+                    firstPointer = pointer;
+                    firstAccess = access;
+                }
+            }
+
+            // Die Variable wird außerhalb der ersetzten Zugriffe nur noch im Inkrement und in der Bedingung gelesen
+            boolean dropVariable = replacedGroups == groups.size() && uses.reads == conditionReads + 1
+                    && !new Liveness(variable, originalLoop).isLiveAfterLoop();
+            Expression newCondition = null;
+            if (dropVariable) {
+                newCondition = conditionReads == 0 ? condition(loop) : endCondition(loop, originalLoop, variable, firstPointer, firstAccess, before);
+                dropVariable = newCondition != null;
+            }
+
+            Statement rewrittenLoop = replacer.rewrite(loop);
+            List<Statement> body = new ArrayList<>();
+            for (Statement statement : ((CompoundStatement) body(rewrittenLoop)).statements) {
+                boolean isIncrement = statement == increment;
+                if (!isIncrement || !dropVariable) body.add(statement);
+                if (isIncrement) body.addAll(bumps);
+            }
+            CompoundStatement newBody = new CompoundStatement(body(rewrittenLoop).position, body);
+            if (!dropVariable) newCondition = condition(rewrittenLoop);
+            loop = rewrittenLoop instanceof WhileStatement
+                    ? new WhileStatement(rewrittenLoop.position, newCondition, newBody)
+                    : new DoWhileStatement(rewrittenLoop.position, newCondition, newBody);
+        }
+        return loop;
+    }
+
+    /**
+     * @return The assignments of the form i := i + c at the top level of the loop body.
+     */
+    private List<AssignStatement> increments(Statement loop) {
+        List<AssignStatement> increments = new ArrayList<>();
+        if (!(body(loop) instanceof CompoundStatement)) return increments;
+        for (Statement statement : ((CompoundStatement) body(loop)).statements) {
+            if (!(statement instanceof AssignStatement) || !(((AssignStatement) statement).target instanceof NamedVariable)) continue;
+            AssignStatement assignStatement = (AssignStatement) statement;
+            VariableEntry entry = lookup((NamedVariable) assignStatement.target);
+            if (entry.type == PrimitiveType.intType && !entry.isReference && step(assignStatement) != 0) increments.add(assignStatement);
+        }
+        return increments;
+    }
+
+    /**
+     * @return c if the assignment has the form i := i + c, i := c + i or i := i - c, 0 otherwise.
+     */
+    private int step(AssignStatement assignStatement) {
+        if (!(assignStatement.value instanceof BinaryExpression)) return 0;
+        BinaryExpression value = (BinaryExpression) assignStatement.value;
+        VariableEntry variable = lookup((NamedVariable) assignStatement.target);
+        if (value.operator == BinaryExpression.Operator.ADD) {
+            if (isVariable(value.leftOperand, variable) && value.rightOperand instanceof IntLiteral) return ((IntLiteral) value.rightOperand).value;
+            if (isVariable(value.rightOperand, variable) && value.leftOperand instanceof IntLiteral) return ((IntLiteral) value.leftOperand).value;
+        }
+        if (value.operator == BinaryExpression.Operator.SUB && isVariable(value.leftOperand, variable) && value.rightOperand instanceof IntLiteral) {
+            return -((IntLiteral) value.rightOperand).value;
+        }
+        return 0;
+    }
+
+    /**
+     * Replaces a loop condition comparing the induction variable with a constant by a comparison of addresses.
+     * The pointer always holds the address of a[i + d], so i &lt; n holds exactly if the pointer is below the address of
+     * a[n + d]. The end address is stored in an integer temporary in front of the loop.
+     *
+     * @param originalLoop The loop as analyzed by the {@link BoundsCheckEliminator}.
+     * @return The new condition or null if the condition cannot be replaced.
+     */
+    private Expression endCondition(Statement loop, Statement originalLoop, VariableEntry variable, Temporary pointer, Access access,
+                                    List<Statement> before) {
+        if (!(condition(loop) instanceof BinaryExpression)) return null;
+        BinaryExpression condition = (BinaryExpression) condition(loop);
+        boolean variableLeft = isVariable(condition.leftOperand, variable);
+        Expression bound = variableLeft ? condition.rightOperand : condition.leftOperand;
+        if (!(bound instanceof IntLiteral) || !(variableLeft || isVariable(condition.rightOperand, variable))) return null;
+
+        int size = ((ArrayType) access.arrayAccess.array.dataType).arraySize;
+        long end = (long) ((IntLiteral) bound).value + access.offset;
+        if (end < -1 || end > size) return null;
+        // Nur ein Zeiger innerhalb des Arrays wird wie der Zähler verglichen, auch wenn die Schleife nie betreten wird
+        BoundsCheckEliminator.Range entry = boundsCheckEliminator.entryRange(originalLoop, variable);
+        if (entry.low + access.offset < 0 || entry.high + access.offset > size) return null;
+        Temporary endAddress = Temporary.declare(procedureDeclaration, localTable, PrimitiveType.intType, false);
+        before.add(endAddress.assign(addressExpression(bound, uncheckedAccess(access.arrayAccess, intLiteral(bound, (int) end)))));
+
+        Expression pointerAddress = addressExpression(condition, pointer.variable(condition.position));
+        Expression endValue = endAddress.expression(condition.position);
+        return variableLeft
+                ? binaryExpression(condition, condition.operator, pointerAddress, endValue)
+                : binaryExpression(condition, condition.operator, endValue, pointerAddress);
+    }
+
+    /**
+     * Creates an access to the same array as an existing one that only computes an address. The index may be out of
+     * bounds, as long as the address is never used to access memory.
+     */
+    private static ArrayAccess uncheckedAccess(ArrayAccess original, Expression index) {
+        ArrayAccess access = new ArrayAccess(original.position, original.array, index);
+        access.dataType = original.dataType;
+        access.indexCheckNeeded = false;
+        return access;
+    }
+
+    private boolean isVariable(Expression expression, VariableEntry variable) {
+        return expression instanceof VariableExpression
+                && ((VariableExpression) expression).variable instanceof NamedVariable
+                && lookup((NamedVariable) ((VariableExpression) expression).variable) == variable;
+    }
+
+    private static Expression condition(Statement loop) {
+        return loop instanceof WhileStatement ? ((WhileStatement) loop).condition : ((DoWhileStatement) loop).condition;
+    }
+
+    private static Statement body(Statement loop) {
+        return loop instanceof WhileStatement ? ((WhileStatement) loop).body : ((DoWhileStatement) loop).body;
+    }
+
+    private VariableEntry lookup(NamedVariable namedVariable) {
+        return (VariableEntry) localTable.lookup(namedVariable.name);
+    }
+}
@@ -0,0 +1,212 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.table.VariableEntry;
+
+import java.util.*;
+
+/**
+ * This class replaces calls of small procedures by the bodies of the called procedures.
+ * <p>
+ * Procedures are processed along the {@link CallGraph} from the callees to the callers, so the body of a callee
+ * already contains the bodies of the procedures it calls. Recursive procedures are never inlined, and neither are
+ * procedures containing a loop, whose running time outweighs the cost of the call. A call is only
+ * replaced if the body of the callee is at most {@link #CALLEE_BUDGET} nodes large and the caller does not grow
+ * beyond {@link #CALLER_BUDGET} nodes.
+ * <p>
+ * The parameters and local variables of the callee become {@link Temporary}s of the caller, which are initialized in
+ * front of the inlined body: a value parameter gets the value of its argument, a reference parameter is bound to the
+ * address of its argument. A reference parameter whose argument is a named variable is replaced by that variable.
+ */
+class Inliner {
+    static final int CALLEE_BUDGET = 40;
+    static final int CALLER_BUDGET = 1000;
+
+    private final SymbolTable globalTable;
+    private CallGraph callGraph;
+    private final Map<Identifier, Integer> sizes = new HashMap<>();
+
+    Inliner(SymbolTable globalTable) {
+        this.globalTable = globalTable;
+    }
+
+    /**
+     * Counts the statements, variables and expressions of a procedure body.
+     */
+    private static class SizeCounter extends AstTraverser {
+        int size = 0;
+        boolean containsLoop = false;
+
+        @Override
+        public void visit(NamedVariable namedVariable) {
+            size++;
+        }
+
+        @Override
+        public void visit(IntLiteral intLiteral) {
+            size++;
+        }
+
+        @Override
+        public void visit(ArrayAccess arrayAccess) {
+            size++;
+            super.visit(arrayAccess);
+        }
+
+        @Override
+        public void visit(BinaryExpression binaryExpression) {
+            size++;
+            super.visit(binaryExpression);
+        }
+
+        @Override
+        public void visit(AssignStatement assignStatement) {
+            size++;
+            super.visit(assignStatement);
+        }
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            size++;
+            super.visit(callStatement);
+        }
+
+        @Override
+        public void visit(IfStatement ifStatement) {
+            size++;
+            super.visit(ifStatement);
+        }
+
+        @Override
+        public void visit(WhileStatement whileStatement) {
+            size++;
+            containsLoop = true;
+            super.visit(whileStatement);
+        }
+
+        @Override
+        public void visit(DoWhileStatement doWhileStatement) {
+            size++;
+            containsLoop = true;
+            super.visit(doWhileStatement);
+        }
+    }
+
+    static int size(ProcedureDeclaration procedureDeclaration) {
+        SizeCounter counter = new SizeCounter();
+        procedureDeclaration.accept(counter);
+        return counter.size;
+    }
+
+    private static boolean containsLoop(ProcedureDeclaration procedureDeclaration) {
+        SizeCounter counter = new SizeCounter();
+        procedureDeclaration.accept(counter);
+        return counter.containsLoop;
+    }
+
+    /**
+     * Replaces the variables of the callee by the variables of the caller standing for them.
+     */
+    private static class Renamer extends AstRewriter {
+        private final Map<Identifier, NamedVariable> substitution;
+
+        Renamer(Map<Identifier, NamedVariable> substitution) {
+            this.substitution = substitution;
+        }
+
+        @Override
+        public void visit(NamedVariable namedVariable) {
+            NamedVariable renamed = new NamedVariable(namedVariable.position, substitution.get(namedVariable.name).name);
+            renamed.dataType = namedVariable.dataType;
+            result = renamed;
+        }
+    }
+
+    /**
+     * Inlines the calls in a caller.
+     */
+    private class CallReplacer extends AstRewriter {
+        private final ProcedureDeclaration caller;
+        private final SymbolTable localTable;
+        private int size;
+        int inlined = 0;
+
+        CallReplacer(ProcedureDeclaration caller) {
+            this.caller = caller;
+            this.localTable = ((ProcedureEntry) globalTable.lookup(caller.name)).localTable;
+            this.size = size(caller);
+        }
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            ProcedureDeclaration callee = callGraph.declaration(callStatement.procedureName);
+            if (callee == null || callGraph.isRecursive(callee.name) || containsLoop(callee)) {
+                result = callStatement;
+                return;
+            }
+            int calleeSize = sizes.get(callee.name);
+            if (calleeSize > CALLEE_BUDGET || size + calleeSize > CALLER_BUDGET) {
+                result = callStatement;
+                return;
+            }
+            size += calleeSize;
+            inlined++;
+            result = expand(callStatement, callee);
+        }
+
+        private Statement expand(CallStatement callStatement, ProcedureDeclaration callee) {
+            SymbolTable calleeTable = ((ProcedureEntry) globalTable.lookup(callee.name)).localTable;
+            Map<Identifier, NamedVariable> substitution = new HashMap<>();
+            List<Statement> statements = new ArrayList<>();
+            for (int i = 0; i < callee.parameters.size(); i++) {
+                ParameterDeclaration parameter = callee.parameters.get(i);
+                Expression argument = callStatement.arguments.get(i);
+                VariableEntry entry = (VariableEntry) calleeTable.lookup(parameter.name);
+                if (!parameter.isReference) {
+                    Temporary temporary = Temporary.declare(caller, localTable, entry.type, false);
+                    statements.add(temporary.assign(argument));
+                    substitution.put(parameter.name, temporary.variable(argument.position));
+                    continue;
+                }
+                Variable variable = ((VariableExpression) argument).variable;
+                if (variable instanceof NamedVariable) {
+                    substitution.put(parameter.name, (NamedVariable) variable);
+                } else {
+                    // Die Adresse wird wie beim Aufruf genau einmal berechnet und geprüft
+                    Temporary temporary = Temporary.declare(caller, localTable, entry.type, true);
+                    statements.add(temporary.bind(AstRewriter.addressExpression(argument, variable)));
+                    substitution.put(parameter.name, temporary.variable(argument.position));
+                }
+            }
+            for (VariableDeclaration variable : callee.variables) {
+                VariableEntry entry = (VariableEntry) calleeTable.lookup(variable.name);
+                Temporary temporary = Temporary.declare(caller, localTable, entry.type, false);
+                substitution.put(variable.name, temporary.variable(variable.position));
+            }
+            Renamer renamer = new Renamer(substitution);
+            callee.body.forEach(statement -> statements.add(renamer.rewrite(statement)));
+            return new CompoundStatement(callStatement.position, statements);
+        }
+    }
+
+    /**
+     * Inlines the calls of small procedures in all procedures of a program.
+     *
+     * @param program The program to transform.
+     * @return The number of inlined calls.
+     */
+    int inline(Program program) {
+        callGraph = new CallGraph(program);
+        int inlined = 0;
+        for (ProcedureDeclaration procedure : callGraph.bottomUpOrder()) {
+            CallReplacer replacer = new CallReplacer(procedure);
+            replacer.rewrite(procedure);
+            inlined += replacer.inlined;
+            sizes.put(procedure.name, size(procedure));
+        }
+        return inlined;
+    }
+}
@@ -0,0 +1,106 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.table.VariableEntry;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class collects the variables a loop changes and decides which computations in the loop are invariant.
+ */
+class LoopEffects extends AstTraverser {
+    private final SymbolTable globalTable;
+    private final SymbolTable localTable;
+    /**
+     * Integer variables assigned or passed as reference argument in the loop, with the number of assignments.
+     */
+    final Map<VariableEntry, Integer> changed = new HashMap<>();
+    /**
+     * Reference temporaries bound in the loop, with the number of bindings.
+     */
+    final Map<VariableEntry, Integer> rebound = new HashMap<>();
+
+    /**
+     * @param globalTable The global table of the program.
+     * @param localTable  The local table of the procedure containing the loop.
+     * @param loop        The loop to analyze.
+     */
+    LoopEffects(SymbolTable globalTable, SymbolTable localTable, Statement loop) {
+        this.globalTable = globalTable;
+        this.localTable = localTable;
+        loop.accept(this);
+    }
+
+    @Override
+    public void visit(AssignStatement assignStatement) {
+        super.visit(assignStatement);
+        if (assignStatement.target instanceof NamedVariable) {
+            changed.merge(lookup((NamedVariable) assignStatement.target), 1, Integer::sum);
+        }
+    }
+
+    @Override
+    public void visit(BindStatement bindStatement) {
+        super.visit(bindStatement);
+        rebound.merge(lookup(bindStatement.reference), 1, Integer::sum);
+    }
+
+    @Override
+    public void visit(CallStatement callStatement) {
+        super.visit(callStatement);
+        var entry = (ProcedureEntry) globalTable.lookup(callStatement.procedureName);
+        for (int i = 0; i < callStatement.arguments.size(); i++) {
+            Variable argument = callStatement.arguments.get(i) instanceof VariableExpression
+                    ? ((VariableExpression) callStatement.arguments.get(i)).variable : null;
+            if (entry.parameterTypes.get(i).isReference && argument instanceof NamedVariable) {
+                // Über die Referenz kann beliebig oft zugewiesen werden
+                changed.merge(lookup((NamedVariable) argument), 2, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * @return true if the expression always has the same value during the loop and cannot fail.
+     */
+    boolean isInvariant(Expression expression) {
+        if (expression instanceof IntLiteral) return true;
+        if (expression instanceof VariableExpression) {
+            Variable variable = ((VariableExpression) expression).variable;
+            if (!(variable instanceof NamedVariable)) return false;
+            VariableEntry entry = lookup((NamedVariable) variable);
+            return entry.type == PrimitiveType.intType && !entry.isReference && !changed.containsKey(entry);
+        }
+        if (expression instanceof AddressExpression) return isInvariantAddress(((AddressExpression) expression).variable);
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            if (!binaryExpression.operator.isArithmetic()) return false;
+            // Eine Division kann nur mit einem konstanten Divisor nicht fehlschlagen
+            if (binaryExpression.operator == BinaryExpression.Operator.DIV
+                    && (!(binaryExpression.rightOperand instanceof IntLiteral)
+                    || ConstantFolder.isConstant(binaryExpression.rightOperand, 0)
+                    || ConstantFolder.isConstant(binaryExpression.rightOperand, -1))) return false;
+            return isInvariant(binaryExpression.leftOperand) && isInvariant(binaryExpression.rightOperand);
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the address of the variable is the same during the whole loop and computing it cannot fail.
+     */
+    boolean isInvariantAddress(Variable variable) {
+        if (variable instanceof NamedVariable) return !rebound.containsKey(lookup((NamedVariable) variable));
+        if (variable instanceof ArrayAccess) {
+            ArrayAccess arrayAccess = (ArrayAccess) variable;
+            return !arrayAccess.indexCheckNeeded && isInvariantAddress(arrayAccess.array) && isInvariant(arrayAccess.index);
+        }
+        return false;
+    }
+
+    VariableEntry lookup(NamedVariable namedVariable) {
+        return (VariableEntry) localTable.lookup(namedVariable.name);
+    }
+}
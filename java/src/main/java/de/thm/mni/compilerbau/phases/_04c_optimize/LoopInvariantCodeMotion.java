@@ -0,0 +1,203 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.*;
+
+/**
+ * This class moves computations whose result does not change during a loop in front of the loop.
+ * <p>
+ * Two kinds of computations are moved:
+ * <ul>
+ *     <li>Arithmetic expressions whose operands are constants and integer variables that are neither assigned nor
+ *     passed as reference argument in the loop. Their value is stored in an integer {@link Temporary}.</li>
+ *     <li>Addresses of array rows, like a[i] in a[i][j], if the index is loop invariant and no index check is needed
+ *     for the row. The address is stored in a reference {@link Temporary}, which is then indexed instead of the
+ *     row.</li>
+ * </ul>
+ * Neither computation can fail at runtime, so they are computed in front of the loop even if the loop body is never
+ * executed. Values loaded from memory are never moved, since they may be changed through references.
+ * <p>
+ * Loops are processed from the inside out. Assignments to temporaries and bindings of reference temporaries that were
+ * placed in front of an inner loop are moved out of the enclosing loop as well, if their value is invariant in the
+ * enclosing loop.
+ */
+class LoopInvariantCodeMotion extends AstRewriter {
+    private final SymbolTable globalTable;
+    private final SymbolTable localTable;
+    private final ProcedureDeclaration procedureDeclaration;
+
+    LoopInvariantCodeMotion(SymbolTable globalTable, SymbolTable localTable, ProcedureDeclaration procedureDeclaration) {
+        this.globalTable = globalTable;
+        this.localTable = localTable;
+        this.procedureDeclaration = procedureDeclaration;
+    }
+
+    /**
+     * Collects the invariant computations of a loop.
+     */
+    private class InvariantCollector extends AstTraverser {
+        private final LoopEffects effects;
+        /**
+         * The computations to move, by their textual representation. Equal computations share a temporary.
+         */
+        final Map<String, Node> computations = new LinkedHashMap<>();
+        /**
+         * The occurrences of the computations to move with their textual representation. Only these are replaced, since
+         * a textually equal row address may still need its index check.
+         */
+        final Map<Node, String> occurrences = new IdentityHashMap<>();
+        /**
+         * Assignments to temporaries and bindings that can be moved out of the loop completely.
+         */
+        final List<Statement> movedStatements = new ArrayList<>();
+
+        InvariantCollector(LoopEffects effects) {
+            this.effects = effects;
+        }
+
+        @Override
+        public void visit(ArrayAccess arrayAccess) {
+            if (arrayAccess.array instanceof ArrayAccess && effects.isInvariantAddress(arrayAccess.array)) {
+                computations.putIfAbsent(arrayAccess.array.toString(), arrayAccess.array);
+                occurrences.put(arrayAccess.array, arrayAccess.array.toString());
+                arrayAccess.index.accept(this);
+            } else {
+                super.visit(arrayAccess);
+            }
+        }
+
+        @Override
+        public void visit(BinaryExpression binaryExpression) {
+            if (effects.isInvariant(binaryExpression) && containsVariable(binaryExpression)) {
+                computations.putIfAbsent(binaryExpression.toString(), binaryExpression);
+                occurrences.put(binaryExpression, binaryExpression.toString());
+            } else {
+                super.visit(binaryExpression);
+            }
+        }
+
+        @Override
+        public void visit(AssignStatement assignStatement) {
+            if (isTemporary(assignStatement.target) && !effects.lookup((NamedVariable) assignStatement.target).isReference
+                    && effects.isInvariant(assignStatement.value)
+                    && effects.changed.get(effects.lookup((NamedVariable) assignStatement.target)) == 1) {
+                movedStatements.add(assignStatement);
+            } else {
+                super.visit(assignStatement);
+            }
+        }
+
+        @Override
+        public void visit(BindStatement bindStatement) {
+            if (effects.rebound.get(effects.lookup(bindStatement.reference)) == 1 && effects.isInvariant(bindStatement.address)) {
+                movedStatements.add(bindStatement);
+            } else {
+                super.visit(bindStatement);
+            }
+        }
+    }
+
+    /**
+     * Replaces the moved computations in a loop by their temporaries and removes the moved assignments.
+     */
+    private static class Replacer extends AstRewriter {
+        private final Map<Node, Temporary> temporaries;
+        private final Set<Statement> movedStatements;
+
+        Replacer(Map<Node, Temporary> temporaries, Collection<Statement> movedStatements) {
+            this.temporaries = temporaries;
+            this.movedStatements = Collections.newSetFromMap(new IdentityHashMap<>());
+            this.movedStatements.addAll(movedStatements);
+        }
+
+        @Override
+        public void visit(ArrayAccess arrayAccess) {
+            Temporary temporary = temporaries.get(arrayAccess);
+            if (temporary != null) result = temporary.variable(arrayAccess.position);
+            else super.visit(arrayAccess);
+        }
+
+        @Override
+        public void visit(BinaryExpression binaryExpression) {
+            Temporary temporary = temporaries.get(binaryExpression);
+            if (temporary != null) result = temporary.expression(binaryExpression.position);
+            else super.visit(binaryExpression);
+        }
+
+        @Override
+        public void visit(AssignStatement assignStatement) {
+            if (movedStatements.contains(assignStatement)) result = new EmptyStatement(assignStatement.position);
+            else super.visit(assignStatement);
+        }
+
+        @Override
+        public void visit(BindStatement bindStatement) {
+            if (movedStatements.contains(bindStatement)) result = new EmptyStatement(bindStatement.position);
+            else super.visit(bindStatement);
+        }
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+        super.visit(whileStatement);
+        result = hoist((Statement) result);
+    }
+
+    @Override
+    public void visit(DoWhileStatement doWhileStatement) {
+        super.visit(doWhileStatement);
+        result = hoist((Statement) result);
+    }
+
+    /**
+     * Moves the invariant computations of a loop in front of it.
+     *
+     * @param loop The loop, whose inner loops are already processed.
+     * @return The loop itself if nothing can be moved, a compound statement of the moved computations and the
+     * rewritten loop otherwise.
+     */
+    private Statement hoist(Statement loop) {
+        LoopEffects effects = new LoopEffects(globalTable, localTable, loop);
+        InvariantCollector collector = new InvariantCollector(effects);
+        loop.accept(collector);
+        if (collector.computations.isEmpty() && collector.movedStatements.isEmpty()) return loop;
+
+        List<Statement> statements = new ArrayList<>(collector.movedStatements);
+        Map<String, Temporary> temporaries = new HashMap<>();
+        collector.computations.forEach((key, computation) -> {
+            Temporary temporary;
+            if (computation instanceof ArrayAccess) {
+                ArrayAccess row = (ArrayAccess) computation;
+                temporary = Temporary.declare(procedureDeclaration, localTable, row.dataType, true);
+                statements.add(temporary.bind(addressExpression(row, row)));
+            } else {
+                temporary = Temporary.declare(procedureDeclaration, localTable, PrimitiveType.intType, false);
+                statements.add(temporary.assign((Expression) computation));
+            }
+            temporaries.put(key, temporary);
+        });
+        Map<Node, Temporary> replacements = new IdentityHashMap<>();
+        collector.occurrences.forEach((occurrence, key) -> replacements.put(occurrence, temporaries.get(key)));
+        statements.add(new Replacer(replacements, collector.movedStatements).rewrite(loop));
+        return new CompoundStatement(loop.position, statements);
+    }
+
+    /**
+     * Integer temporaries are assigned at one place only, so an assignment to one with an invariant value can be moved
+     * out of the loop. Assignments to reference temporaries store into the referenced variable instead.
+     */
+    private static boolean isTemporary(Variable variable) {
+        return variable instanceof NamedVariable && ((NamedVariable) variable).name.toString().startsWith("$");
+    }
+
+    private static boolean containsVariable(Expression expression) {
+        if (expression instanceof VariableExpression) return true;
+        if (expression instanceof BinaryExpression) {
+            return containsVariable(((BinaryExpression) expression).leftOperand) || containsVariable(((BinaryExpression) expression).rightOperand);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,84 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.phases._04d_ssa.SsaTranslator;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.SymbolTable;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * This class is used to optimize the procedure bodies of the currently compiled SPL program after the semantic analysis.
+ * The optimizations transform the abstract syntax tree, so all following phases work on the optimized program.
+ * <p>
+ * Which optimizations are applied depends on the optimization level:
+ * <ul>
+ *     <li>0: No optimization.</li>
+ *     <li>1: Elimination of self-recursive tail calls, specialization of procedures for constant arguments,
+ *     inlining of small procedures, constant folding and algebraic simplification, elimination of index checks that can never fail,
+ *     strength reduction of induction variables, loop-invariant code motion, elimination of assignments to
+ *     variables that are never read again and of procedures that are never called.</li>
+ *     <li>2: The same transformations as level 1. Afterwards the {@link SsaTranslator} builds control flow graphs in
+ *     SSA form and optimizes them with sparse conditional constant propagation, global value numbering and the
+ *     elimination of redundant loads and dead stores, and the code generator generates the code from these graphs.</li>
+ * </ul>
+ */
+public class Optimizer {
+    private final int optimizationLevel;
+    private final PrintWriter listing;
+    private SymbolTable globalTable;
+
+    /**
+     * @param optimizationLevel The optimization level (-O0, -O1, -O2)
+     * @param listing           The writer to print the optimized program and the remaining index checks to (--optimize) or null
+     */
+    public Optimizer(int optimizationLevel, PrintWriter listing) {
+        this.optimizationLevel = optimizationLevel;
+        this.listing = listing;
+    }
+
+    class MyVisitor extends DoNothingVisitor {
+        @Override
+        public void visit(Program program) {
+            program.declarations.forEach(d -> d.accept(this));
+        }
+
+        @Override
+        public void visit(ProcedureDeclaration pD) {
+            var entry = (ProcedureEntry) globalTable.lookup(pD.name);
+            if (optimizationLevel >= 1) {
+                new ConstantFolder().rewrite(pD);
+                BoundsCheckEliminator boundsCheckEliminator = new BoundsCheckEliminator(globalTable, entry.localTable);
+                List<BoundsCheckEliminator.KeptCheck> keptChecks = boundsCheckEliminator.eliminate(pD);
+                if (listing != null) printKeptChecks(pD, keptChecks);
+                // Verschiebt nur Adressberechnungen ohne Indexprüfung, daher nach der Bereichsanalyse
+                new InductionVariableReduction(globalTable, entry.localTable, pD, boundsCheckEliminator).rewrite(pD);
+                new LoopInvariantCodeMotion(globalTable, entry.localTable, pD).rewrite(pD);
+                new DeadStoreEliminator(entry.localTable).rewrite(pD);
+            }
+        }
+    }
+
+    private void printKeptChecks(ProcedureDeclaration pD, List<BoundsCheckEliminator.KeptCheck> keptChecks) {
+        listing.printf("Index checks kept in procedure '%s': %d\n", pD.name, keptChecks.size());
+        keptChecks.forEach(check -> listing.printf("  %s\n", check));
+    }
+
+    public void optimize(Program program, SymbolTable globalTable) {
+        this.globalTable = globalTable;
+        if (optimizationLevel >= 1) {
+            for (GlobalDeclaration declaration : program.declarations) {
+                if (!(declaration instanceof ProcedureDeclaration)) continue;
+                var entry = (ProcedureEntry) globalTable.lookup(declaration.name);
+                new TailRecursionEliminator((ProcedureDeclaration) declaration, entry.localTable).eliminate();
+            }
+            new ProcedureSpecializer(globalTable).specialize(program);
+            new Inliner(globalTable).inline(program);
+            new UnreachableProcedureEliminator().eliminate(program);
+        }
+        program.accept(new MyVisitor());
+        if (listing != null) listing.println(program);
+    }
+}
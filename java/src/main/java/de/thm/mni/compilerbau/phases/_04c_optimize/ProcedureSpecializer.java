@@ -0,0 +1,188 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * This class clones procedures for calls passing integer literals as value arguments.
+ * <p>
+ * A value parameter is specialized if it is neither assigned nor passed as reference argument in the body of the
+ * procedure, so it has the value of its argument during the whole call. The clone does not have the specialized
+ * parameters anymore, every use of them is replaced by the literal, and the constants are folded right away. All calls
+ * passing the same literals for the specialized parameters share a clone, so the calls in the clones are specialized
+ * as well. At most {@link #MAX_CLONES} clones of a procedure with at most {@link #MAX_SIZE} nodes are made.
+ * <p>
+ * Every clone is a new procedure declaration with its own {@link ProcedureEntry} in the global table, so the
+ * following phases allocate its variables and generate its code like for any other procedure. Its name ends with
+ * the literals it is specialized for.
+ */
+class ProcedureSpecializer {
+    static final int MAX_CLONES = 4;
+    static final int MAX_SIZE = 100;
+
+    private final SymbolTable globalTable;
+    private final Map<String, Identifier> clones = new HashMap<>();
+    private final Map<Identifier, Integer> cloneCounts = new HashMap<>();
+    private final Deque<ProcedureDeclaration> worklist = new ArrayDeque<>();
+    private CallGraph callGraph;
+    private Program program;
+
+    ProcedureSpecializer(SymbolTable globalTable) {
+        this.globalTable = globalTable;
+    }
+
+    /**
+     * Collects the value parameters of a procedure that keep the value of their argument.
+     */
+    private class ReadOnlyCollector extends AstTraverser {
+        final Set<Identifier> readOnly;
+
+        ReadOnlyCollector(ProcedureDeclaration procedureDeclaration) {
+            readOnly = procedureDeclaration.parameters.stream()
+                    .filter(p -> !p.isReference)
+                    .map(p -> p.name)
+                    .collect(Collectors.toSet());
+            procedureDeclaration.accept(this);
+        }
+
+        @Override
+        public void visit(AssignStatement assignStatement) {
+            super.visit(assignStatement);
+            if (assignStatement.target instanceof NamedVariable) readOnly.remove(((NamedVariable) assignStatement.target).name);
+        }
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            super.visit(callStatement);
+            var entry = (ProcedureEntry) globalTable.lookup(callStatement.procedureName);
+            for (int i = 0; i < callStatement.arguments.size(); i++) {
+                Expression argument = callStatement.arguments.get(i);
+                if (entry.parameterTypes.get(i).isReference && argument instanceof VariableExpression
+                        && ((VariableExpression) argument).variable instanceof NamedVariable) {
+                    readOnly.remove(((NamedVariable) ((VariableExpression) argument).variable).name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a procedure body, replacing the specialized parameters by their literals.
+     */
+    private static class Substituter extends AstRewriter {
+        private final Map<Identifier, Integer> constants;
+
+        Substituter(Map<Identifier, Integer> constants) {
+            this.constants = constants;
+        }
+
+        @Override
+        public void visit(VariableExpression variableExpression) {
+            Variable variable = variableExpression.variable;
+            if (variable instanceof NamedVariable && constants.containsKey(((NamedVariable) variable).name)) {
+                result = intLiteral(variableExpression, constants.get(((NamedVariable) variable).name));
+            } else {
+                super.visit(variableExpression);
+            }
+        }
+
+        @Override
+        public void visit(NamedVariable namedVariable) {
+            // Eine neue Kopie, damit die Indexprüfungen des Klons unabhängig vom Original entfernt werden können
+            NamedVariable copy = new NamedVariable(namedVariable.position, namedVariable.name);
+            copy.dataType = namedVariable.dataType;
+            result = copy;
+        }
+    }
+
+    /**
+     * Replaces calls in a procedure by calls of specialized clones.
+     */
+    private class CallReplacer extends AstRewriter {
+        @Override
+        public void visit(CallStatement callStatement) {
+            result = specialize(callStatement);
+        }
+    }
+
+    /**
+     * Specializes the calls in all procedures of a program.
+     *
+     * @param program The program to transform.
+     * @return The number of created clones.
+     */
+    int specialize(Program program) {
+        this.program = program;
+        this.callGraph = new CallGraph(program);
+        program.declarations.stream()
+                .filter(d -> d instanceof ProcedureDeclaration)
+                .forEach(d -> worklist.add((ProcedureDeclaration) d));
+        while (!worklist.isEmpty()) new CallReplacer().rewrite(worklist.poll());
+        return clones.size();
+    }
+
+    private Statement specialize(CallStatement callStatement) {
+        ProcedureDeclaration callee = callGraph.declaration(callStatement.procedureName);
+        if (callee == null || Inliner.size(callee) > MAX_SIZE) return callStatement;
+        Set<Identifier> readOnly = new ReadOnlyCollector(callee).readOnly;
+        Map<Identifier, Integer> constants = new LinkedHashMap<>();
+        List<Expression> arguments = new ArrayList<>();
+        for (int i = 0; i < callee.parameters.size(); i++) {
+            Identifier name = callee.parameters.get(i).name;
+            Expression argument = callStatement.arguments.get(i);
+            if (readOnly.contains(name) && argument instanceof IntLiteral) {
+                constants.put(name, ((IntLiteral) argument).value);
+            } else {
+                arguments.add(argument);
+            }
+        }
+        if (constants.isEmpty()) return callStatement;
+
+        String signature = callee.name.toString() + constants;
+        Identifier clone = clones.get(signature);
+        if (clone == null) {
+            if (cloneCounts.getOrDefault(callee.name, 0) >= MAX_CLONES) return callStatement;
+            cloneCounts.merge(callee.name, 1, Integer::sum);
+            clone = declareClone(callee, constants);
+            clones.put(signature, clone);
+        }
+        return new CallStatement(callStatement.position, clone, arguments);
+    }
+
+    private Identifier declareClone(ProcedureDeclaration procedure, Map<Identifier, Integer> constants) {
+        String base = procedure.name + "_" + constants.values().stream()
+                .map(value -> value < 0 ? "m" + -(long) value : String.valueOf(value))
+                .collect(Collectors.joining("_"));
+        Identifier name = new Identifier(base);
+        for (int number = 1; globalTable.lookup(name) != null; number++) name = new Identifier(base + "_" + number);
+
+        var entry = (ProcedureEntry) globalTable.lookup(procedure.name);
+        SymbolTable localTable = new SymbolTable(globalTable);
+        List<ParameterDeclaration> parameters = new ArrayList<>();
+        List<ParameterType> parameterTypes = new ArrayList<>();
+        for (ParameterDeclaration parameter : procedure.parameters) {
+            if (constants.containsKey(parameter.name)) continue;
+            var variable = (VariableEntry) entry.localTable.lookup(parameter.name);
+            localTable.enter(parameter.name, new VariableEntry(variable.type, variable.isReference));
+            parameters.add(parameter);
+            parameterTypes.add(new ParameterType(variable.type, variable.isReference));
+        }
+        for (VariableDeclaration declaration : procedure.variables) {
+            var variable = (VariableEntry) entry.localTable.lookup(declaration.name);
+            localTable.enter(declaration.name, new VariableEntry(variable.type, variable.isReference));
+        }
+        globalTable.enter(name, new ProcedureEntry(localTable, parameterTypes));
+
+        Substituter substituter = new Substituter(constants);
+        List<Statement> body = new ArrayList<>();
+        procedure.body.forEach(statement -> body.add(substituter.rewrite(statement)));
+        ProcedureDeclaration clone = new ProcedureDeclaration(procedure.position, name, parameters,
+                new ArrayList<>(procedure.variables), body);
+        new ConstantFolder().rewrite(clone);
+        program.declarations.add(program.declarations.indexOf(procedure) + 1, clone);
+        worklist.add(clone);
+        return name;
+    }
+}
@@ -0,0 +1,151 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class turns calls of a procedure to itself that are the last statement on their path through the body into
+ * a loop, so they neither allocate a new stack frame nor pay for the call.
+ * <p>
+ * A tail call assigns the values of its arguments to the value parameters and marks that the body has to be run
+ * again. Every argument has to be evaluated with the old values, so a parameter is only assigned once no other
+ * argument still to be evaluated reads it. If that is impossible, an argument is stored in a {@link Temporary} first. The body is wrapped into a loop that repeats as long as it is marked.
+ * <p>
+ * A call is only replaced if every reference argument is the reference parameter itself. Other references would have
+ * to be rebound, and might point to a local variable of the procedure, which is reused by the next iteration.
+ * Calls of other procedures in tail position are kept, because the frame of the callee cannot be placed into the frame
+ * of the caller in general.
+ */
+class TailRecursionEliminator {
+    private final ProcedureDeclaration procedureDeclaration;
+    private final SymbolTable localTable;
+    private Temporary again;
+    private int eliminated = 0;
+
+    TailRecursionEliminator(ProcedureDeclaration procedureDeclaration, SymbolTable localTable) {
+        this.procedureDeclaration = procedureDeclaration;
+        this.localTable = localTable;
+    }
+
+    /**
+     * @return The number of eliminated calls.
+     */
+    int eliminate() {
+        List<Statement> body = procedureDeclaration.body;
+        if (body.isEmpty()) return 0;
+        body.set(body.size() - 1, rewriteTail(body.get(body.size() - 1)));
+        if (eliminated == 0) return 0;
+
+        List<Statement> loopBody = new ArrayList<>();
+        loopBody.add(again.assign(AstRewriter.intLiteral(procedureDeclaration, 0)));
+        loopBody.addAll(body);
+        BinaryExpression condition = new BinaryExpression(procedureDeclaration.position, BinaryExpression.Operator.EQU,
+                again.expression(procedureDeclaration.position), AstRewriter.intLiteral(procedureDeclaration, 1));
+        condition.dataType = PrimitiveType.boolType;
+        body.clear();
+        body.add(new DoWhileStatement(procedureDeclaration.position, condition, new CompoundStatement(procedureDeclaration.position, loopBody)));
+        return eliminated;
+    }
+
+    /**
+     * Replaces the self-recursive calls in tail position of a statement.
+     *
+     * @param statement A statement that is the last one on its path through the body.
+     * @return The rewritten statement.
+     */
+    private Statement rewriteTail(Statement statement) {
+        if (statement instanceof CallStatement && isEliminable((CallStatement) statement)) {
+            return replace((CallStatement) statement);
+        } else if (statement instanceof IfStatement) {
+            IfStatement ifStatement = (IfStatement) statement;
+            Statement thenPart = rewriteTail(ifStatement.thenPart);
+            Statement elsePart = rewriteTail(ifStatement.elsePart);
+            if (thenPart == ifStatement.thenPart && elsePart == ifStatement.elsePart) return ifStatement;
+            return new IfStatement(ifStatement.position, ifStatement.condition, thenPart, elsePart);
+        } else if (statement instanceof CompoundStatement) {
+            CompoundStatement compoundStatement = (CompoundStatement) statement;
+            if (compoundStatement.statements.isEmpty()) return compoundStatement;
+            List<Statement> statements = new ArrayList<>(compoundStatement.statements);
+            Statement last = rewriteTail(statements.get(statements.size() - 1));
+            if (last == statements.get(statements.size() - 1)) return compoundStatement;
+            statements.set(statements.size() - 1, last);
+            return new CompoundStatement(compoundStatement.position, statements);
+        }
+        return statement;
+    }
+
+    private boolean isEliminable(CallStatement callStatement) {
+        if (!callStatement.procedureName.equals(procedureDeclaration.name)) return false;
+        for (int i = 0; i < procedureDeclaration.parameters.size(); i++) {
+            ParameterDeclaration parameter = procedureDeclaration.parameters.get(i);
+            if (parameter.isReference && !isParameter(callStatement.arguments.get(i), parameter)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isParameter(Expression argument, ParameterDeclaration parameter) {
+        return argument instanceof VariableExpression
+                && ((VariableExpression) argument).variable instanceof NamedVariable
+                && ((NamedVariable) ((VariableExpression) argument).variable).name.equals(parameter.name);
+    }
+
+    private AssignStatement assignParameter(int index, Expression value) {
+        NamedVariable target = new NamedVariable(value.position, procedureDeclaration.parameters.get(index).name);
+        target.dataType = PrimitiveType.intType;
+        return new AssignStatement(value.position, target, value);
+    }
+
+    /**
+     * @return true if evaluating the argument reads the parameter.
+     */
+    private static boolean reads(Expression argument, ParameterDeclaration parameter) {
+        boolean[] reads = {false};
+        argument.accept(new AstTraverser() {
+            @Override
+            public void visit(NamedVariable namedVariable) {
+                if (namedVariable.name.equals(parameter.name)) reads[0] = true;
+            }
+        });
+        return reads[0];
+    }
+
+    private Statement replace(CallStatement callStatement) {
+        if (again == null) again = Temporary.declare(procedureDeclaration, localTable, PrimitiveType.intType, false);
+        eliminated++;
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < procedureDeclaration.parameters.size(); i++) {
+            if (!isParameter(callStatement.arguments.get(i), procedureDeclaration.parameters.get(i))) changed.add(i);
+        }
+        List<Statement> statements = new ArrayList<>();
+        List<AssignStatement> assignments = new ArrayList<>();
+        List<AssignStatement> deferred = new ArrayList<>();
+        while (!changed.isEmpty()) {
+            // Ein Parameter kann direkt zugewiesen werden, wenn kein anderes noch offenes Argument ihn liest
+            int next = -1;
+            for (int i : changed) {
+                if (changed.stream().noneMatch(j -> j != i && reads(callStatement.arguments.get(j), procedureDeclaration.parameters.get(i)))) {
+                    next = i;
+                    break;
+                }
+            }
+            if (next >= 0) {
+                assignments.add(assignParameter(next, callStatement.arguments.get(next)));
+            } else {
+                next = changed.get(0);
+                Expression argument = callStatement.arguments.get(next);
+                Temporary temporary = Temporary.declare(procedureDeclaration, localTable, PrimitiveType.intType, false);
+                statements.add(temporary.assign(argument));
+                deferred.add(assignParameter(next, temporary.expression(argument.position)));
+            }
+            changed.remove((Integer) next);
+        }
+        statements.addAll(assignments);
+        statements.addAll(deferred);
+        statements.add(again.assign(AstRewriter.intLiteral(callStatement, 1)));
+        return new CompoundStatement(callStatement.position, statements);
+    }
+}
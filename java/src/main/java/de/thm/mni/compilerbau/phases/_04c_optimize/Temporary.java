@@ -0,0 +1,77 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.table.VariableEntry;
+import de.thm.mni.compilerbau.types.Type;
+
+/**
+ * This class represents a local variable introduced by an optimization.
+ * <p>
+ * The names of temporaries start with a $, so they can never collide with identifiers of the SPL program.
+ * A temporary declared as reference holds the address of a variable and is bound to it by a {@link BindStatement}.
+ */
+class Temporary {
+    final Identifier name;
+    final VariableEntry entry;
+
+    private Temporary(Identifier name, VariableEntry entry) {
+        this.name = name;
+        this.entry = entry;
+    }
+
+    /**
+     * Declares a new temporary in a procedure.
+     *
+     * @param procedureDeclaration The procedure the temporary belongs to.
+     * @param localTable           The local table of the procedure.
+     * @param type                 The type of the temporary.
+     * @param isReference          Whether the temporary holds the address of a variable of the given type.
+     * @return The new temporary.
+     */
+    static Temporary declare(ProcedureDeclaration procedureDeclaration, SymbolTable localTable, Type type, boolean isReference) {
+        int number = 0;
+        while (localTable.lookup(new Identifier("$t" + number)) != null) number++;
+        Identifier name = new Identifier("$t" + number);
+
+        VariableEntry entry = new VariableEntry(type, isReference);
+        localTable.enter(name, entry);
+        NamedTypeExpression typeExpression = new NamedTypeExpression(procedureDeclaration.position, new Identifier(type.toString()));
+        typeExpression.dataType = type;
+        procedureDeclaration.variables.add(new VariableDeclaration(procedureDeclaration.position, name, typeExpression));
+        return new Temporary(name, entry);
+    }
+
+    NamedVariable variable(Position position) {
+        NamedVariable variable = new NamedVariable(position, name);
+        variable.dataType = entry.type;
+        return variable;
+    }
+
+    VariableExpression expression(Position position) {
+        VariableExpression expression = new VariableExpression(position, variable(position));
+        expression.dataType = entry.type;
+        return expression;
+    }
+
+    /**
+     * Creates the statement assigning a value to an integer temporary.
+     *
+     * @param value The value of the temporary.
+     * @return The assignment.
+     */
+    AssignStatement assign(Expression value) {
+        return new AssignStatement(value.position, variable(value.position), value);
+    }
+
+    /**
+     * Creates the statement binding a reference temporary to an address.
+     *
+     * @param address The address the temporary is bound to.
+     * @return The binding.
+     */
+    BindStatement bind(Expression address) {
+        return new BindStatement(address.position, variable(address.position), address);
+    }
+}
@@ -0,0 +1,25 @@
+package de.thm.mni.compilerbau.phases._04c_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.Identifier;
+
+import java.util.Set;
+
+/**
+ * This class removes the declarations of procedures that are never called, directly or indirectly, from the
+ * procedure main. The {@link CallGraph} is built from the {@link CallStatement}s of the procedure bodies, so all
+ * following phases neither allocate nor generate code for the removed procedures. Their entries remain in the symbol
+ * table.
+ */
+class UnreachableProcedureEliminator {
+    /**
+     * @param program The program whose unreachable procedures are removed.
+     * @return The number of removed procedures.
+     */
+    int eliminate(Program program) {
+        Set<Identifier> reachable = new CallGraph(program).reachableFrom(new Identifier("main"));
+        int before = program.declarations.size();
+        program.declarations.removeIf(declaration -> declaration instanceof ProcedureDeclaration && !reachable.contains(declaration.name));
+        return before - program.declarations.size();
+    }
+}
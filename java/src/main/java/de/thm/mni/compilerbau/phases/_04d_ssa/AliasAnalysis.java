@@ -0,0 +1,142 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.VariableEntry;
+
+import java.util.*;
+
+/**
+ * This class decides which addresses in the control flow graphs of a program may refer to the same storage.
+ * <p>
+ * Most addresses are reached from a root: either the frame address of a variable of the procedure itself, or the
+ * pointer passed for a reference parameter. Other addresses may point anywhere. A reference parameter never points into the stack frame of its own
+ * procedure, since an SPL procedure can only pass its own variables or the references it received itself, and each
+ * call gets a new stack frame. So an address rooted in the frame never aliases one reached through a reference
+ * parameter, and addresses in different variables never alias.
+ * <p>
+ * Two reference parameters of a procedure may only point to the same storage if some call passes overlapping
+ * arguments for them. These pairs are computed for the whole program: starting without any aliasing, the arguments
+ * of all calls are checked until no new pair is found, since a pair found in a procedure can make the arguments
+ * of its calls overlap as well.
+ */
+public class AliasAnalysis {
+    private final Map<VariableEntry, Set<VariableEntry>> aliases = new HashMap<>();
+
+    /**
+     * @param graphs The control flow graphs of all procedures of the program.
+     */
+    public AliasAnalysis(Collection<ControlFlowGraph> graphs) {
+        Map<ProcedureEntry, ControlFlowGraph> graphOf = new HashMap<>();
+        graphs.forEach(graph -> graphOf.put(graph.procedure, graph));
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (ControlFlowGraph graph : graphs) {
+                for (BasicBlock block : graph.blocks()) {
+                    for (Operation operation : block.operations()) {
+                        if (!(operation instanceof Call)) continue;
+                        ControlFlowGraph callee = graphOf.get(((Call) operation).procedure);
+                        if (callee != null) changed |= addAliases((Call) operation, callee.parameters());
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean addAliases(Call call, List<VariableEntry> parameters) {
+        boolean changed = false;
+        for (int i = 0; i < parameters.size(); i++) {
+            for (int j = i + 1; j < parameters.size(); j++) {
+                VariableEntry first = parameters.get(i);
+                VariableEntry second = parameters.get(j);
+                if (!first.isReference || !second.isReference) continue;
+                if (!mayOverlap(call.operand(i), call.operand(j))) continue;
+                changed |= aliases.computeIfAbsent(first, p -> new HashSet<>()).add(second);
+                aliases.computeIfAbsent(second, p -> new HashSet<>()).add(first);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return The address of the variable an address points into: a frame address or the pointer of a reference
+     * parameter.
+     */
+    static Value root(Value address) {
+        while (address instanceof ElementAddress) address = ((ElementAddress) address).array();
+        return address;
+    }
+
+    /**
+     * Checks if it is known where a root points to. Addresses computed otherwise, like the pointers the optimizations
+     * of phase 4c keep in reference temporaries, may point anywhere, including the own stack frame.
+     */
+    static boolean isKnownRoot(Value root) {
+        return root instanceof FrameAddress || parameter(root) != null;
+    }
+
+    /**
+     * @return The reference parameter whose pointer is the root, or null if the root is something else.
+     */
+    static VariableEntry parameter(Value root) {
+        if (!(root instanceof Load) || !(((Load) root).address() instanceof FrameAddress)) return null;
+        VariableEntry entry = ((FrameAddress) ((Load) root).address()).entry;
+        return entry.isReference ? entry : null;
+    }
+
+    /**
+     * @return The distance of an address from its root, or null if it is not known at compile time.
+     */
+    private static Integer offset(Value address) {
+        if (!(address instanceof ElementAddress)) return 0;
+        ElementAddress elementAddress = (ElementAddress) address;
+        Integer offset = offset(elementAddress.array());
+        if (offset == null || !(elementAddress.index() instanceof Constant)) return null;
+        return offset + ((Constant) elementAddress.index()).value * elementAddress.elementSize;
+    }
+
+    /**
+     * Checks if the variables two addresses point into may share storage.
+     */
+    public boolean mayOverlap(Value first, Value second) {
+        Value firstRoot = root(first);
+        Value secondRoot = root(second);
+        if (!isKnownRoot(firstRoot) || !isKnownRoot(secondRoot)) return true;
+        boolean firstInFrame = firstRoot instanceof FrameAddress;
+        boolean secondInFrame = secondRoot instanceof FrameAddress;
+        if (firstInFrame || secondInFrame) {
+            return firstInFrame && secondInFrame && ((FrameAddress) firstRoot).entry == ((FrameAddress) secondRoot).entry;
+        }
+        VariableEntry firstParameter = parameter(firstRoot);
+        VariableEntry secondParameter = parameter(secondRoot);
+        if (firstParameter == secondParameter) return true;
+        return aliases.getOrDefault(firstParameter, Set.of()).contains(secondParameter);
+    }
+
+    /**
+     * Checks if two addresses of integers may be the same.
+     */
+    public boolean mayAlias(Value first, Value second) {
+        if (!mayOverlap(first, second)) return false;
+        Value firstRoot = root(first);
+        Value secondRoot = root(second);
+        boolean sameRoot = firstRoot == secondRoot
+                || (firstRoot instanceof FrameAddress && secondRoot instanceof FrameAddress
+                && ((FrameAddress) firstRoot).entry == ((FrameAddress) secondRoot).entry)
+                || (parameter(firstRoot) != null && parameter(firstRoot) == parameter(secondRoot));
+        if (!sameRoot) return true;
+        Integer firstOffset = offset(first);
+        Integer secondOffset = offset(second);
+        return firstOffset == null || secondOffset == null || firstOffset.equals(secondOffset);
+    }
+
+    /**
+     * Checks if a call may store to an address, i.e. if it passes a reference to overlapping storage.
+     */
+    public boolean mayStoreTo(Call call, Value address) {
+        for (int i = 0; i < call.operands().size(); i++) {
+            if (call.procedure.parameterTypes.get(i).isReference && mayOverlap(call.operand(i), address)) return true;
+        }
+        return false;
+    }
+}
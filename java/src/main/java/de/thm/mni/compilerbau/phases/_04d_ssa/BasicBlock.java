@@ -0,0 +1,168 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents a basic block: a sequence of operations that is always executed completely, starting with
+ * the first one. A block begins with its {@link Phi} functions and ends with a {@link Terminator}.
+ */
+public class BasicBlock {
+    final ControlFlowGraph graph;
+    public final int id;
+    private final List<Phi> phis = new ArrayList<>();
+    private final List<Operation> operations = new ArrayList<>();
+    private Terminator terminator;
+    final List<BasicBlock> predecessors = new ArrayList<>();
+
+    BasicBlock(ControlFlowGraph graph, int id) {
+        this.graph = graph;
+        this.id = id;
+    }
+
+    public ControlFlowGraph graph() {
+        return graph;
+    }
+
+    public List<Phi> phis() {
+        return Collections.unmodifiableList(phis);
+    }
+
+    /**
+     * @return The operations of the block, without the phi functions and the terminator.
+     */
+    public List<Operation> operations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * @return The terminator, null while the block is being built.
+     */
+    public Terminator terminator() {
+        return terminator;
+    }
+
+    /**
+     * @return All operations of the block in the order of their execution: phi functions, operations, terminator.
+     */
+    public List<Operation> allOperations() {
+        List<Operation> all = new ArrayList<>(phis);
+        all.addAll(operations);
+        if (terminator != null) all.add(terminator);
+        return all;
+    }
+
+    /**
+     * @return The blocks that may be executed directly before this one. Operand i of each phi function belongs to
+     * predecessor i.
+     */
+    public List<BasicBlock> predecessors() {
+        return Collections.unmodifiableList(predecessors);
+    }
+
+    public List<BasicBlock> successors() {
+        return terminator == null ? List.of() : terminator.successors();
+    }
+
+    /**
+     * Appends an operation to the block. Phi functions are appended to the phi functions, a terminator replaces the
+     * previous one and becomes a predecessor of its successors.
+     *
+     * @param operation The new operation, not contained in any block.
+     * @return The operation.
+     */
+    public <T extends Operation> T add(T operation) {
+        if (operation instanceof Phi) {
+            phis.add((Phi) operation);
+        } else if (operation instanceof Terminator) {
+            if (terminator != null) removeTerminator();
+            terminator = (Terminator) operation;
+            for (BasicBlock successor : terminator.successors()) successor.predecessors.add(this);
+        } else {
+            operations.add(operation);
+        }
+        operation.block = this;
+        operation.id = graph.nextValueId();
+        return operation;
+    }
+
+    /**
+     * Inserts an operation in front of another operation of this block.
+     *
+     * @param operation The new operation, neither a phi function nor a terminator.
+     * @param position  The operation of this block the new one is executed before. For a terminator, the new
+     *                  operation becomes the last one before it.
+     * @return The operation.
+     */
+    public <T extends Operation> T insertBefore(T operation, Operation position) {
+        int index = position instanceof Terminator ? operations.size() : operations.indexOf(position);
+        operations.add(index, operation);
+        operation.block = this;
+        operation.id = graph.nextValueId();
+        return operation;
+    }
+
+    /**
+     * Replaces the terminator by one leading to some of the previous successors only. The edges to the remaining
+     * successors are kept together with the operands of their phi functions, the other edges are removed.
+     *
+     * @param replacement The new terminator, not contained in any block.
+     */
+    public void replaceTerminator(Terminator replacement) {
+        Terminator previous = terminator;
+        for (BasicBlock successor : previous.successors()) {
+            if (!replacement.successors().contains(successor)) successor.removePredecessor(this);
+        }
+        previous.dropOperands();
+        previous.block = null;
+        terminator = replacement;
+        replacement.block = this;
+        replacement.id = graph.nextValueId();
+    }
+
+    void remove(Operation operation) {
+        if (operation == terminator) {
+            removeTerminator();
+        } else if (operation instanceof Phi) {
+            phis.remove(operation);
+        } else {
+            operations.remove(operation);
+        }
+        operation.block = null;
+    }
+
+    private void removeTerminator() {
+        for (BasicBlock successor : terminator.successors()) successor.removePredecessor(this);
+        terminator.block = null;
+        terminator = null;
+    }
+
+    /**
+     * Removes the edge from a predecessor to this block, together with the operands of the phi functions belonging
+     * to it.
+     *
+     * @param predecessor A predecessor of this block.
+     */
+    void removePredecessor(BasicBlock predecessor) {
+        int index = predecessors.indexOf(predecessor);
+        predecessors.remove(index);
+        for (Phi phi : phis) phi.removeOperand(index);
+    }
+
+    public String name() {
+        return "B" + id;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(name() + ":");
+        if (!predecessors.isEmpty()) {
+            builder.append("\t\t; predecessors:");
+            predecessors.forEach(predecessor -> builder.append(" ").append(predecessor.name()));
+        }
+        builder.append("\n");
+        allOperations().forEach(operation -> builder.append("\t").append(operation).append("\n"));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.absyn.BinaryExpression;
+
+/**
+ * This class represents an arithmetic operation combining two values.
+ */
+public class BinaryOperation extends Operation {
+    /**
+     * The operator, always an arithmetic one.
+     */
+    public final BinaryExpression.Operator operator;
+
+    BinaryOperation(BinaryExpression.Operator operator, Value left, Value right) {
+        super(left, right);
+        this.operator = operator;
+    }
+
+    public Value left() {
+        return operand(0);
+    }
+
+    public Value right() {
+        return operand(1);
+    }
+
+    @Override
+    public boolean hasValue() {
+        return true;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return operator.toString().toLowerCase() + " " + operandList();
+    }
+}
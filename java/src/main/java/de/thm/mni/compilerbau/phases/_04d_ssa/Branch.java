@@ -0,0 +1,62 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.absyn.BinaryExpression;
+
+import java.util.List;
+
+/**
+ * This class represents a conditional transfer of control, depending on the comparison of two values.
+ */
+public class Branch extends Terminator {
+    /**
+     * The operator, always a comparison.
+     */
+    public final BinaryExpression.Operator comparison;
+    private BasicBlock whenTrue;
+    private BasicBlock whenFalse;
+
+    Branch(BinaryExpression.Operator comparison, Value left, Value right, BasicBlock whenTrue, BasicBlock whenFalse) {
+        super(left, right);
+        this.comparison = comparison;
+        this.whenTrue = whenTrue;
+        this.whenFalse = whenFalse;
+    }
+
+    public Value left() {
+        return operand(0);
+    }
+
+    public Value right() {
+        return operand(1);
+    }
+
+    public BasicBlock whenTrue() {
+        return whenTrue;
+    }
+
+    public BasicBlock whenFalse() {
+        return whenFalse;
+    }
+
+    @Override
+    public List<BasicBlock> successors() {
+        return List.of(whenTrue, whenFalse);
+    }
+
+    @Override
+    void replaceSuccessor(BasicBlock successor, BasicBlock replacement) {
+        if (whenTrue == successor) whenTrue = replacement;
+        if (whenFalse == successor) whenFalse = replacement;
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return String.format("branch %s %s %s ? %s : %s", left().name(), comparison.toString().toLowerCase(), right().name(),
+                whenTrue.name(), whenFalse.name());
+    }
+}
@@ -0,0 +1,41 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+
+import java.util.List;
+
+/**
+ * This class represents a procedure call. The operands are the arguments: values for value parameters and
+ * addresses for reference parameters.
+ */
+public class Call extends Operation {
+    public final Identifier procedureName;
+    public final ProcedureEntry procedure;
+
+    Call(Identifier procedureName, ProcedureEntry procedure, List<Value> arguments) {
+        super(arguments.toArray(new Value[0]));
+        this.procedureName = procedureName;
+        this.procedure = procedure;
+    }
+
+    @Override
+    public boolean hasValue() {
+        return false;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return String.format("call %s(%s)", procedureName, operandList());
+    }
+}
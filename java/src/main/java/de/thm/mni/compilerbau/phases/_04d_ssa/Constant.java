@@ -0,0 +1,18 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+/**
+ * This class represents an integer constant.
+ * Constants are unique within a {@link ControlFlowGraph}, so two constants with the same value are the same object.
+ */
+public class Constant extends Value {
+    public final int value;
+
+    Constant(int value) {
+        this.value = value;
+    }
+
+    @Override
+    public String name() {
+        return Integer.toString(value);
+    }
+}
@@ -0,0 +1,144 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.VariableEntry;
+
+import java.util.*;
+
+/**
+ * This class represents the body of a procedure as control flow graph of {@link BasicBlock}s in SSA form.
+ * The blocks are kept in the order they are placed in the generated code, starting with the entry block.
+ */
+public class ControlFlowGraph {
+    public final Identifier procedureName;
+    public final ProcedureEntry procedure;
+    private final List<VariableEntry> parameters;
+    private final List<BasicBlock> blocks = new ArrayList<>();
+    private final Map<Integer, Constant> constants = new HashMap<>();
+    private final Undefined undefined = new Undefined();
+    private int nextBlockId = 0;
+    private int nextValueId = 0;
+
+    ControlFlowGraph(Identifier procedureName, ProcedureEntry procedure, List<VariableEntry> parameters) {
+        this.procedureName = procedureName;
+        this.procedure = procedure;
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return The entries of the parameters, in the order of the arguments of a call.
+     */
+    public List<VariableEntry> parameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * @return The blocks in the order of the generated code.
+     */
+    public List<BasicBlock> blocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    public BasicBlock entryBlock() {
+        return blocks.get(0);
+    }
+
+    /**
+     * Creates a new block, which is not yet placed in the code.
+     */
+    BasicBlock newBlock() {
+        return new BasicBlock(this, nextBlockId++);
+    }
+
+    /**
+     * Places a block behind all blocks placed so far.
+     */
+    void place(BasicBlock block) {
+        blocks.add(block);
+    }
+
+    int nextValueId() {
+        return nextValueId++;
+    }
+
+    /**
+     * @param value An integer.
+     * @return The constant with the given value.
+     */
+    public Constant constant(int value) {
+        return constants.computeIfAbsent(value, Constant::new);
+    }
+
+    public Undefined undefined() {
+        return undefined;
+    }
+
+    /**
+     * Splits every edge leading from a block with several successors to a block with phi functions and several
+     * predecessors. The new block is placed directly behind the predecessor. Afterwards there is a place for
+     * the copies resolving the phi functions on every edge, which is only executed when the edge is taken.
+     */
+    public void splitCriticalEdges() {
+        for (BasicBlock block : new ArrayList<>(blocks)) {
+            if (block.phis().isEmpty() || block.predecessors().size() < 2) continue;
+            for (BasicBlock predecessor : new ArrayList<>(block.predecessors())) {
+                if (new HashSet<>(predecessor.successors()).size() < 2) continue;
+                BasicBlock edge = newBlock();
+                blocks.add(blocks.indexOf(predecessor) + 1, edge);
+                predecessor.terminator().replaceSuccessor(block, edge);
+                edge.predecessors.add(predecessor);
+                // Der neue Block nimmt den Platz des Vorgängers ein, die Operanden der Phi-Funktionen bleiben gültig
+                edge.add(new Jump(block));
+                block.predecessors.remove(block.predecessors.size() - 1);
+                block.predecessors.set(block.predecessors.indexOf(predecessor), edge);
+            }
+        }
+    }
+
+    /**
+     * Removes a block, together with its operations and the edges leaving it.
+     *
+     * @param block A block that is never executed.
+     */
+    public void removeBlock(BasicBlock block) {
+        for (Operation operation : block.allOperations()) {
+            operation.replaceAllUsesWith(undefined);
+            operation.remove();
+        }
+        blocks.remove(block);
+    }
+
+    /**
+     * Removes phi functions which do not merge different values anymore, e.g. after edges have been removed.
+     * Such a phi function is replaced by the only value it merges, which may make other phi functions trivial.
+     */
+    public void removeTrivialPhis() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : blocks) {
+                for (Phi phi : new ArrayList<>(block.phis())) {
+                    Value same = null;
+                    boolean trivial = true;
+                    for (Value operand : phi.operands()) {
+                        if (operand == same || operand == phi) continue;
+                        if (same != null) trivial = false;
+                        same = operand;
+                    }
+                    if (!trivial) continue;
+                    phi.replaceAllUsesWith(same != null ? same : undefined);
+                    phi.remove();
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("procedure " + procedureName + ":\n");
+        blocks.forEach(builder::append);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.table.VariableEntry;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.*;
+
+/**
+ * This class removes stores to variables in the stack frame that are never read afterwards.
+ * <p>
+ * Variables that are promoted to SSA values have no stores; unused assignments to them are removed with their values
+ * by the {@link DeadValueElimination}. The remaining variables are arrays and integers passed by reference. For them,
+ * a backward liveness analysis computes which variables of the frame may still be read after each operation: a
+ * variable is read by a load from an address into it and by a call receiving a reference into it. Loads and calls
+ * using a pointer computed elsewhere may read every variable. A store to the whole of an integer variable ends its
+ * liveness. The frame is released on return, so nothing is live there.
+ */
+class DeadStoreElimination {
+    private final ControlFlowGraph graph;
+    private final Set<VariableEntry> frameVariables = new HashSet<>();
+
+    DeadStoreElimination(ControlFlowGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * @return The number of removed stores.
+     */
+    int run() {
+        for (BasicBlock block : graph.blocks()) {
+            for (Operation operation : block.operations()) {
+                if (operation instanceof FrameAddress) frameVariables.add(((FrameAddress) operation).entry);
+            }
+        }
+        Map<BasicBlock, Set<VariableEntry>> liveAtStart = new HashMap<>();
+        List<BasicBlock> order = new ArrayList<>(new DominatorTree(graph).reversePostorder());
+        Collections.reverse(order);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : order) {
+                Set<VariableEntry> live = transfer(block, liveAtEnd(block, liveAtStart), false);
+                if (!live.equals(liveAtStart.get(block))) {
+                    liveAtStart.put(block, live);
+                    changed = true;
+                }
+            }
+        }
+        int removed = 0;
+        for (BasicBlock block : order) {
+            int before = block.operations().size();
+            transfer(block, liveAtEnd(block, liveAtStart), true);
+            removed += before - block.operations().size();
+        }
+        return removed;
+    }
+
+    private static Set<VariableEntry> liveAtEnd(BasicBlock block, Map<BasicBlock, Set<VariableEntry>> liveAtStart) {
+        Set<VariableEntry> live = new HashSet<>();
+        block.successors().forEach(successor -> live.addAll(liveAtStart.getOrDefault(successor, Set.of())));
+        return live;
+    }
+
+    /**
+     * Marks the variables of the frame an address may point into as read.
+     */
+    private void read(Value address, Set<VariableEntry> live) {
+        Value root = AliasAnalysis.root(address);
+        if (root instanceof FrameAddress) {
+            live.add(((FrameAddress) root).entry);
+        } else if (!AliasAnalysis.isKnownRoot(root)) {
+            live.addAll(frameVariables);
+        }
+    }
+
+    /**
+     * Computes the variables live at the start of a block.
+     *
+     * @param live   The variables live at the end of the block, which are updated.
+     * @param remove Whether to remove the stores to variables that are not live.
+     */
+    private Set<VariableEntry> transfer(BasicBlock block, Set<VariableEntry> live, boolean remove) {
+        List<Operation> operations = new ArrayList<>(block.operations());
+        Collections.reverse(operations);
+        for (Operation operation : operations) {
+            if (operation instanceof Load) {
+                read(((Load) operation).address(), live);
+            } else if (operation instanceof Call) {
+                Call call = (Call) operation;
+                for (int i = 0; i < call.operands().size(); i++) {
+                    if (call.procedure.parameterTypes.get(i).isReference) read(call.operand(i), live);
+                }
+            } else if (operation instanceof Store) {
+                Value address = ((Store) operation).address();
+                if (!(AliasAnalysis.root(address) instanceof FrameAddress)) continue;
+                VariableEntry variable = ((FrameAddress) AliasAnalysis.root(address)).entry;
+                if (!live.contains(variable)) {
+                    if (remove) operation.remove();
+                } else if (address instanceof FrameAddress && variable.type == PrimitiveType.intType) {
+                    live.remove(variable);
+                }
+            }
+        }
+        return live;
+    }
+}
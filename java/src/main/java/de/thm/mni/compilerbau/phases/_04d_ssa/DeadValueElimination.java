@@ -0,0 +1,40 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import java.util.*;
+
+/**
+ * This class removes operations whose values are never needed.
+ * Starting at the operations with side effects, all operations contributing to them are marked; the others are
+ * removed. Unlike removing unused operations one by one, this also removes cycles of phi functions that only use
+ * each other, like a variable that is counted in a loop but never read afterwards.
+ */
+class DeadValueElimination {
+    /**
+     * @param graph The control flow graph to clean up.
+     * @return The number of removed operations.
+     */
+    int run(ControlFlowGraph graph) {
+        Set<Operation> live = new HashSet<>();
+        Deque<Operation> worklist = new ArrayDeque<>();
+        for (BasicBlock block : graph.blocks()) {
+            for (Operation operation : block.allOperations()) {
+                if (operation.hasSideEffects() && live.add(operation)) worklist.add(operation);
+            }
+        }
+        while (!worklist.isEmpty()) {
+            for (Value operand : worklist.poll().operands()) {
+                if (operand instanceof Operation && live.add((Operation) operand)) worklist.add((Operation) operand);
+            }
+        }
+        int removed = 0;
+        for (BasicBlock block : graph.blocks()) {
+            for (Operation operation : block.allOperations()) {
+                if (live.contains(operation)) continue;
+                operation.replaceAllUsesWith(graph.undefined());
+                operation.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,104 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import java.util.*;
+
+/**
+ * This class computes the dominator tree of a control flow graph with the algorithm of Cooper, Harvey and Kennedy,
+ * "A Simple, Fast Dominance Algorithm" (2001).
+ * A block dominates another block, if every path from the entry block to the other block passes through it.
+ * The immediate dominator of a block is its closest strict dominator; it is the parent in the tree.
+ */
+public class DominatorTree {
+    private final List<BasicBlock> reversePostorder = new ArrayList<>();
+    private final Map<BasicBlock, Integer> postorderNumbers = new HashMap<>();
+    private final Map<BasicBlock, BasicBlock> immediateDominators = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> children = new HashMap<>();
+
+    public DominatorTree(ControlFlowGraph graph) {
+        BasicBlock entry = graph.entryBlock();
+        numberBlocks(entry);
+        immediateDominators.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : reversePostorder) {
+                if (block == entry) continue;
+                BasicBlock dominator = null;
+                for (BasicBlock predecessor : block.predecessors()) {
+                    if (!immediateDominators.containsKey(predecessor)) continue;
+                    dominator = dominator == null ? predecessor : intersect(predecessor, dominator);
+                }
+                if (dominator != immediateDominators.get(block)) {
+                    immediateDominators.put(block, dominator);
+                    changed = true;
+                }
+            }
+        }
+        for (BasicBlock block : reversePostorder) {
+            children.put(block, new ArrayList<>());
+            if (block != entry) children.get(immediateDominators.get(block)).add(block);
+        }
+    }
+
+    private void numberBlocks(BasicBlock entry) {
+        // Iterative Tiefensuche, damit lange Ketten von Blöcken den Stack nicht sprengen
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<Iterator<BasicBlock>> stack = new ArrayDeque<>();
+        Deque<BasicBlock> path = new ArrayDeque<>();
+        visited.add(entry);
+        stack.push(entry.successors().iterator());
+        path.push(entry);
+        while (!stack.isEmpty()) {
+            if (stack.peek().hasNext()) {
+                BasicBlock successor = stack.peek().next();
+                if (visited.add(successor)) {
+                    stack.push(successor.successors().iterator());
+                    path.push(successor);
+                }
+            } else {
+                stack.pop();
+                BasicBlock block = path.pop();
+                postorderNumbers.put(block, postorderNumbers.size());
+                reversePostorder.add(0, block);
+            }
+        }
+    }
+
+    private BasicBlock intersect(BasicBlock first, BasicBlock second) {
+        while (first != second) {
+            while (postorderNumbers.get(first) < postorderNumbers.get(second)) first = immediateDominators.get(first);
+            while (postorderNumbers.get(second) < postorderNumbers.get(first)) second = immediateDominators.get(second);
+        }
+        return first;
+    }
+
+    /**
+     * @return The blocks reachable from the entry block, each one after all of its dominators.
+     */
+    public List<BasicBlock> reversePostorder() {
+        return Collections.unmodifiableList(reversePostorder);
+    }
+
+    /**
+     * @return The immediate dominator of the block, or null for the entry block.
+     */
+    public BasicBlock immediateDominator(BasicBlock block) {
+        BasicBlock dominator = immediateDominators.get(block);
+        return dominator == block ? null : dominator;
+    }
+
+    /**
+     * @return The blocks immediately dominated by the block.
+     */
+    public List<BasicBlock> children(BasicBlock block) {
+        return Collections.unmodifiableList(children.getOrDefault(block, List.of()));
+    }
+
+    /**
+     * @return true if every path from the entry block to the second block passes through the first one.
+     */
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        while (block != null && block != dominator) block = immediateDominator(block);
+        return block == dominator;
+    }
+}
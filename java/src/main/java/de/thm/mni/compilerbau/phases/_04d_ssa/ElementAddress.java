@@ -0,0 +1,42 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+/**
+ * This class represents the address of an array element: the address of the array plus the index times the size of
+ * an element.
+ */
+public class ElementAddress extends Operation {
+    public final int elementSize;
+
+    ElementAddress(Value array, Value index, int elementSize) {
+        super(array, index);
+        this.elementSize = elementSize;
+    }
+
+    public Value array() {
+        return operand(0);
+    }
+
+    public Value index() {
+        return operand(1);
+    }
+
+    @Override
+    public boolean hasValue() {
+        return true;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return String.format("element %s[%s] * %d", array().name(), index().name(), elementSize);
+    }
+}
@@ -0,0 +1,37 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.VariableEntry;
+
+/**
+ * This class represents the address of a parameter or local variable in the stack frame of the procedure.
+ */
+public class FrameAddress extends Operation {
+    public final Identifier name;
+    public final VariableEntry entry;
+
+    FrameAddress(Identifier name, VariableEntry entry) {
+        this.name = name;
+        this.entry = entry;
+    }
+
+    @Override
+    public boolean hasValue() {
+        return true;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return "frame " + name;
+    }
+}
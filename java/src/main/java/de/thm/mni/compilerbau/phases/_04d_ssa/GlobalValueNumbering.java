@@ -0,0 +1,130 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.absyn.BinaryExpression;
+
+import java.util.*;
+
+/**
+ * This class eliminates common subexpressions by numbering the values of a control flow graph along its dominator
+ * tree. An operation computing the same function of the same operands as an operation in a dominating block is
+ * replaced by the value of that operation. This covers arithmetic as well as the address computations of array
+ * accesses and their index checks, e.g. in <code>a[i][j] := a[i][j] + 1;</code> the address of <code>a[i][j]</code>
+ * is computed and checked only once.
+ * <p>
+ * Loads are numbered within extended basic blocks, i.e. along chains of blocks with a single predecessor. A load
+ * is replaced by the value last loaded from or stored to the same address, unless the memory was changed in between.
+ * The memory is changed by stores to addresses that may be the same and by calls receiving a variable by reference,
+ * as decided by the {@link AliasAnalysis}.
+ */
+class GlobalValueNumbering {
+    private final ControlFlowGraph graph;
+    private final DominatorTree dominatorTree;
+    private final AliasAnalysis aliasAnalysis;
+    private final Map<List<Object>, Value> expressions = new HashMap<>();
+    private int replaced = 0;
+
+    GlobalValueNumbering(ControlFlowGraph graph, AliasAnalysis aliasAnalysis) {
+        this.graph = graph;
+        this.aliasAnalysis = aliasAnalysis;
+        this.dominatorTree = new DominatorTree(graph);
+    }
+
+    /**
+     * @return The number of removed operations.
+     */
+    int run() {
+        number(graph.entryBlock(), new HashMap<>());
+        graph.removeTrivialPhis();
+        return replaced;
+    }
+
+    /**
+     * Numbers the operations of a block and of the blocks it dominates.
+     *
+     * @param block  The block to number.
+     * @param memory The values known to be stored at some addresses when the block is entered.
+     */
+    private void number(BasicBlock block, Map<Value, Value> memory) {
+        List<List<Object>> introduced = new ArrayList<>();
+        for (Operation operation : block.allOperations()) {
+            if (operation instanceof Load) {
+                Value address = ((Load) operation).address();
+                Value known = memory.get(address);
+                if (known != null) {
+                    replace(operation, known);
+                } else {
+                    memory.put(address, operation);
+                }
+            } else if (operation instanceof Store) {
+                Store store = (Store) operation;
+                memory.keySet().removeIf(address -> aliasAnalysis.mayAlias(address, store.address()));
+                memory.put(store.address(), store.value());
+            } else if (operation instanceof Call) {
+                memory.keySet().removeIf(address -> aliasAnalysis.mayStoreTo((Call) operation, address));
+            } else {
+                List<Object> key = key(operation);
+                if (key == null) continue;
+                Value known = expressions.get(key);
+                if (known != null) {
+                    replace(operation, known);
+                } else {
+                    expressions.put(key, operation);
+                    introduced.add(key);
+                }
+            }
+        }
+        for (BasicBlock child : dominatorTree.children(block)) {
+            // Nur ein Block mit einem einzigen Vorgänger sieht denselben Speicherinhalt wie das Ende dieses Blocks
+            boolean extended = child.predecessors().size() == 1;
+            number(child, extended ? new HashMap<>(memory) : new HashMap<>());
+        }
+        introduced.forEach(expressions::remove);
+    }
+
+    private void replace(Operation operation, Value replacement) {
+        if (operation.hasValue()) operation.replaceAllUsesWith(replacement);
+        operation.remove();
+        replaced++;
+    }
+
+    /**
+     * @return A key equal for all operations computing the same value, or null if the operation is not numbered.
+     */
+    private static List<Object> key(Operation operation) {
+        if (operation instanceof BinaryOperation) {
+            BinaryOperation binaryOperation = (BinaryOperation) operation;
+            Value left = binaryOperation.left();
+            Value right = binaryOperation.right();
+            boolean commutative = binaryOperation.operator == BinaryExpression.Operator.ADD
+                    || binaryOperation.operator == BinaryExpression.Operator.MUL;
+            if (commutative && rank(left) > rank(right)) {
+                Value swap = left;
+                left = right;
+                right = swap;
+            }
+            return List.of(binaryOperation.operator, left, right);
+        } else if (operation instanceof FrameAddress) {
+            return List.of(FrameAddress.class, ((FrameAddress) operation).entry);
+        } else if (operation instanceof ElementAddress) {
+            ElementAddress elementAddress = (ElementAddress) operation;
+            return List.of(ElementAddress.class, elementAddress.array(), elementAddress.index(), elementAddress.elementSize);
+        } else if (operation instanceof IndexCheck) {
+            IndexCheck indexCheck = (IndexCheck) operation;
+            return List.of(IndexCheck.class, indexCheck.index(), indexCheck.arraySize());
+        } else if (operation instanceof Phi) {
+            List<Object> key = new ArrayList<>(operation.operands());
+            key.add(0, operation.block());
+            return key;
+        }
+        return null;
+    }
+
+    /**
+     * Orders the operands of commutative operations, so x + 1 and 1 + x get the same key.
+     */
+    private static long rank(Value value) {
+        if (value instanceof Operation) return ((Operation) value).id;
+        if (value instanceof Constant) return (long) Integer.MAX_VALUE + 1 + ((Constant) value).value - Integer.MIN_VALUE;
+        return -1;
+    }
+}
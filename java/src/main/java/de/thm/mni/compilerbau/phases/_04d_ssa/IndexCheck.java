@@ -0,0 +1,39 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+/**
+ * This class represents the check of an array index, which stops the program with an error if the index is not
+ * within the bounds of the array.
+ */
+public class IndexCheck extends Operation {
+    IndexCheck(Value index, Value arraySize) {
+        super(index, arraySize);
+    }
+
+    public Value index() {
+        return operand(0);
+    }
+
+    public Value arraySize() {
+        return operand(1);
+    }
+
+    @Override
+    public boolean hasValue() {
+        return false;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return String.format("check 0 <= %s < %s", index().name(), arraySize().name());
+    }
+}
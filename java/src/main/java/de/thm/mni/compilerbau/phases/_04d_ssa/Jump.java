@@ -0,0 +1,38 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import java.util.List;
+
+/**
+ * This class represents the unconditional transfer of control to another block.
+ */
+public class Jump extends Terminator {
+    private BasicBlock target;
+
+    Jump(BasicBlock target) {
+        this.target = target;
+    }
+
+    public BasicBlock target() {
+        return target;
+    }
+
+    @Override
+    public List<BasicBlock> successors() {
+        return List.of(target);
+    }
+
+    @Override
+    void replaceSuccessor(BasicBlock successor, BasicBlock replacement) {
+        if (target == successor) target = replacement;
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return "jump " + target.name();
+    }
+}
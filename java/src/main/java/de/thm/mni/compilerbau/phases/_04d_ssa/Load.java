@@ -0,0 +1,34 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+/**
+ * This class represents reading the integer or address stored at an address.
+ */
+public class Load extends Operation {
+    Load(Value address) {
+        super(address);
+    }
+
+    public Value address() {
+        return operand(0);
+    }
+
+    @Override
+    public boolean hasValue() {
+        return true;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return "load " + operandList();
+    }
+}
@@ -0,0 +1,103 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This class represents an operation of the intermediate representation. Every operation belongs to a
+ * {@link BasicBlock} and uses other values as operands.
+ * Operations that compute a value can be used as operands themselves, the others only have effects.
+ */
+public abstract class Operation extends Value {
+    private final List<Value> operands = new ArrayList<>();
+    BasicBlock block;
+    int id;
+
+    protected Operation(Value... operands) {
+        for (Value operand : operands) addOperand(operand);
+    }
+
+    /**
+     * @return The block containing this operation, null if the operation was removed.
+     */
+    public BasicBlock block() {
+        return block;
+    }
+
+    public List<Value> operands() {
+        return Collections.unmodifiableList(operands);
+    }
+
+    public Value operand(int index) {
+        return operands.get(index);
+    }
+
+    public void setOperand(int index, Value operand) {
+        operands.get(index).users.remove(this);
+        operands.set(index, operand);
+        operand.users.add(this);
+    }
+
+    void addOperand(Value operand) {
+        operands.add(operand);
+        operand.users.add(this);
+    }
+
+    void removeOperand(int index) {
+        operands.remove(index).users.remove(this);
+    }
+
+    void replaceOperand(Value operand, Value replacement) {
+        for (int i = 0; i < operands.size(); i++) {
+            if (operands.get(i) == operand) setOperand(i, replacement);
+        }
+    }
+
+    /**
+     * Removes this operation from its block. Its operands are no longer used by it.
+     * The value of the operation must not be used anymore.
+     */
+    public void remove() {
+        block.remove(this);
+        dropOperands();
+    }
+
+    void dropOperands() {
+        for (Value operand : operands) operand.users.remove(this);
+        operands.clear();
+    }
+
+    /**
+     * @return true if the operation computes a value that other operations can use.
+     */
+    public abstract boolean hasValue();
+
+    /**
+     * @return true if the operation has an effect besides computing its value: it writes memory, calls a procedure,
+     * may stop the program or transfers control. Such operations are kept even if their value is never used.
+     */
+    public abstract boolean hasSideEffects();
+
+    public abstract void accept(OperationVisitor visitor);
+
+    /**
+     * @return The operation without its result, for example "add %1, 2".
+     */
+    protected abstract String describe();
+
+    protected String operandList() {
+        return operands.stream().map(Value::name).collect(Collectors.joining(", "));
+    }
+
+    @Override
+    public String name() {
+        return "%" + id;
+    }
+
+    @Override
+    public String toString() {
+        return hasValue() ? name() + " = " + describe() : describe();
+    }
+}
@@ -0,0 +1,29 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+/**
+ * This interface is used to implement the visitor pattern for the operations of the intermediate representation.
+ * Every implementing class has to provide a visit method for every kind of operation.
+ */
+public interface OperationVisitor {
+    void visit(Phi phi);
+
+    void visit(BinaryOperation binaryOperation);
+
+    void visit(FrameAddress frameAddress);
+
+    void visit(ElementAddress elementAddress);
+
+    void visit(IndexCheck indexCheck);
+
+    void visit(Load load);
+
+    void visit(Store store);
+
+    void visit(Call call);
+
+    void visit(Jump jump);
+
+    void visit(Branch branch);
+
+    void visit(Return ret);
+}
@@ -0,0 +1,36 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * This class represents a phi function at the beginning of a block. Its value is the operand belonging to the
+ * predecessor the execution came from: operand i belongs to predecessor i of the block.
+ */
+public class Phi extends Operation {
+    Phi() {
+    }
+
+    @Override
+    public boolean hasValue() {
+        return true;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return "phi " + IntStream.range(0, operands().size())
+                .mapToObj(i -> String.format("[%s, %s]", operand(i).name(),
+                        i < block.predecessors().size() ? block.predecessors().get(i).name() : "?"))
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,92 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import java.util.*;
+
+/**
+ * This class removes loads whose value is already known on every path leading to them.
+ * <p>
+ * For every block, the contents of the addresses known at its beginning are computed by a forward data flow
+ * analysis: after a load or a store, the value at its address is known, until a store or a call may change it
+ * according to the {@link AliasAnalysis}. At the beginning of a block, only contents known with the same value
+ * at the end of all predecessors remain. Such a value is defined on every path to the block, so its definition
+ * dominates the block and it may replace the load.
+ */
+class RedundantLoadElimination {
+    private final ControlFlowGraph graph;
+    private final AliasAnalysis aliasAnalysis;
+
+    RedundantLoadElimination(ControlFlowGraph graph, AliasAnalysis aliasAnalysis) {
+        this.graph = graph;
+        this.aliasAnalysis = aliasAnalysis;
+    }
+
+    /**
+     * @return The number of removed loads.
+     */
+    int run() {
+        List<BasicBlock> order = new DominatorTree(graph).reversePostorder();
+        // Ein noch nicht berechneter Block (null) schränkt die bekannten Inhalte seiner Nachfolger nicht ein
+        Map<BasicBlock, Map<Value, Value>> knownAtEnd = new HashMap<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : order) {
+                Map<Value, Value> known = transfer(block, knownAtStart(block, knownAtEnd), false);
+                if (!known.equals(knownAtEnd.get(block))) {
+                    knownAtEnd.put(block, known);
+                    changed = true;
+                }
+            }
+        }
+        int removed = 0;
+        for (BasicBlock block : order) {
+            int before = block.operations().size();
+            transfer(block, knownAtStart(block, knownAtEnd), true);
+            removed += before - block.operations().size();
+        }
+        return removed;
+    }
+
+    private Map<Value, Value> knownAtStart(BasicBlock block, Map<BasicBlock, Map<Value, Value>> knownAtEnd) {
+        if (block == graph.entryBlock()) return new HashMap<>();
+        Map<Value, Value> known = null;
+        for (BasicBlock predecessor : block.predecessors()) {
+            Map<Value, Value> other = knownAtEnd.get(predecessor);
+            if (other == null) continue;
+            if (known == null) {
+                known = new HashMap<>(other);
+            } else {
+                known.entrySet().removeIf(entry -> entry.getValue() != other.get(entry.getKey()));
+            }
+        }
+        return known != null ? known : new HashMap<>();
+    }
+
+    /**
+     * Computes the contents known at the end of a block.
+     *
+     * @param known  The contents known at the beginning of the block, which are updated.
+     * @param remove Whether to remove the loads of known contents.
+     */
+    private Map<Value, Value> transfer(BasicBlock block, Map<Value, Value> known, boolean remove) {
+        for (Operation operation : new ArrayList<>(block.operations())) {
+            if (operation instanceof Load) {
+                Value address = ((Load) operation).address();
+                Value value = known.get(address);
+                if (value == null) {
+                    known.put(address, operation);
+                } else if (remove) {
+                    operation.replaceAllUsesWith(value);
+                    operation.remove();
+                }
+            } else if (operation instanceof Store) {
+                Store store = (Store) operation;
+                known.keySet().removeIf(address -> aliasAnalysis.mayAlias(address, store.address()));
+                known.put(store.address(), store.value());
+            } else if (operation instanceof Call) {
+                known.keySet().removeIf(address -> aliasAnalysis.mayStoreTo((Call) operation, address));
+            }
+        }
+        return known;
+    }
+}
@@ -0,0 +1,30 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import java.util.List;
+
+/**
+ * This class represents the end of the procedure.
+ */
+public class Return extends Terminator {
+    Return() {
+    }
+
+    @Override
+    public List<BasicBlock> successors() {
+        return List.of();
+    }
+
+    @Override
+    void replaceSuccessor(BasicBlock successor, BasicBlock replacement) {
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return "return";
+    }
+}
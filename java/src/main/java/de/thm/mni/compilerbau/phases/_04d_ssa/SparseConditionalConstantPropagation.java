@@ -0,0 +1,244 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.absyn.BinaryExpression;
+
+import java.util.*;
+
+/**
+ * This class implements sparse conditional constant propagation as described by Wegman and Zadeck, "Constant
+ * Propagation with Conditional Branches" (1991).
+ * <p>
+ * Every value starts as unknown and is lowered to a constant or to "not constant" when its operands are known.
+ * Blocks are only evaluated once an edge leading to them is known to be executable, and a branch on a constant
+ * condition only makes the edge it takes executable. So a variable that is constant on all paths actually
+ * reaching a phi function stays constant, even if other paths would assign something else.
+ * <p>
+ * Afterwards, constant values are replaced by constants, branches on constant conditions by jumps and index checks
+ * that cannot fail are removed; blocks that are never reached are deleted. Since the SSA form copies values
+ * directly to their uses, this also propagates copies. Variables passed by reference are never promoted to SSA
+ * values; they are read by loads, which are never constant.
+ */
+class SparseConditionalConstantPropagation {
+    /**
+     * An element of the lattice: unknown, a constant or not constant.
+     */
+    private static class LatticeValue {
+        static final LatticeValue UNKNOWN = new LatticeValue(0);
+        static final LatticeValue NOT_CONSTANT = new LatticeValue(0);
+        final int constant;
+
+        private LatticeValue(int constant) {
+            this.constant = constant;
+        }
+
+        static LatticeValue constant(int constant) {
+            return new LatticeValue(constant);
+        }
+
+        boolean isConstant() {
+            return this != UNKNOWN && this != NOT_CONSTANT;
+        }
+
+        LatticeValue meet(LatticeValue other) {
+            if (this == UNKNOWN) return other;
+            if (other == UNKNOWN) return this;
+            if (this == NOT_CONSTANT || other == NOT_CONSTANT || constant != other.constant) return NOT_CONSTANT;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LatticeValue)) return false;
+            LatticeValue other = (LatticeValue) o;
+            return isConstant() ? other.isConstant() && other.constant == constant : this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return constant;
+        }
+    }
+
+    private final ControlFlowGraph graph;
+    private final Map<Operation, LatticeValue> lattice = new HashMap<>();
+    private final Map<BasicBlock, Set<BasicBlock>> executableEdges = new HashMap<>();
+    private final Set<BasicBlock> executableBlocks = new HashSet<>();
+    private final Deque<BasicBlock[]> flowWorklist = new ArrayDeque<>();
+    private final Deque<Operation> ssaWorklist = new ArrayDeque<>();
+
+    SparseConditionalConstantPropagation(ControlFlowGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Evaluates an arithmetic operation on two constants like the constant folding on the abstract syntax tree.
+     *
+     * @return The result of the operation, or null if the operation would fail at runtime.
+     */
+    static Integer evaluate(BinaryExpression.Operator operator, int left, int right) {
+        switch (operator) {
+            case ADD:
+                return left + right;
+            case SUB:
+                return left - right;
+            case MUL:
+                return left * right;
+            case DIV:
+                if (right == 0 || (left == Integer.MIN_VALUE && right == -1)) return null;
+                return left / right;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Decides a comparison of two constants.
+     */
+    static boolean compare(BinaryExpression.Operator operator, int left, int right) {
+        switch (operator) {
+            case EQU:
+                return left == right;
+            case NEQ:
+                return left != right;
+            case LST:
+                return left < right;
+            case LSE:
+                return left <= right;
+            case GRT:
+                return left > right;
+            case GRE:
+                return left >= right;
+            default:
+                throw new IllegalArgumentException(operator.toString());
+        }
+    }
+
+    private LatticeValue valueOf(Value value) {
+        if (value instanceof Constant) return LatticeValue.constant(((Constant) value).value);
+        // Ein undefinierter Wert darf nicht als beliebige Konstante gelten, sonst würden Zweige auf ihm verschwinden
+        if (value instanceof Undefined) return LatticeValue.NOT_CONSTANT;
+        return lattice.getOrDefault((Operation) value, LatticeValue.UNKNOWN);
+    }
+
+    private boolean isExecutable(BasicBlock predecessor, BasicBlock block) {
+        return executableEdges.getOrDefault(block, Set.of()).contains(predecessor);
+    }
+
+    private void markEdge(BasicBlock predecessor, BasicBlock block) {
+        flowWorklist.add(new BasicBlock[]{predecessor, block});
+    }
+
+    private void lower(Operation operation, LatticeValue value) {
+        LatticeValue previous = valueOf(operation);
+        LatticeValue lowered = previous.meet(value);
+        if (lowered.equals(previous)) return;
+        lattice.put(operation, lowered);
+        ssaWorklist.addAll(operation.users());
+    }
+
+    private void visit(Operation operation) {
+        if (operation instanceof Phi) {
+            LatticeValue value = LatticeValue.UNKNOWN;
+            for (int i = 0; i < operation.operands().size(); i++) {
+                if (isExecutable(operation.block().predecessors().get(i), operation.block())) {
+                    value = value.meet(valueOf(operation.operand(i)));
+                }
+            }
+            lower(operation, value);
+        } else if (operation instanceof BinaryOperation) {
+            BinaryOperation binaryOperation = (BinaryOperation) operation;
+            LatticeValue left = valueOf(binaryOperation.left());
+            LatticeValue right = valueOf(binaryOperation.right());
+            if (binaryOperation.operator == BinaryExpression.Operator.MUL && (isZero(left) || isZero(right))) {
+                lower(operation, LatticeValue.constant(0));
+            } else if (left.isConstant() && right.isConstant()) {
+                Integer result = evaluate(binaryOperation.operator, left.constant, right.constant);
+                lower(operation, result != null ? LatticeValue.constant(result) : LatticeValue.NOT_CONSTANT);
+            } else if (left == LatticeValue.NOT_CONSTANT || right == LatticeValue.NOT_CONSTANT) {
+                lower(operation, LatticeValue.NOT_CONSTANT);
+            }
+        } else if (operation instanceof Branch) {
+            Branch branch = (Branch) operation;
+            LatticeValue left = valueOf(branch.left());
+            LatticeValue right = valueOf(branch.right());
+            if (left.isConstant() && right.isConstant()) {
+                boolean taken = compare(branch.comparison, left.constant, right.constant);
+                markEdge(branch.block(), taken ? branch.whenTrue() : branch.whenFalse());
+            } else if (left == LatticeValue.NOT_CONSTANT || right == LatticeValue.NOT_CONSTANT) {
+                markEdge(branch.block(), branch.whenTrue());
+                markEdge(branch.block(), branch.whenFalse());
+            }
+        } else if (operation instanceof Jump) {
+            markEdge(operation.block(), ((Jump) operation).target());
+        } else if (operation.hasValue()) {
+            lower(operation, LatticeValue.NOT_CONSTANT);
+        }
+    }
+
+    private static boolean isZero(LatticeValue value) {
+        return value.isConstant() && value.constant == 0;
+    }
+
+    private void propagate() {
+        executableBlocks.add(graph.entryBlock());
+        graph.entryBlock().allOperations().forEach(this::visit);
+        while (!flowWorklist.isEmpty() || !ssaWorklist.isEmpty()) {
+            if (!flowWorklist.isEmpty()) {
+                BasicBlock[] edge = flowWorklist.poll();
+                if (!executableEdges.computeIfAbsent(edge[1], b -> new HashSet<>()).add(edge[0])) continue;
+                edge[1].phis().forEach(this::visit);
+                if (executableBlocks.add(edge[1])) {
+                    edge[1].allOperations().stream().filter(operation -> !(operation instanceof Phi)).forEach(this::visit);
+                }
+            } else {
+                Operation operation = ssaWorklist.poll();
+                if (operation.block() != null && executableBlocks.contains(operation.block())) visit(operation);
+            }
+        }
+    }
+
+    /**
+     * Propagates the constants through the graph and simplifies it.
+     *
+     * @return The number of replaced values, decided branches, removed index checks and removed blocks.
+     */
+    int run() {
+        propagate();
+        int changes = 0;
+        for (BasicBlock block : graph.blocks()) {
+            if (!executableBlocks.contains(block)) continue;
+            for (Operation operation : block.allOperations()) {
+                LatticeValue value = valueOf(operation);
+                if (operation.hasValue() && value.isConstant()) {
+                    operation.replaceAllUsesWith(graph.constant(value.constant));
+                    operation.remove();
+                    changes++;
+                } else if (operation instanceof IndexCheck && isInBounds((IndexCheck) operation)) {
+                    operation.remove();
+                    changes++;
+                } else if (operation instanceof Branch) {
+                    Branch branch = (Branch) operation;
+                    boolean whenTrue = isExecutable(block, branch.whenTrue());
+                    boolean whenFalse = isExecutable(block, branch.whenFalse());
+                    if (whenTrue != whenFalse) {
+                        block.replaceTerminator(new Jump(whenTrue ? branch.whenTrue() : branch.whenFalse()));
+                        changes++;
+                    }
+                }
+            }
+        }
+        for (BasicBlock block : new ArrayList<>(graph.blocks())) {
+            if (executableBlocks.contains(block)) continue;
+            graph.removeBlock(block);
+            changes++;
+        }
+        graph.removeTrivialPhis();
+        return changes;
+    }
+
+    private static boolean isInBounds(IndexCheck indexCheck) {
+        if (!(indexCheck.index() instanceof Constant) || !(indexCheck.arraySize() instanceof Constant)) return false;
+        int index = ((Constant) indexCheck.index()).value;
+        return index >= 0 && index < ((Constant) indexCheck.arraySize()).value;
+    }
+}
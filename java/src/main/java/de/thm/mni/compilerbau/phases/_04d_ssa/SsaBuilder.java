@@ -0,0 +1,397 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.table.VariableEntry;
+import de.thm.mni.compilerbau.types.ArrayType;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.*;
+
+/**
+ * This class translates the body of a procedure into a {@link ControlFlowGraph} in SSA form.
+ * <p>
+ * Integer variables whose address is never taken, by passing them as reference argument or by an
+ * {@link AddressExpression}, and all references are promoted: they are not stored in the stack frame, every
+ * assignment defines a new value instead. All other variables, in particular arrays, are accessed by {@link Load}
+ * and {@link Store} operations.
+ * <p>
+ * The SSA form is constructed directly while translating, as described by Braun et al., "Simple and Efficient
+ * Construction of Static Single Assignment Form" (2013). The current value of a promoted variable is looked up in
+ * the predecessors of a block when it is read. A block is sealed as soon as all of its predecessors are known; until
+ * then, reading a variable creates an incomplete phi function whose operands are added when the block is sealed.
+ * Phi functions whose operands are all the same value are removed immediately.
+ * <p>
+ * While loops are translated like in the code generator: a test in front of the loop and a second test at its end.
+ */
+class SsaBuilder {
+    private final SymbolTable globalTable;
+    private final ProcedureEntry procedure;
+    private ControlFlowGraph graph;
+    private BasicBlock current;
+    private final Set<VariableEntry> promoted = new HashSet<>();
+    private final Map<VariableEntry, Map<BasicBlock, Value>> currentDefinitions = new HashMap<>();
+    private final Map<BasicBlock, Map<VariableEntry, Phi>> incompletePhis = new HashMap<>();
+    private final Set<BasicBlock> sealedBlocks = new HashSet<>();
+    /**
+     * The values replacing removed phi functions, which may still be recorded as current definition.
+     */
+    private final Map<Phi, Value> replacedPhis = new HashMap<>();
+
+    /**
+     * @param globalTable The global symbol table.
+     * @param procedure   The entry of the translated procedure.
+     */
+    SsaBuilder(SymbolTable globalTable, ProcedureEntry procedure) {
+        this.globalTable = globalTable;
+        this.procedure = procedure;
+    }
+
+    /**
+     * Collects the integer variables whose address is taken.
+     */
+    private class AddressTakenCollector extends DoNothingVisitor {
+        final Set<VariableEntry> addressTaken = new HashSet<>();
+
+        private void takeAddress(Variable variable) {
+            if (variable instanceof NamedVariable) {
+                VariableEntry entry = (VariableEntry) procedure.localTable.lookup(((NamedVariable) variable).name);
+                if (!entry.isReference) addressTaken.add(entry);
+            }
+        }
+
+        @Override
+        public void visit(AssignStatement assignStatement) {
+            assignStatement.target.accept(this);
+            assignStatement.value.accept(this);
+        }
+
+        @Override
+        public void visit(BindStatement bindStatement) {
+            bindStatement.address.accept(this);
+        }
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            ProcedureEntry entry = (ProcedureEntry) globalTable.lookup(callStatement.procedureName);
+            for (int i = 0; i < callStatement.arguments.size(); i++) {
+                Expression argument = callStatement.arguments.get(i);
+                if (entry.parameterTypes.get(i).isReference) {
+                    takeAddress(((VariableExpression) argument).variable);
+                }
+                argument.accept(this);
+            }
+        }
+
+        @Override
+        public void visit(CompoundStatement compoundStatement) {
+            compoundStatement.statements.forEach(statement -> statement.accept(this));
+        }
+
+        @Override
+        public void visit(IfStatement ifStatement) {
+            ifStatement.condition.accept(this);
+            ifStatement.thenPart.accept(this);
+            ifStatement.elsePart.accept(this);
+        }
+
+        @Override
+        public void visit(WhileStatement whileStatement) {
+            whileStatement.condition.accept(this);
+            whileStatement.body.accept(this);
+        }
+
+        @Override
+        public void visit(DoWhileStatement doWhileStatement) {
+            doWhileStatement.body.accept(this);
+            doWhileStatement.condition.accept(this);
+        }
+
+        @Override
+        public void visit(BinaryExpression binaryExpression) {
+            binaryExpression.leftOperand.accept(this);
+            binaryExpression.rightOperand.accept(this);
+        }
+
+        @Override
+        public void visit(VariableExpression variableExpression) {
+            variableExpression.variable.accept(this);
+        }
+
+        @Override
+        public void visit(AddressExpression addressExpression) {
+            takeAddress(addressExpression.variable);
+            addressExpression.variable.accept(this);
+        }
+
+        @Override
+        public void visit(ArrayAccess arrayAccess) {
+            arrayAccess.array.accept(this);
+            arrayAccess.index.accept(this);
+        }
+    }
+
+    class MyVisitor extends DoNothingVisitor {
+        /**
+         * The value of the last visited expression, or the address of the last visited variable.
+         */
+        private Value result;
+
+        private Value evaluate(Node node) {
+            node.accept(this);
+            return result;
+        }
+
+        private VariableEntry entry(NamedVariable namedVariable) {
+            return (VariableEntry) procedure.localTable.lookup(namedVariable.name);
+        }
+
+        @Override
+        public void visit(IntLiteral intLiteral) {
+            result = graph.constant(intLiteral.value);
+        }
+
+        @Override
+        public void visit(VariableExpression variableExpression) {
+            if (variableExpression.variable instanceof NamedVariable) {
+                VariableEntry entry = entry((NamedVariable) variableExpression.variable);
+                if (promoted.contains(entry) && !entry.isReference) {
+                    result = readVariable(entry, current);
+                    return;
+                }
+            }
+            result = current.add(new Load(evaluate(variableExpression.variable)));
+        }
+
+        @Override
+        public void visit(BinaryExpression binaryExpression) {
+            Value left = evaluate(binaryExpression.leftOperand);
+            Value right = evaluate(binaryExpression.rightOperand);
+            result = current.add(new BinaryOperation(binaryExpression.operator, left, right));
+        }
+
+        @Override
+        public void visit(AddressExpression addressExpression) {
+            addressExpression.variable.accept(this);
+        }
+
+        @Override
+        public void visit(NamedVariable namedVariable) {
+            VariableEntry entry = entry(namedVariable);
+            // Eine beförderte Referenz ist selbst die Adresse der referenzierten Variable
+            result = promoted.contains(entry) ? readVariable(entry, current) : current.add(new FrameAddress(namedVariable.name, entry));
+        }
+
+        @Override
+        public void visit(ArrayAccess arrayAccess) {
+            ArrayType arrayType = (ArrayType) arrayAccess.array.dataType;
+            Value array = evaluate(arrayAccess.array);
+            Value index = evaluate(arrayAccess.index);
+            if (arrayAccess.indexCheckNeeded) current.add(new IndexCheck(index, graph.constant(arrayType.arraySize)));
+            result = current.add(new ElementAddress(array, index, arrayType.baseType.byteSize));
+        }
+
+        @Override
+        public void visit(AssignStatement assignStatement) {
+            if (assignStatement.target instanceof NamedVariable) {
+                VariableEntry entry = entry((NamedVariable) assignStatement.target);
+                if (promoted.contains(entry) && !entry.isReference) {
+                    writeVariable(entry, current, evaluate(assignStatement.value));
+                    return;
+                }
+            }
+            Value address = evaluate(assignStatement.target);
+            Value value = evaluate(assignStatement.value);
+            current.add(new Store(address, value));
+        }
+
+        @Override
+        public void visit(BindStatement bindStatement) {
+            writeVariable(entry(bindStatement.reference), current, evaluate(bindStatement.address));
+        }
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            ProcedureEntry entry = (ProcedureEntry) globalTable.lookup(callStatement.procedureName);
+            List<Value> arguments = new ArrayList<>();
+            for (int i = 0; i < callStatement.arguments.size(); i++) {
+                Expression argument = callStatement.arguments.get(i);
+                arguments.add(entry.parameterTypes.get(i).isReference
+                        ? evaluate(((VariableExpression) argument).variable)
+                        : evaluate(argument));
+            }
+            current.add(new Call(callStatement.procedureName, entry, arguments));
+        }
+
+        @Override
+        public void visit(CompoundStatement compoundStatement) {
+            compoundStatement.statements.forEach(statement -> statement.accept(this));
+        }
+
+        @Override
+        public void visit(IfStatement ifStatement) {
+            BasicBlock thenBlock = graph.newBlock();
+            BasicBlock joinBlock = graph.newBlock();
+            if (ifStatement.elsePart instanceof EmptyStatement) {
+                branch(ifStatement.condition, thenBlock, joinBlock);
+                startBlock(thenBlock);
+                ifStatement.thenPart.accept(this);
+                current.add(new Jump(joinBlock));
+            } else {
+                BasicBlock elseBlock = graph.newBlock();
+                branch(ifStatement.condition, thenBlock, elseBlock);
+                startBlock(thenBlock);
+                ifStatement.thenPart.accept(this);
+                current.add(new Jump(joinBlock));
+                startBlock(elseBlock);
+                ifStatement.elsePart.accept(this);
+                current.add(new Jump(joinBlock));
+            }
+            startBlock(joinBlock);
+        }
+
+        @Override
+        public void visit(WhileStatement whileStatement) {
+            BasicBlock bodyBlock = graph.newBlock();
+            BasicBlock exitBlock = graph.newBlock();
+            branch(whileStatement.condition, bodyBlock, exitBlock);
+            // Der Schleifenrumpf wird erst versiegelt, wenn die Rückwärtskante bekannt ist
+            graph.place(bodyBlock);
+            current = bodyBlock;
+            whileStatement.body.accept(this);
+            branch(whileStatement.condition, bodyBlock, exitBlock);
+            sealBlock(bodyBlock);
+            startBlock(exitBlock);
+        }
+
+        @Override
+        public void visit(DoWhileStatement doWhileStatement) {
+            BasicBlock bodyBlock = graph.newBlock();
+            BasicBlock exitBlock = graph.newBlock();
+            current.add(new Jump(bodyBlock));
+            graph.place(bodyBlock);
+            current = bodyBlock;
+            doWhileStatement.body.accept(this);
+            branch(doWhileStatement.condition, bodyBlock, exitBlock);
+            sealBlock(bodyBlock);
+            startBlock(exitBlock);
+        }
+
+        private void branch(Expression condition, BasicBlock whenTrue, BasicBlock whenFalse) {
+            BinaryExpression comparison = (BinaryExpression) condition;
+            Value left = evaluate(comparison.leftOperand);
+            Value right = evaluate(comparison.rightOperand);
+            current.add(new Branch(comparison.operator, left, right, whenTrue, whenFalse));
+        }
+    }
+
+    /**
+     * Places a block whose predecessors are all known and continues the translation in it.
+     */
+    private void startBlock(BasicBlock block) {
+        graph.place(block);
+        sealBlock(block);
+        current = block;
+    }
+
+    /**
+     * Translates the body of a procedure.
+     *
+     * @param procedureDeclaration The declaration of the procedure.
+     * @return The control flow graph of the procedure body.
+     */
+    ControlFlowGraph build(ProcedureDeclaration procedureDeclaration) {
+        List<VariableEntry> parameters = new ArrayList<>();
+        procedureDeclaration.parameters.forEach(p -> parameters.add((VariableEntry) procedure.localTable.lookup(p.name)));
+        graph = new ControlFlowGraph(procedureDeclaration.name, procedure, parameters);
+        AddressTakenCollector collector = new AddressTakenCollector();
+        procedureDeclaration.body.forEach(statement -> statement.accept(collector));
+        List<VariableEntry> variables = new ArrayList<>(parameters);
+        procedureDeclaration.variables.forEach(v -> variables.add((VariableEntry) procedure.localTable.lookup(v.name)));
+        for (VariableEntry entry : variables) {
+            if (entry.isReference || (entry.type == PrimitiveType.intType && !collector.addressTaken.contains(entry))) {
+                promoted.add(entry);
+            }
+        }
+
+        startBlock(graph.newBlock());
+        for (ParameterDeclaration parameter : procedureDeclaration.parameters) {
+            VariableEntry entry = (VariableEntry) procedure.localTable.lookup(parameter.name);
+            if (promoted.contains(entry)) {
+                FrameAddress address = current.add(new FrameAddress(parameter.name, entry));
+                writeVariable(entry, current, current.add(new Load(address)));
+            }
+        }
+        MyVisitor visitor = new MyVisitor();
+        procedureDeclaration.body.forEach(statement -> statement.accept(visitor));
+        current.add(new Return());
+        return graph;
+    }
+
+    private Value resolve(Value value) {
+        while (value instanceof Phi && replacedPhis.containsKey(value)) value = replacedPhis.get(value);
+        return value;
+    }
+
+    private void writeVariable(VariableEntry variable, BasicBlock block, Value value) {
+        currentDefinitions.computeIfAbsent(variable, v -> new HashMap<>()).put(block, resolve(value));
+    }
+
+    private Value readVariable(VariableEntry variable, BasicBlock block) {
+        Value value = currentDefinitions.getOrDefault(variable, Map.of()).get(block);
+        return value != null ? resolve(value) : readVariableRecursive(variable, block);
+    }
+
+    private Value readVariableRecursive(VariableEntry variable, BasicBlock block) {
+        Value value;
+        if (!sealedBlocks.contains(block)) {
+            Phi phi = block.add(new Phi());
+            incompletePhis.computeIfAbsent(block, b -> new LinkedHashMap<>()).put(variable, phi);
+            value = phi;
+        } else if (block.predecessors().isEmpty()) {
+            // Lesen vor der ersten Zuweisung
+            value = graph.undefined();
+        } else if (block.predecessors().size() == 1) {
+            value = readVariable(variable, block.predecessors().get(0));
+        } else {
+            // Die Phi-Funktion wird vorab eingetragen, um Zyklen über Schleifen zu beenden
+            Phi phi = block.add(new Phi());
+            writeVariable(variable, block, phi);
+            value = addPhiOperands(variable, phi);
+        }
+        writeVariable(variable, block, value);
+        return resolve(value);
+    }
+
+    private Value addPhiOperands(VariableEntry variable, Phi phi) {
+        for (BasicBlock predecessor : phi.block().predecessors()) phi.addOperand(readVariable(variable, predecessor));
+        return tryRemoveTrivialPhi(phi);
+    }
+
+    private Value tryRemoveTrivialPhi(Phi phi) {
+        Value same = null;
+        for (Value operand : phi.operands()) {
+            if (operand == same || operand == phi) continue;
+            if (same != null) return phi;
+            same = operand;
+        }
+        if (same == null) same = graph.undefined();
+        List<Operation> users = new ArrayList<>(phi.users());
+        users.removeIf(user -> user == phi);
+        phi.replaceAllUsesWith(same);
+        phi.remove();
+        replacedPhis.put(phi, same);
+        for (Operation user : users) {
+            if (user instanceof Phi && user.block() != null) tryRemoveTrivialPhi((Phi) user);
+        }
+        return resolve(same);
+    }
+
+    private void sealBlock(BasicBlock block) {
+        Map<VariableEntry, Phi> phis = incompletePhis.remove(block);
+        if (phis != null) phis.forEach(this::addPhiOperands);
+        sealedBlocks.add(block);
+    }
+}
@@ -0,0 +1,65 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import de.thm.mni.compilerbau.absyn.ProcedureDeclaration;
+import de.thm.mni.compilerbau.absyn.Program;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.SymbolTable;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class translates the procedure bodies of the currently compiled SPL program into control flow graphs in SSA
+ * form (-O2). The graphs are optimized and stored in the {@link ProcedureEntry} of each procedure, where the code
+ * generator takes them from instead of the abstract syntax tree.
+ */
+public class SsaTranslator {
+    private final int optimizationLevel;
+    private final PrintWriter listing;
+    private SymbolTable globalTable;
+    private final List<ControlFlowGraph> graphs = new ArrayList<>();
+
+    /**
+     * @param optimizationLevel The optimization level, the translation only takes place from level 2 on.
+     * @param listing           The writer to print the control flow graphs to (--ssa) or null
+     */
+    public SsaTranslator(int optimizationLevel, PrintWriter listing) {
+        this.optimizationLevel = optimizationLevel;
+        this.listing = listing;
+    }
+
+    class MyVisitor extends DoNothingVisitor {
+        @Override
+        public void visit(Program program) {
+            program.declarations.forEach(d -> d.accept(this));
+        }
+
+        @Override
+        public void visit(ProcedureDeclaration pD) {
+            var entry = (ProcedureEntry) globalTable.lookup(pD.name);
+            ControlFlowGraph graph = new SsaBuilder(globalTable, entry).build(pD);
+            new SparseConditionalConstantPropagation(graph).run();
+            graphs.add(graph);
+        }
+    }
+
+    public void translate(Program program, SymbolTable globalTable) {
+        if (optimizationLevel < 2) return;
+        this.globalTable = globalTable;
+        program.accept(new MyVisitor());
+        // Die Aliasanalyse braucht die Aufrufe aller Prozeduren
+        AliasAnalysis aliasAnalysis = new AliasAnalysis(graphs);
+        for (ControlFlowGraph graph : graphs) {
+            new GlobalValueNumbering(graph, aliasAnalysis).run();
+            if (new RedundantLoadElimination(graph, aliasAnalysis).run() > 0) {
+                new GlobalValueNumbering(graph, aliasAnalysis).run();
+            }
+            new DeadStoreElimination(graph).run();
+            new DeadValueElimination().run(graph);
+            graph.procedure.controlFlowGraph = graph;
+            if (listing != null) listing.println(graph);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+/**
+ * This class represents writing a value to an address.
+ */
+public class Store extends Operation {
+    Store(Value address, Value value) {
+        super(address, value);
+    }
+
+    public Value address() {
+        return operand(0);
+    }
+
+    public Value value() {
+        return operand(1);
+    }
+
+    @Override
+    public boolean hasValue() {
+        return false;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    @Override
+    public void accept(OperationVisitor visitor) {
+        visitor.visit(this);
+    }
+
+    @Override
+    protected String describe() {
+        return "store " + operandList();
+    }
+}
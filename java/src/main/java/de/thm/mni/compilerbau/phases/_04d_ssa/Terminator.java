@@ -0,0 +1,35 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import java.util.List;
+
+/**
+ * This class represents the last operation of a {@link BasicBlock}, which decides where the execution continues.
+ */
+public abstract class Terminator extends Operation {
+    protected Terminator(Value... operands) {
+        super(operands);
+    }
+
+    /**
+     * @return The blocks the execution may continue with, in the order of their edges.
+     */
+    public abstract List<BasicBlock> successors();
+
+    /**
+     * Lets an edge of this terminator lead to another block. The predecessors of the blocks are not changed.
+     *
+     * @param successor   The block the edge leads to.
+     * @param replacement The block the edge leads to afterwards.
+     */
+    abstract void replaceSuccessor(BasicBlock successor, BasicBlock replacement);
+
+    @Override
+    public boolean hasValue() {
+        return false;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+}
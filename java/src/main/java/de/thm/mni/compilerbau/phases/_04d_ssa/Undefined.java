@@ -0,0 +1,15 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+/**
+ * This class represents the value of a local variable that is read before it was assigned.
+ * SPL does not define this value, so any value may be used for it.
+ */
+public class Undefined extends Value {
+    Undefined() {
+    }
+
+    @Override
+    public String name() {
+        return "undef";
+    }
+}
@@ -0,0 +1,41 @@
+package de.thm.mni.compilerbau.phases._04d_ssa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents a value of the intermediate representation: a {@link Constant}, an {@link Undefined} value or
+ * the result of an {@link Operation}.
+ * The intermediate representation is in SSA form, so every value is defined exactly once and each use refers to its
+ * definition directly. The uses of a value are recorded, so all of them can be found and replaced.
+ */
+public abstract class Value {
+    final List<Operation> users = new ArrayList<>();
+
+    /**
+     * @return The operations using this value as operand. An operation using the value twice is contained twice.
+     */
+    public List<Operation> users() {
+        return Collections.unmodifiableList(users);
+    }
+
+    /**
+     * Replaces every use of this value by another value.
+     *
+     * @param replacement The value used instead of this one.
+     */
+    public void replaceAllUsesWith(Value replacement) {
+        for (Operation user : new ArrayList<>(users)) user.replaceOperand(this, replacement);
+    }
+
+    /**
+     * @return The name of the value when it is printed as operand.
+     */
+    public abstract String name();
+
+    @Override
+    public String toString() {
+        return name();
+    }
+}
@@ -0,0 +1,228 @@
+package de.thm.mni.compilerbau.phases._05_varalloc;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.table.VariableEntry;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.*;
+
+/**
+ * This class keeps scalar local variables, value parameters and references of a procedure in callee-saved registers,
+ * using linear scan register allocation. For references, the register holds the address of the referenced variable.
+ * <p>
+ * Every occurrence of a variable in the body of a procedure is numbered in program order. A variable is live from its
+ * first to its last occurrence; parameters are live from the start of the procedure. A variable occurring inside a
+ * loop is live during the whole loop, since its value may be carried from one iteration to the next.
+ * Variables whose live intervals do not overlap can share a register.
+ * <p>
+ * Variables passed as reference arguments need an address and therefore always stay in the stack frame, references
+ * passed on only need the address they hold. References only get a register if they occur in a loop, otherwise
+ * saving and loading the register costs more than loading the address from the stack frame.
+ * Variables that do not get a register are spilled to the stack frame as well.
+ */
+class RegisterAllocator {
+    /**
+     * The callee-saved registers $16..$23 can hold variables. They are handed out from the top, so that the
+     * registers below the lowest one used stay available for evaluating expressions.
+     */
+    static final int FIRST_VARIABLE_REGISTER = 16;
+    static final int LAST_VARIABLE_REGISTER = 23;
+
+    private final SymbolTable globalTable;
+
+    private static class Interval {
+        final VariableEntry variable;
+        int start = Integer.MAX_VALUE;
+        int end = Integer.MIN_VALUE;
+        Integer register = null;
+
+        Interval(VariableEntry variable) {
+            this.variable = variable;
+        }
+
+        void cover(int from, int to) {
+            start = Math.min(start, from);
+            end = Math.max(end, to);
+        }
+    }
+
+    class MyVisitor extends DoNothingVisitor {
+        private final SymbolTable localTable;
+        private final Map<VariableEntry, Interval> intervals = new LinkedHashMap<>();
+        private final Set<VariableEntry> addressTaken = new HashSet<>();
+        private final Set<VariableEntry> usedInLoop = new HashSet<>();
+        private final Deque<Set<VariableEntry>> loops = new ArrayDeque<>();
+        private int position = 0;
+
+        MyVisitor(SymbolTable localTable) {
+            this.localTable = localTable;
+        }
+
+        private Interval interval(VariableEntry variable) {
+            return intervals.computeIfAbsent(variable, Interval::new);
+        }
+
+        @Override
+        public void visit(ProcedureDeclaration procedureDeclaration) {
+            procedureDeclaration.parameters.forEach(p -> interval((VariableEntry) localTable.lookup(p.name)).cover(position, position));
+            position++;
+            procedureDeclaration.body.forEach(s -> s.accept(this));
+        }
+
+        @Override
+        public void visit(NamedVariable namedVariable) {
+            VariableEntry variable = (VariableEntry) localTable.lookup(namedVariable.name);
+            interval(variable).cover(position, position);
+            position++;
+            if (!loops.isEmpty()) loops.peek().add(variable);
+        }
+
+        @Override
+        public void visit(ArrayAccess arrayAccess) {
+            arrayAccess.array.accept(this);
+            arrayAccess.index.accept(this);
+        }
+
+        @Override
+        public void visit(VariableExpression variableExpression) {
+            variableExpression.variable.accept(this);
+        }
+
+        @Override
+        public void visit(BinaryExpression binaryExpression) {
+            binaryExpression.leftOperand.accept(this);
+            binaryExpression.rightOperand.accept(this);
+        }
+
+        @Override
+        public void visit(AssignStatement assignStatement) {
+            // The target is numbered first, so that it never shares a register with a variable read by the value.
+            assignStatement.target.accept(this);
+            assignStatement.value.accept(this);
+        }
+
+        @Override
+        public void visit(AddressExpression addressExpression) {
+            addressExpression.variable.accept(this);
+        }
+
+        @Override
+        public void visit(BindStatement bindStatement) {
+            bindStatement.reference.accept(this);
+            bindStatement.address.accept(this);
+        }
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            var entry = (ProcedureEntry) globalTable.lookup(callStatement.procedureName);
+            for (int i = 0; i < callStatement.arguments.size(); i++) {
+                Expression argument = callStatement.arguments.get(i);
+                argument.accept(this);
+                if (entry.parameterTypes.get(i).isReference) {
+                    Variable variable = ((VariableExpression) argument).variable;
+                    if (variable instanceof NamedVariable) {
+                        addressTaken.add((VariableEntry) localTable.lookup(((NamedVariable) variable).name));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void visit(CompoundStatement compoundStatement) {
+            compoundStatement.statements.forEach(s -> s.accept(this));
+        }
+
+        @Override
+        public void visit(IfStatement ifStatement) {
+            ifStatement.condition.accept(this);
+            ifStatement.thenPart.accept(this);
+            ifStatement.elsePart.accept(this);
+        }
+
+        @Override
+        public void visit(WhileStatement whileStatement) {
+            loop(() -> {
+                whileStatement.condition.accept(this);
+                whileStatement.body.accept(this);
+            });
+        }
+
+        @Override
+        public void visit(DoWhileStatement doWhileStatement) {
+            loop(() -> {
+                doWhileStatement.body.accept(this);
+                doWhileStatement.condition.accept(this);
+            });
+        }
+
+        /**
+         * Visits the parts of a loop and extends the intervals of all variables occurring in it to the whole loop.
+         */
+        private void loop(Runnable parts) {
+            int start = position;
+            loops.push(new HashSet<>());
+            parts.run();
+            Set<VariableEntry> occurring = loops.pop();
+            int end = position;
+            occurring.forEach(v -> interval(v).cover(start, end));
+            usedInLoop.addAll(occurring);
+            if (!loops.isEmpty()) loops.peek().addAll(occurring);
+        }
+    }
+
+    RegisterAllocator(SymbolTable globalTable) {
+        this.globalTable = globalTable;
+    }
+
+    /**
+     * Assigns registers to the register candidates of a procedure by setting {@link VariableEntry#register}.
+     *
+     * @param procedureDeclaration The procedure whose variables are allocated.
+     * @param localTable           The local table of the procedure.
+     */
+    void allocate(ProcedureDeclaration procedureDeclaration, SymbolTable localTable) {
+        MyVisitor visitor = new MyVisitor(localTable);
+        procedureDeclaration.accept(visitor);
+
+        List<Interval> candidates = new ArrayList<>();
+        visitor.intervals.values().forEach(interval -> {
+            interval.variable.register = null;
+            VariableEntry variable = interval.variable;
+            boolean candidate = variable.isReference
+                    ? visitor.usedInLoop.contains(variable)
+                    : variable.type == PrimitiveType.intType && !visitor.addressTaken.contains(variable);
+            if (candidate) candidates.add(interval);
+        });
+        candidates.sort(Comparator.comparingInt(i -> i.start));
+
+        TreeSet<Integer> free = new TreeSet<>(Comparator.reverseOrder());
+        for (int register = FIRST_VARIABLE_REGISTER; register <= LAST_VARIABLE_REGISTER; register++) free.add(register);
+        List<Interval> active = new ArrayList<>();
+
+        for (Interval current : candidates) {
+            active.removeIf(interval -> {
+                if (interval.end >= current.start) return false;
+                free.add(interval.register);
+                return true;
+            });
+
+            if (free.isEmpty()) {
+                Interval furthest = Collections.max(active, Comparator.comparingInt(i -> i.end));
+                if (furthest.end > current.end) {
+                    current.register = furthest.register;
+                    furthest.register = null;
+                    active.remove(furthest);
+                    active.add(current);
+                }
+            } else {
+                current.register = free.pollFirst();
+                active.add(current);
+            }
+        }
+
+        candidates.forEach(interval -> interval.variable.register = interval.register);
+    }
+}
@@ -11,6 +11,23 @@ public class StackLayout {
     public Integer argumentAreaSize = null;
     public Integer localVarAreaSize = null;
     public Integer outgoingAreaSize = null;
+    // This value is set in phase 6 when registers run out while evaluating expressions
+    public int spillAreaSize = 0;
+    // This value is set in phase 6 for the callee-saved registers written by the procedure
+    public int savedRegisterAreaSize = 0;
+
+    /**
+     * Copies all sizes from another stack layout, e.g. to restore the layout of a procedure whose code is reused.
+     *
+     * @param other The stack layout to copy.
+     */
+    public void copyFrom(StackLayout other) {
+        argumentAreaSize = other.argumentAreaSize;
+        localVarAreaSize = other.localVarAreaSize;
+        outgoingAreaSize = other.outgoingAreaSize;
+        spillAreaSize = other.spillAreaSize;
+        savedRegisterAreaSize = other.savedRegisterAreaSize;
+    }
 
     /**
      * A leaf procedure is a procedure that does not call any other procedure in its body.
@@ -27,13 +44,33 @@ public class StackLayout {
      */
     public int frameSize() {
         if (isLeafProcedure()){
-            return 4 + localVarAreaSize;
+            return 4 + localVarAreaSize + spillAreaSize + savedRegisterAreaSize;
         } else {
-            return 8 + localVarAreaSize + outgoingAreaSize;
+            return 8 + localVarAreaSize + spillAreaSize + savedRegisterAreaSize + outgoingAreaSize;
         }
         //TODO (assignment 5): Calculate the size of the stack frame
     }
 
+    /**
+     * Spill slots are located directly below the local variables.
+     *
+     * @param slot The number of the spill slot, starting at 0.
+     * @return The offset (starting from the new frame pointer) of the spill slot.
+     */
+    public int spillSlotOffset(int slot) {
+        return -(localVarAreaSize + 4 * (slot + 1));
+    }
+
+    /**
+     * Saved registers are located directly below the spill slots.
+     *
+     * @param index The number of the saved register, starting at 0.
+     * @return The offset (starting from the new frame pointer) where the saved register is stored.
+     */
+    public int savedRegisterOffset(int index) {
+        return -(localVarAreaSize + spillAreaSize + 4 * (index + 1));
+    }
+
     /**
      * @return The offset (starting from the new stack pointer) where the old frame pointer is stored in this stack frame.
      */
@@ -8,11 +8,14 @@ import de.thm.mni.compilerbau.table.SymbolTable;
 import de.thm.mni.compilerbau.table.VariableEntry;
 import de.thm.mni.compilerbau.utils.*;
 
+import java.io.PrintWriter;
 import java.util.AbstractMap;
 import java.util.Comparator;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * This class is used to calculate the memory needed for variables and stack frames of the currently compiled SPL program.
@@ -22,8 +25,9 @@ import java.util.stream.IntStream;
 public class VarAllocator {
     public static final int REFERENCE_BYTESIZE = 4;
 
-    private final boolean showVarAlloc;
+    private final PrintWriter listing;
     private final boolean ershovOptimization;
+    private final boolean registerAllocation;
 
 
     class MyVisitor extends DoNothingVisitor {
@@ -46,13 +50,19 @@ public class VarAllocator {
             entry.stackLayout.localVarAreaSize = 0;
             entry.stackLayout.outgoingAreaSize = -1;
             entry.stackLayout.argumentAreaSize = pD.parameters.size() * 4;
+            tmpOutgoing = -1; // Jede Prozedur bestimmt ihren eigenen ausgehenden Bereich
+
+            if (registerAllocation) new RegisterAllocator(globalTable).allocate(pD, entry.localTable);
 
             int tmp = 0;
 
             for (int i = 0; i < pD.variables.size(); i++) {
-                entry.stackLayout.localVarAreaSize += pD.variables.get(i).typeExpression.dataType.byteSize;
                 VariableEntry vE = (VariableEntry) entry.localTable.lookup(pD.variables.get(i).name);
-                vE.offset = tmp - pD.variables.get(i).typeExpression.dataType.byteSize;
+                if (vE.register != null) continue; // Variablen in Registern brauchen keinen Platz im Frame
+                // Vom Optimierer erzeugte Referenzen belegen nur Platz für eine Adresse
+                int byteSize = vE.isReference ? REFERENCE_BYTESIZE : pD.variables.get(i).typeExpression.dataType.byteSize;
+                entry.stackLayout.localVarAreaSize += byteSize;
+                vE.offset = tmp - byteSize;
                 tmp = vE.offset;
             }
 
@@ -100,12 +110,14 @@ public class VarAllocator {
 
 
     /**
-     * @param showVarAlloc       Whether to show the results of the variable allocation after it is finished
+     * @param listing            The writer to show the results of the variable allocation on after it is finished (--vars) or null
      * @param ershovOptimization Whether the ershov register optimization should be used (--ershov)
+     * @param registerAllocation Whether local variables should be kept in registers (-O1)
      */
-    public VarAllocator(boolean showVarAlloc, boolean ershovOptimization) {
-        this.showVarAlloc = showVarAlloc;
+    public VarAllocator(PrintWriter listing, boolean ershovOptimization, boolean registerAllocation) {
+        this.listing = listing;
         this.ershovOptimization = ershovOptimization;
+        this.registerAllocation = registerAllocation;
     }
 
     public void allocVars(Program program, SymbolTable table) {
@@ -116,7 +128,7 @@ public class VarAllocator {
 
 
         //TODO: Uncomment this when the above exception is removed!
-        if (showVarAlloc)
+        if (listing != null)
             formatVars(program, table);
     }
 
@@ -158,6 +170,7 @@ public class VarAllocator {
                 procDec.variables.stream()
                         .map(v -> new AbstractMap.SimpleImmutableEntry<>(v, ((VariableEntry) entry.localTable.lookup(v.name))))
                         .sorted(Comparator.comparing(e -> Try.execute(() -> -e.getValue().offset).getOrElse(0)))
+                        .filter(v -> v.getValue().register == null)
                         .forEach(v -> ascii.line("var " + v.getKey().name.toString(),
                                 "<- FP - " + Optional.ofNullable(v.getValue().offset).map(o -> -o).map(StringOps::toString).orElse("NULL"),
                                 AsciiGraphicalTableBuilder.Alignment.LEFT));
@@ -196,15 +209,26 @@ public class VarAllocator {
                 ascii.line("...", AsciiGraphicalTableBuilder.Alignment.CENTER);
             }
 
-            System.out.printf("Variable allocation for procedure '%s':\n", procDec.name);
-            System.out.printf("  - size of argument area = %s\n", StringOps.toString(entry.stackLayout.argumentAreaSize));
-            System.out.printf("  - size of localvar area = %s\n", StringOps.toString(entry.stackLayout.localVarAreaSize));
-            System.out.printf("  - size of outgoing area = %s\n", StringOps.toString(entry.stackLayout.outgoingAreaSize));
-            System.out.printf("  - frame size = %s\n", Try.execute(entry.stackLayout::frameSize).map(Objects::toString).getOrElse("UNKNOWN"));
-            System.out.println();
-            System.out.println("  Stack layout:");
-            System.out.println(StringOps.indent(ascii.toString(), 4));
-            System.out.println();
+            listing.printf("Variable allocation for procedure '%s':\n", procDec.name);
+            listing.printf("  - size of argument area = %s\n", StringOps.toString(entry.stackLayout.argumentAreaSize));
+            listing.printf("  - size of localvar area = %s\n", StringOps.toString(entry.stackLayout.localVarAreaSize));
+            listing.printf("  - size of outgoing area = %s\n", StringOps.toString(entry.stackLayout.outgoingAreaSize));
+            listing.printf("  - frame size = %s\n", Try.execute(entry.stackLayout::frameSize).map(Objects::toString).getOrElse("UNKNOWN"));
+            listing.println();
+            listing.println("  Stack layout:");
+            listing.println(StringOps.indent(ascii.toString(), 4));
+            listing.println();
+
+            final var registerVariables = Stream.concat(
+                            procDec.parameters.stream().map(p -> new Pair<>(p.name, (VariableEntry) entry.localTable.lookup(p.name))),
+                            procDec.variables.stream().map(v -> new Pair<>(v.name, (VariableEntry) entry.localTable.lookup(v.name))))
+                    .filter(v -> v.second.register != null)
+                    .collect(Collectors.toList());
+            if (!registerVariables.isEmpty()) {
+                listing.println("  Variables in registers:");
+                registerVariables.forEach(v -> listing.printf("    %s -> $%d\n", v.first, v.second.register));
+                listing.println();
+            }
         });
     }
 }
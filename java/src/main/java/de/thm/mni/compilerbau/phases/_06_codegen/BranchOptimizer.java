@@ -0,0 +1,157 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * This class improves the control flow of the generated code.
+ * Each {@link Optimization} can be enabled separately and is applied until it does not change the code anymore. The
+ * number of applications of each optimization is counted.
+ */
+class BranchOptimizer {
+    enum Optimization {
+        /**
+         * A jump or branch to a label whose first instruction is a jump is redirected to the target of that jump.
+         */
+        JUMP_THREADING("jump-threading"),
+        /**
+         * A conditional branch over a jump, "bxx L1; j L2; L1:", becomes the opposite branch to L2.
+         */
+        BRANCH_INVERSION("branch-inversion"),
+        /**
+         * Instructions following a jump or return without a label in between are never executed and are removed.
+         */
+        UNREACHABLE_CODE("unreachable-code");
+
+        final String name;
+
+        Optimization(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final Map<String, String> OPPOSITE_BRANCHES = Map.of(
+            "beq", "bne", "bne", "beq",
+            "blt", "bge", "bge", "blt",
+            "ble", "bgt", "bgt", "ble",
+            "bltu", "bgeu", "bgeu", "bltu",
+            "bleu", "bgtu", "bgtu", "bleu");
+
+    private final Set<Optimization> optimizations;
+    private final Map<Optimization, Integer> hits = new EnumMap<>(Optimization.class);
+    private List<Instruction> code;
+
+    /**
+     * @param optimizations The optimizations to apply.
+     */
+    BranchOptimizer(Set<Optimization> optimizations) {
+        this.optimizations = optimizations;
+        for (Optimization optimization : Optimization.values()) hits.put(optimization, 0);
+    }
+
+    /**
+     * Applies the enabled optimizations to the given code.
+     *
+     * @param code The code to optimize. It is changed in place.
+     * @return true if the code was changed.
+     */
+    boolean optimize(List<Instruction> code) {
+        this.code = code;
+        boolean changed = false;
+        for (Optimization optimization : optimizations) {
+            int count = apply(optimization);
+            hits.merge(optimization, count, Integer::sum);
+            changed |= count > 0;
+        }
+        return changed;
+    }
+
+    /**
+     * Prints the number of applications of each enabled optimization (--peephole).
+     */
+    void printHits(PrintWriter listing) {
+        listing.println("Branch optimizations:");
+        optimizations.forEach(optimization -> listing.printf("  %-18s%d\n", optimization.name + ":", hits.get(optimization)));
+    }
+
+    private int apply(Optimization optimization) {
+        switch (optimization) {
+            case JUMP_THREADING:
+                return threadJumps();
+            case BRANCH_INVERSION:
+                return invertBranches();
+            case UNREACHABLE_CODE:
+                return removeUnreachableCode();
+            default:
+                throw new IllegalArgumentException(optimization.name);
+        }
+    }
+
+    /**
+     * @param label A label defined in the code.
+     * @return The first instruction following the label or null if the label is not defined in the code.
+     */
+    private Instruction instructionAt(Label label, Map<Label, Integer> positions) {
+        Integer position = positions.get(label);
+        if (position == null) return null;
+        for (int i = position; i < code.size(); i++) {
+            if (code.get(i).isInstruction()) return code.get(i);
+            if (!code.get(i).isLabel()) return null;
+        }
+        return null;
+    }
+
+    private int threadJumps() {
+        Map<Label, Integer> positions = new HashMap<>();
+        for (int i = 0; i < code.size(); i++) {
+            if (code.get(i).isLabel()) positions.put(code.get(i).label, i);
+        }
+        int count = 0;
+        for (int i = 0; i < code.size(); i++) {
+            Instruction jump = code.get(i);
+            if (!jump.isJump()) continue;
+            Label target = jump.target();
+            // Sprungketten verfolgen, bei Zyklen (Endlosschleifen) abbrechen
+            Set<Label> visited = new HashSet<>(Set.of(target));
+            Instruction next = instructionAt(target, positions);
+            while (next != null && next.is("j") && visited.add(next.target())) {
+                target = next.target();
+                next = instructionAt(target, positions);
+            }
+            if (!target.equals(jump.target())) {
+                code.set(i, jump.withTarget(target));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int invertBranches() {
+        int count = 0;
+        for (int i = 0; i + 2 < code.size(); i++) {
+            Instruction branch = code.get(i);
+            Instruction jump = code.get(i + 1);
+            if (!branch.isJump() || branch.is("j") || !jump.is("j")) continue;
+            boolean overJump = false;
+            for (int next = i + 2; next < code.size() && code.get(next).isLabel(); next++) {
+                overJump |= code.get(next).label.equals(branch.target());
+            }
+            if (!overJump) continue;
+            code.set(i, branch.withTarget(OPPOSITE_BRANCHES.get(branch.opcode), jump.target()));
+            code.remove(i + 1);
+            count++;
+        }
+        return count;
+    }
+
+    private int removeUnreachableCode() {
+        int count = 0;
+        for (int i = 0; i + 1 < code.size(); i++) {
+            if (!code.get(i).isUnconditional() || !code.get(i + 1).isInstruction()) continue;
+            // Bis zum nächsten Label oder zur nächsten Direktive wird nichts ausgeführt
+            while (i + 1 < code.size() && code.get(i + 1).isInstruction()) code.remove(i + 1);
+            count++;
+        }
+        return count;
+    }
+}
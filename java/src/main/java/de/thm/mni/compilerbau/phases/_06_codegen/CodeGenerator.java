@@ -3,7 +3,9 @@ package de.thm.mni.compilerbau.phases._06_codegen;
 import de.thm.mni.compilerbau.absyn.*;
 import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
 import de.thm.mni.compilerbau.phases._02_03_parser.Sym;
+import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
 import de.thm.mni.compilerbau.phases._05_varalloc.VarAllocator;
+import de.thm.mni.compilerbau.table.Identifier;
 import de.thm.mni.compilerbau.table.ProcedureEntry;
 import de.thm.mni.compilerbau.table.SymbolTable;
 import de.thm.mni.compilerbau.table.VariableEntry;
@@ -13,25 +15,61 @@ import de.thm.mni.compilerbau.utils.SplError;
 
 import java.awt.*;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
 
 /**
  * This class is used to generate the assembly code for the compiled program.
- * This code is emitted via the {@link CodePrinter} in the output field of this class.
+ * This code is collected via the {@link CodePrinter} in the output field of this class, improved by the
+ * {@link BranchOptimizer} and the {@link PeepholeOptimizer} and then written to the output file.
  */
 public class CodeGenerator {
-    private final CodePrinter output;
+    private final PrintWriter outputFile;
+    private final CodePrinter output = new CodePrinter();
     private final boolean ershovOptimization;
+    private final int optimizationLevel;
+    private final PrintWriter listing;
     private String label;
+    private Map<Identifier, ProcedureFragment> reusedFragments = Map.of();
+    private final Map<Identifier, ProcedureFragment> fragments = new LinkedHashMap<>();
 
     /**
      * Initializes the code generator.
      *
      * @param output             The PrintWriter to the output file.
      * @param ershovOptimization Whether the ershov register optimization should be used (--ershov)
+     * @param optimizationLevel  The optimization level (-O0, -O1, -O2)
+     * @param listing            The writer to print how often each peephole pattern was applied to (--peephole) or null
      */
-    public CodeGenerator(PrintWriter output, boolean ershovOptimization) {
-        this.output = new CodePrinter(output);
+    public CodeGenerator(PrintWriter output, boolean ershovOptimization, int optimizationLevel, PrintWriter listing) {
+        this.outputFile = output;
         this.ershovOptimization = ershovOptimization;
+        this.optimizationLevel = optimizationLevel;
+        this.listing = listing;
+    }
+
+    /**
+     * Lets the code generator copy the code of procedures from an earlier compilation instead of generating it.
+     * The caller is responsible that each fragment was generated for the same procedure declaration, with the same
+     * options and with the same signatures of the called procedures.
+     *
+     * @param fragments The fragments of the procedures to reuse by name.
+     */
+    public void reuseFragments(Map<Identifier, ProcedureFragment> fragments) {
+        this.reusedFragments = fragments;
+    }
+
+    /**
+     * @return The fragments of all procedures of the last generated program by name, either generated or reused.
+     */
+    public Map<Identifier, ProcedureFragment> fragments() {
+        return Collections.unmodifiableMap(fragments);
     }
 
     /**
@@ -67,12 +105,173 @@ public class CodeGenerator {
         private SymbolTable localtable;
         private CodePrinter output;
         private int labelCounter = 0;
+        private final Label indexErrorLabel = new Label("_indexError");
+        private Tiling tiling;
+        private ErshovLabeler ershovLabeler;
+        private StackLayout stackLayout;
+        private int spillSlots = 0;
+
+        /**
+         * The first register that is not available for the register stack, because it holds a variable.
+         */
+        private int registerStackLimit;
+        /**
+         * The highest register of the register stack used in the current procedure.
+         */
+        private int highestStackRegister;
+        /**
+         * The register holding the value of the last visited expression, or the base address of the last visited
+         * variable.
+         */
+        private Register result;
+        /**
+         * The displacement that has to be added to {@link #result} to get the address of the last visited variable.
+         */
+        private int displacement;
+        /**
+         * The displacements of the operands evaluated by the last call of {@link #evaluateOperands(Node, Node)}, for
+         * operands that are variables.
+         */
+        private int[] operandDisplacements;
+        /**
+         * A register the next visited expression should write its value to, instead of a new register on the stack.
+         */
+        private Register destination;
 
         public MyVisitor(SymbolTable globalTable, CodePrinter output){
             globaltable = globalTable;
             this.output = output;
         }
 
+        /**
+         * Reserves the next register of the register stack for a new value.
+         *
+         * @return The reserved register.
+         * @throws SplError If all registers available for free use are already reserved.
+         */
+        private Register push() {
+            if (!tmpRegister.isFreeUse() || tmpRegister.number >= registerStackLimit) throw SplError.RegisterOverflow();
+            Register register = tmpRegister;
+            highestStackRegister = Math.max(highestStackRegister, register.number);
+            tmpRegister = tmpRegister.next();
+            return register;
+        }
+
+        /**
+         * @param register The register to check.
+         * @return true if the register is part of the register stack, false if it holds a variable or a special value.
+         */
+        private boolean onStack(Register register) {
+            return register.isFreeUse() && register.number < registerStackLimit;
+        }
+
+        /**
+         * Releases all registers of the register stack that hold one of the given values.
+         *
+         * @param registers The registers whose values are no longer needed.
+         */
+        private void release(Register... registers) {
+            for (Register register : registers) {
+                if (onStack(register) && register.number < tmpRegister.number) tmpRegister = register;
+            }
+        }
+
+        /**
+         * Determines the register the result of an operation is written to.
+         * The registers of the operands are released, so the result reuses the lowest of them.
+         *
+         * @param destination The register requested by the surrounding code or null.
+         * @param operands    The registers holding the operands of the operation.
+         * @return The register for the result.
+         */
+        private Register target(Register destination, Register... operands) {
+            release(operands);
+            return destination != null ? destination : push();
+        }
+
+        /**
+         * @param variable The variable to check.
+         * @return The register holding the value of the variable if it was kept in a register by phase 5, null
+         * otherwise. For references, the register holds an address instead.
+         */
+        private Register variableRegister(Variable variable) {
+            if (!(variable instanceof NamedVariable)) return null;
+            VariableEntry entry = (VariableEntry)localtable.lookup(((NamedVariable) variable).name);
+            return entry.register == null || entry.isReference ? null : new Register(entry.register);
+        }
+
+        /**
+         * @return The destination register requested for the currently visited expression. The request is consumed.
+         */
+        private Register takeDestination() {
+            Register requested = destination;
+            destination = null;
+            return requested;
+        }
+
+        /**
+         * Decides whether two operands have to be evaluated in reverse order (--ershov).
+         * Since every ECO32 instruction names both of its source registers, the operands can be evaluated in any
+         * order without additional moves. The operand needing more registers is evaluated first.
+         *
+         * @param first  The operand that comes first in the source code.
+         * @param second The operand that comes second in the source code.
+         * @return true if the second operand should be evaluated first.
+         */
+        private boolean evaluateSecondFirst(Node first, Node second) {
+            return ershovOptimization && ershovLabeler.evaluateSecondFirst(first, second);
+        }
+
+        /**
+         * @return The number of registers available for the register stack that are not reserved yet.
+         */
+        private int freeRegisters() {
+            return registerStackLimit - tmpRegister.number;
+        }
+
+        /**
+         * Evaluates two operands in the order chosen by {@link #evaluateSecondFirst(Node, Node)}.
+         * If the operand evaluated last needs more registers than are left, the value of the operand evaluated first
+         * is spilled to the stack frame and reloaded after the other operand has been evaluated.
+         *
+         * @param first  The operand that comes first in the source code.
+         * @param second The operand that comes second in the source code.
+         * @return The registers holding the values of the first and the second operand.
+         */
+        private Register[] evaluateOperands(Node first, Node second) {
+            boolean secondFirst = evaluateSecondFirst(first, second);
+            Node early = secondFirst ? second : first;
+            Node late = secondFirst ? first : second;
+
+            early.accept(this);
+            Register earlyRegister = result;
+            int earlyDisplacement = displacement;
+            Register lateRegister;
+            if (onStack(earlyRegister) && ershovLabeler.label(late) > freeRegisters()) {
+                int slot = spillSlots++;
+                stackLayout.spillAreaSize = Math.max(stackLayout.spillAreaSize, 4 * spillSlots);
+                emitBodyFrameSlot("stw", earlyRegister, stackLayout.spillSlotOffset(slot), "spill");
+                release(earlyRegister);
+                late.accept(this);
+                lateRegister = result;
+                earlyRegister = push();
+                emitBodyFrameSlot("ldw", earlyRegister, stackLayout.spillSlotOffset(slot), "reload");
+                spillSlots--;
+            } else {
+                late.accept(this);
+                lateRegister = result;
+            }
+            operandDisplacements = secondFirst ? new int[]{displacement, earlyDisplacement} : new int[]{earlyDisplacement, displacement};
+            return secondFirst ? new Register[]{lateRegister, earlyRegister} : new Register[]{earlyRegister, lateRegister};
+        }
+
+        /**
+         * @return A new label for the control flow of the current procedure.
+         */
+        private Label newLabel() {
+            return new Label("L" + labelCounter++);
+        }
+
         @Override
         public void visit(Program program){
             program.declarations.forEach(d -> d.accept(this));
@@ -81,26 +280,107 @@ public class CodeGenerator {
         @Override
         public void visit(ProcedureDeclaration pD){
             var entry = (ProcedureEntry)globaltable.lookup(pD.name);
+            ProcedureFragment fragment = reusedFragments.get(pD.name);
+            if (fragment != null) {
+                fragment.instantiate(labelCounter).forEach(output.instructions()::add);
+                labelCounter += fragment.labelCount();
+                entry.stackLayout.copyFrom(fragment.stackLayout());
+                fragments.put(pD.name, fragment);
+                return;
+            }
+            int firstLabel = labelCounter;
+            int start = output.instructions().size();
+            generateProcedure(pD, entry);
+            List<Instruction> code = output.instructions().subList(start, output.instructions().size());
+            fragments.put(pD.name, ProcedureFragment.of(code, firstLabel, labelCounter - firstLabel, entry.stackLayout));
+        }
+
+        private void generateProcedure(ProcedureDeclaration pD, ProcedureEntry entry) {
             localtable = entry.localTable;
-            // Framegröße berechnen
+            stackLayout = entry.stackLayout;
+            if (entry.controlFlowGraph != null) {
+                generateFromGraph(pD, entry);
+                return;
+            }
+            tiling = new Tiling(localtable, optimizationLevel);
+            ershovLabeler = new ErshovLabeler(localtable, tiling);
+            // Register der Variablen bestimmen, der Registerstack endet unterhalb des niedrigsten
+            TreeSet<Integer> variableRegisters = new TreeSet<>();
+            pD.parameters.forEach(p -> Optional.ofNullable(((VariableEntry) localtable.lookup(p.name)).register).ifPresent(variableRegisters::add));
+            pD.variables.forEach(v -> Optional.ofNullable(((VariableEntry) localtable.lookup(v.name)).register).ifPresent(variableRegisters::add));
+            registerStackLimit = variableRegisters.isEmpty() ? 24 : variableRegisters.first();
+            highestStackRegister = tmpRegister.number - 1;
+            // Code für Prozedurkörper vorab erzeugen, damit die Spill-Slots und benutzten Register bekannt sind
+            CodePrinter procedureOutput = output;
+            output = new CodePrinter();
+            pD.body.forEach(b -> b.accept(this));
+            CodePrinter body = output;
+            output = procedureOutput;
+            // Callee-saved Register, die in der Prozedur überschrieben werden
+            List<Register> savedRegisters = new ArrayList<>();
+            for (int number = 16; number <= 23; number++) {
+                if (number <= highestStackRegister || variableRegisters.contains(number)) savedRegisters.add(new Register(number));
+            }
+            entry.stackLayout.savedRegisterAreaSize = 4 * savedRegisters.size();
+            emitPrologue(pD, entry, savedRegisters);
+            for (ParameterDeclaration parameter : pD.parameters) {
+                VariableEntry parameterEntry = (VariableEntry) localtable.lookup(parameter.name);
+                if (parameterEntry.register != null) {
+                    output.emitInstruction("ldw", new Register(parameterEntry.register), framePointerRegister, parameterEntry.offset, "load parameter " + parameter.name);
+                }
+            }
+            // Code für Prozedurkörper ausgeben
+            output.emitCode(body);
+            emitEpilogue(entry, savedRegisters);
+        }
+
+        /**
+         * Generates the code of a procedure from its control flow graph (-O2).
+         */
+        private void generateFromGraph(ProcedureDeclaration pD, ProcedureEntry entry) {
+            SsaCodeGenerator generator = new SsaCodeGenerator(entry.controlFlowGraph, entry.stackLayout, indexErrorLabel, this::newLabel);
+            // Prolog und Epilog benutzen den Registerstack nur für große Konstanten
+            registerStackLimit = 24;
+            Label epilogueLabel = newLabel();
+            CodePrinter body = generator.generate(epilogueLabel);
+            emitPrologue(pD, entry, generator.savedRegisters());
+            output.emitCode(body);
+            output.emitLabel(epilogueLabel);
+            emitEpilogue(entry, generator.savedRegisters());
+        }
+
+        /**
+         * Emits the procedure prolog, which allocates the stack frame and saves the return address and the given
+         * callee-saved registers. The sizes of all areas of the stack frame have to be known.
+         */
+        private void emitPrologue(ProcedureDeclaration pD, ProcedureEntry entry, List<Register> savedRegisters) {
             int frameSize = entry.stackLayout.frameSize();
-            // Prozedur-Prolog ausgeben
             output.emitExport(pD.name.toString());
-            output.emitLabel(pD.name.toString());
-            output.emitInstruction("sub", stackPointerRegister, stackPointerRegister, frameSize,"allocate SP");
+            output.emitLabel(new Label(pD.name.toString()));
+            emitImmediate("sub", stackPointerRegister, stackPointerRegister, frameSize,"allocate SP");
             output.emitInstruction("stw", framePointerRegister, stackPointerRegister, entry.stackLayout.oldFramePointerOffset(),"allocate FP");
-            output.emitInstruction("add", framePointerRegister, stackPointerRegister, frameSize,"FP -> SP + FrameSize");
+            emitImmediate("add", framePointerRegister, stackPointerRegister, frameSize,"FP -> SP + FrameSize");
             if (!(entry.stackLayout.isLeafProcedure())){
-                output.emitInstruction("stw", returnAddressRegister, framePointerRegister, entry.stackLayout.oldReturnAddressOffset(),"allocate ReturnAdr");
+                emitFrameSlot("stw", returnAddressRegister, entry.stackLayout.oldReturnAddressOffset(), frameSize, "allocate ReturnAdr");
+            }
+            for (int i = 0; i < savedRegisters.size(); i++) {
+                emitFrameSlot("stw", savedRegisters.get(i), entry.stackLayout.savedRegisterOffset(i), frameSize, "save register");
+            }
+        }
+
+        /**
+         * Emits the procedure epilog, which restores the registers saved by {@link #emitPrologue} and returns.
+         */
+        private void emitEpilogue(ProcedureEntry entry, List<Register> savedRegisters) {
+            int frameSize = entry.stackLayout.frameSize();
+            for (int i = 0; i < savedRegisters.size(); i++) {
+                emitFrameSlot("ldw", savedRegisters.get(i), entry.stackLayout.savedRegisterOffset(i), frameSize, "restore register");
             }
-            // Code für Prozedurkörper erzeugen
-            pD.body.forEach(b -> b.accept(this));
-            // Prozedur-Epilog ausgeben
             if (!(entry.stackLayout.isLeafProcedure())) {
-                output.emitInstruction("ldw", returnAddressRegister, framePointerRegister, entry.stackLayout.oldReturnAddressOffset(), "restore return register");
+                emitFrameSlot("ldw", returnAddressRegister, entry.stackLayout.oldReturnAddressOffset(), frameSize, "restore return register");
             }
             output.emitInstruction("ldw", framePointerRegister, stackPointerRegister, entry.stackLayout.oldFramePointerOffset(),"restore FP");
-            output.emitInstruction("add", stackPointerRegister, stackPointerRegister, entry.stackLayout.frameSize(),"release frame");
+            emitImmediate("add", stackPointerRegister, stackPointerRegister, entry.stackLayout.frameSize(),"release frame");
             output.emitInstruction("jr", returnAddressRegister, "return");
         }
 
@@ -113,11 +393,12 @@ public class CodeGenerator {
                     cS.arguments.get(i).accept(this);
                 } else {
                     ((VariableExpression)cS.arguments.get(i)).variable.accept(this);
+                    result = addressRegister(null);
                 }
-                output.emitInstruction("stw", tmpRegister.previous(), stackPointerRegister, entry.parameterTypes.get(i).offset, "store arg #" + i);
-                tmpRegister = tmpRegister.previous();
+                output.emitInstruction("stw", result, stackPointerRegister, entry.parameterTypes.get(i).offset, "store arg #" + i);
+                release(result);
             }
-            output.emitInstruction("jal", cS.procedureName.toString());
+            output.emitInstruction("jal", new Label(cS.procedureName.toString()));
         }
 
         @Override
@@ -128,102 +409,383 @@ public class CodeGenerator {
         @Override
         public void visit(IfStatement iS){
             //tmpRegister = new Register(8);
-            int exitLabel = labelCounter++;
+            Label exitLabel = newLabel();
             if (iS.elsePart instanceof EmptyStatement){
-                logicalBinaryExpression((BinaryExpression)iS.condition, "L" + exitLabel);
+                logicalBinaryExpression((BinaryExpression)iS.condition, exitLabel);
                 iS.thenPart.accept(this);
-                output.emitLabel("L" + exitLabel);
+                output.emitLabel(exitLabel);
             } else {
-                int elseLabel = exitLabel;
-                exitLabel = labelCounter++;
-                logicalBinaryExpression((BinaryExpression)iS.condition, "L" + elseLabel);
+                Label elseLabel = exitLabel;
+                exitLabel = newLabel();
+                logicalBinaryExpression((BinaryExpression)iS.condition, elseLabel);
                 iS.thenPart.accept(this);
-                output.emitInstruction("j", "L" + exitLabel);
-                output.emitLabel("L" + elseLabel);
+                output.emitInstruction("j", exitLabel);
+                output.emitLabel(elseLabel);
                 iS.elsePart.accept(this);
-                output.emitLabel("L" + exitLabel);
+                output.emitLabel(exitLabel);
             }
         }
 
         @Override
         public void visit(WhileStatement wS){
+            if (optimizationLevel >= 1) {
+                rotatedLoop(wS);
+                return;
+            }
             //tmpRegister = new Register(8);
-            int loopLabel = labelCounter ++;
-            output.emitLabel("L" + loopLabel);
-            int exitLabel = labelCounter ++;
-            logicalBinaryExpression((BinaryExpression)wS.condition, "L" + exitLabel);
+            Label loopLabel = newLabel();
+            output.emitLabel(loopLabel);
+            Label exitLabel = newLabel();
+            logicalBinaryExpression((BinaryExpression)wS.condition, exitLabel);
             wS.body.accept(this);
-            output.emitInstruction("j", "L" + loopLabel);
-            output.emitLabel("L" + exitLabel);
+            output.emitInstruction("j", loopLabel);
+            output.emitLabel(exitLabel);
+        }
+
+        /**
+         * Emits a while loop as a guard test followed by a loop testing its condition at the bottom, like a do-while
+         * loop. Every iteration then executes a single conditional branch instead of a conditional and an
+         * unconditional one.
+         *
+         * @param wS The loop to generate code for.
+         */
+        private void rotatedLoop(WhileStatement wS) {
+            Label exitLabel = newLabel();
+            Label loopLabel = newLabel();
+            logicalBinaryExpression((BinaryExpression)wS.condition, exitLabel);
+            output.emitLabel(loopLabel);
+            wS.body.accept(this);
+            logicalBinaryExpression((BinaryExpression)wS.condition, loopLabel, false);
+            output.emitLabel(exitLabel);
         }
 
         @Override
         public void visit(DoWhileStatement dWS){
-            int localLabelCounter = labelCounter ++;
-            output.emitLabel("L" + localLabelCounter);
+            Label loopLabel = newLabel();
+            output.emitLabel(loopLabel);
             dWS.body.accept(this);
-            logicalBinaryExpression((BinaryExpression)dWS.condition, "L" + localLabelCounter, false);
+            logicalBinaryExpression((BinaryExpression)dWS.condition, loopLabel, false);
         }
 
         @Override
         public void visit(NamedVariable nV){
             VariableEntry entry = (VariableEntry)localtable.lookup(nV.name);
-            output.emitInstruction("add", tmpRegister, framePointerRegister, entry.offset);
-            if (entry.isReference){
-                output.emitInstruction("ldw", tmpRegister, tmpRegister, 0);
+            displacement = 0;
+            if (entry.register != null) {
+                result = new Register(entry.register);
+                return;
             }
-            tmpRegister = tmpRegister.next();
+            if (tiling.isFrameAddressed(nV)) {
+                // Der Offset wird in die Verschiebung des Speicherzugriffs übernommen
+                result = framePointerRegister;
+                displacement = entry.offset;
+                return;
+            }
+            Register register = push();
+            if (entry.isReference && tiling.isEnabled() && Tiling.isImmediate(entry.offset)) {
+                output.emitInstruction("ldw", register, framePointerRegister, entry.offset);
+            } else {
+                emitImmediate("add", register, framePointerRegister, entry.offset);
+                if (entry.isReference){
+                    output.emitInstruction("ldw", register, register, 0);
+                }
+            }
+            result = register;
         }
 
         @Override
         public void visit(ArrayAccess aA){
-            aA.array.accept(this);
-            aA.index.accept(this);
-
-            Register arrayRegister = tmpRegister.minus(2);
-            Register indexRegister = tmpRegister.previous();
-            Register localRegister = tmpRegister;
-
-            output.emitInstruction("add", localRegister, zeroRegister, ((ArrayType)aA.array.dataType).arraySize);
-            output.emitInstruction("bgeu", indexRegister, localRegister, "_indexError");
-            output.emitInstruction("mul", indexRegister, indexRegister, ((ArrayType)aA.array.dataType).baseType.byteSize);
-            output.emitInstruction("add", arrayRegister, arrayRegister, indexRegister);
-
-            tmpRegister = tmpRegister.previous();
+            Register resultDestination = takeDestination();
+            int elementSize = ((ArrayType)aA.array.dataType).baseType.byteSize;
+            Tiling.SplitIndex index = tiling.splitIndex(aA);
+            if (index != null && index.variablePart == null) {
+                // Konstanter Index: nur die Verschiebung ändert sich
+                aA.array.accept(this);
+                displacement += index.constantPart * elementSize;
+                return;
+            }
+            Register[] operands = evaluateOperands(aA.array, index != null ? index.variablePart : aA.index);
+            int arrayDisplacement = operandDisplacements[0];
+            Register arrayRegister = operands[0];
+            Register indexRegister = operands[1];
+            if (aA.indexCheckNeeded) {
+                Register localRegister = push();
+                loadConstant(localRegister, ((ArrayType)aA.array.dataType).arraySize);
+                output.emitInstruction("bgeu", indexRegister, localRegister, indexErrorLabel);
+                release(localRegister);
+            }
+            Register offsetRegister = multiply(null, indexRegister, elementSize);
+            displacement = arrayDisplacement + (index != null ? index.constantPart * elementSize : 0);
+            result = target(displacement == 0 ? resultDestination : null, arrayRegister, offsetRegister);
+            output.emitInstruction("add", result, arrayRegister, offsetRegister);
         }
 
         @Override
         public void visit(BinaryExpression bE) {
-            bE.leftOperand.accept(this);
-            Register leftRegister = tmpRegister.previous();
-            bE.rightOperand.accept(this);
-            Register rightRegister = tmpRegister.previous();
-            var operator = bE.operator;
+            Register resultDestination = takeDestination();
+            if (strengthReduction(bE, resultDestination)) return;
+            IntLiteral immediate = tiling.immediateOperand(bE);
+            if (immediate != null) {
+                // Der konstante Operand steht direkt im Befehl
+                Expression operand = immediate == bE.rightOperand ? bE.leftOperand : bE.rightOperand;
+                operand.accept(this);
+                Register operandRegister = result;
+                result = target(resultDestination, operandRegister);
+                output.emitInstruction(arithmeticInstruction(bE.operator), result, operandRegister, immediate.value);
+                return;
+            }
+            Register[] operands = evaluateOperands(bE.leftOperand, bE.rightOperand);
+            Register leftRegister = operands[0];
+            Register rightRegister = operands[1];
+            Register resultRegister = target(resultDestination, leftRegister, rightRegister);
+            output.emitInstruction(arithmeticInstruction(bE.operator), resultRegister, leftRegister, rightRegister);
+            result = resultRegister;
+        }
 
-            switch (operator){
+        /**
+         * @param operator An arithmetic operator.
+         * @return The ECO32 instruction computing the operation.
+         */
+        private String arithmeticInstruction(BinaryExpression.Operator operator) {
+            switch (operator) {
                 case ADD:
-                    output.emitInstruction("add", leftRegister, leftRegister, rightRegister);
-                    break;
+                    return "add";
                 case SUB:
-                    output.emitInstruction("sub", leftRegister, leftRegister, rightRegister);
-                    break;
+                    return "sub";
                 case MUL:
-                    output.emitInstruction("mul", leftRegister, leftRegister, rightRegister);
-                    break;
+                    return "mul";
                 case DIV:
-                    output.emitInstruction("div", leftRegister, leftRegister, rightRegister);
-                    break;
+                    return "div";
+                default:
+                    throw new IllegalArgumentException(operator + " is not an arithmetic operator");
+            }
+        }
+
+        /**
+         * Loads a constant into a register. Constants that fit into 16 bits are loaded with a single instruction,
+         * all other constants are composed of their upper half loaded with ldhi and their lower half.
+         *
+         * @param register The register to load the constant into.
+         * @param value    The constant.
+         */
+        private void loadConstant(Register register, int value) {
+            if (Tiling.isImmediate(value)) {
+                output.emitInstruction("add", register, zeroRegister, value);
+            } else if (Tiling.isUnsignedImmediate(value)) {
+                output.emitInstruction("or", register, zeroRegister, value);
+            } else {
+                output.emitInstruction("ldhi", register, value);
+                if ((value & 0xFFFF) != 0) output.emitInstruction("or", register, register, value & 0xFFFF);
+            }
+        }
+
+        /**
+         * Emits an instruction with a constant operand. Constants that do not fit into the immediate field are loaded
+         * into a register first.
+         *
+         * @param opcode         The instruction.
+         * @param resultRegister The register for the result.
+         * @param operand        The register holding the other operand.
+         * @param value          The constant operand.
+         */
+        private void emitImmediate(String opcode, Register resultRegister, Register operand, int value) {
+            emitImmediate(opcode, resultRegister, operand, value, null);
+        }
+
+        /**
+         * Emits an instruction with a constant operand and a comment, see {@link #emitImmediate(String, Register, Register, int)}.
+         */
+        private void emitImmediate(String opcode, Register resultRegister, Register operand, int value, String comment) {
+            Register constantRegister = null;
+            if (!Tiling.isImmediate(value)) {
+                constantRegister = push();
+                loadConstant(constantRegister, value);
+            }
+            if (constantRegister == null && comment == null) output.emitInstruction(opcode, resultRegister, operand, value);
+            else if (constantRegister == null) output.emitInstruction(opcode, resultRegister, operand, value, comment);
+            else if (comment == null) output.emitInstruction(opcode, resultRegister, operand, constantRegister);
+            else output.emitInstruction(opcode, resultRegister, operand, constantRegister, comment);
+            if (constantRegister != null) release(constantRegister);
+        }
+
+        /**
+         * Emits a load or store of a slot in the stack frame of the current procedure. Slots that are too far away from
+         * the frame pointer for the displacement field, because large arrays lie in between, are addressed relative
+         * to the stack pointer instead.
+         *
+         * @param opcode    The instruction, ldw or stw.
+         * @param register  The register to load or store.
+         * @param offset    The offset of the slot from the frame pointer.
+         * @param frameSize The size of the stack frame.
+         * @param comment   The comment for the instruction.
+         */
+        private void emitFrameSlot(String opcode, Register register, int offset, int frameSize, String comment) {
+            if (Tiling.isImmediate(offset)) output.emitInstruction(opcode, register, framePointerRegister, offset, comment);
+            else output.emitInstruction(opcode, register, stackPointerRegister, offset + frameSize, comment);
+        }
+
+        /**
+         * Emits a load or store of a slot in the stack frame of the current procedure while its body is generated.
+         * The size of the frame is not known yet, so a slot that is too far away from the frame pointer for the
+         * displacement field is addressed by a register holding its address instead of relative to the stack pointer.
+         *
+         * @param opcode   The instruction, ldw or stw.
+         * @param register The register to load or store.
+         * @param offset   The offset of the slot from the frame pointer.
+         * @param comment  The comment for the instruction.
+         */
+        private void emitBodyFrameSlot(String opcode, Register register, int offset, String comment) {
+            if (Tiling.isImmediate(offset)) {
+                output.emitInstruction(opcode, register, framePointerRegister, offset, comment);
+                return;
+            }
+            // Beim Laden wird die Adresse im Zielregister berechnet, beim Speichern wird ein weiteres Register benötigt
+            Register addressRegister = opcode.equals("ldw") ? register : push();
+            loadConstant(addressRegister, offset);
+            output.emitInstruction("add", addressRegister, framePointerRegister, addressRegister);
+            output.emitInstruction(opcode, register, addressRegister, 0, comment);
+            if (addressRegister != register) release(addressRegister);
+        }
+
+        /**
+         * Computes the address of the last visited variable from its base register and its displacement.
+         *
+         * @param resultDestination The register requested for the address or null.
+         * @return The register holding the address.
+         */
+        private Register addressRegister(Register resultDestination) {
+            Register baseRegister = result;
+            if (displacement == 0 && (resultDestination == null || resultDestination.number == baseRegister.number)) {
+                return baseRegister;
+            }
+            Register addressRegister = target(resultDestination, baseRegister);
+            if (displacement == 0) output.emitInstruction("add", addressRegister, baseRegister, zeroRegister);
+            else output.emitInstruction("add", addressRegister, baseRegister, displacement);
+            return addressRegister;
+        }
+        /**
+         * Replaces a multiplication or division by a constant with shifts and additions if possible.
+         *
+         * @param bE                The expression to generate code for.
+         * @param resultDestination The register requested for the result or null.
+         * @return true if code was generated, false if the expression needs a mul or div instruction.
+         */
+        private boolean strengthReduction(BinaryExpression bE, Register resultDestination) {
+            if (optimizationLevel < 1) return false;
+            if (bE.operator == BinaryExpression.Operator.MUL) {
+                Expression operand;
+                int factor;
+                if (bE.rightOperand instanceof IntLiteral && Tiling.isCheapFactor(((IntLiteral) bE.rightOperand).value)) {
+                    operand = bE.leftOperand;
+                    factor = ((IntLiteral) bE.rightOperand).value;
+                } else if (bE.leftOperand instanceof IntLiteral && Tiling.isCheapFactor(((IntLiteral) bE.leftOperand).value)) {
+                    operand = bE.rightOperand;
+                    factor = ((IntLiteral) bE.leftOperand).value;
+                } else {
+                    return false;
+                }
+                operand.accept(this);
+                result = multiply(resultDestination, result, factor);
+                return true;
+            }
+            if (bE.operator == BinaryExpression.Operator.DIV && bE.rightOperand instanceof IntLiteral) {
+                int divisor = ((IntLiteral) bE.rightOperand).value;
+                if (divisor == Integer.MIN_VALUE || Integer.bitCount(Math.abs(divisor)) != 1) return false;
+                bE.leftOperand.accept(this);
+                result = divide(resultDestination, result, divisor);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Emits code multiplying a register by a constant.
+         * Factors accepted by {@link Tiling#isCheapFactor(int)} are computed with shifts and one addition or subtraction,
+         * all other factors with a mul instruction.
+         *
+         * @param resultDestination The register requested for the result or null.
+         * @param operand           The register holding the value to multiply. It is released.
+         * @param factor            The constant factor.
+         * @return The register holding the product.
+         */
+        private Register multiply(Register resultDestination, Register operand, int factor) {
+            if (optimizationLevel < 1 || !Tiling.isCheapFactor(factor)) {
+                // Ein Variablenregister darf nicht überschrieben werden
+                Register resultRegister = target(resultDestination, operand);
+                emitImmediate("mul", resultRegister, operand, factor);
+                return resultRegister;
+            }
+            int magnitude = Math.abs(factor);
+            Register resultRegister;
+            if (Integer.bitCount(magnitude) == 1) {
+                int shift = Integer.numberOfTrailingZeros(magnitude);
+                if (shift == 0 && factor > 0 && resultDestination == null) return operand;
+                resultRegister = target(resultDestination, operand);
+                output.emitInstruction("sll", resultRegister, operand, shift);
+            } else {
+                // 2^high + 2^low oder 2^high - 2^low
+                int low = Integer.numberOfTrailingZeros(magnitude);
+                boolean difference = Integer.bitCount(magnitude) != 2;
+                int high = difference
+                        ? Integer.numberOfTrailingZeros(magnitude + Integer.lowestOneBit(magnitude))
+                        : 31 - Integer.numberOfLeadingZeros(magnitude);
+                String operation = difference ? "sub" : "add";
+                if (low == 0) {
+                    Register highRegister = push();
+                    output.emitInstruction("sll", highRegister, operand, high);
+                    resultRegister = target(resultDestination, operand, highRegister);
+                    output.emitInstruction(operation, resultRegister, highRegister, operand);
+                } else {
+                    Register lowRegister = push();
+                    output.emitInstruction("sll", lowRegister, operand, low);
+                    resultRegister = target(resultDestination, operand);
+                    output.emitInstruction("sll", resultRegister, operand, high);
+                    output.emitInstruction(operation, resultRegister, resultRegister, lowRegister);
+                }
+            }
+            if (factor < 0) output.emitInstruction("sub", resultRegister, zeroRegister, resultRegister);
+            return resultRegister;
+        }
+
+        /**
+         * Emits code dividing a register by a power of two with an arithmetic shift.
+         * Since the division rounds towards zero, 2^k - 1 is added to negative dividends before shifting.
+         *
+         * @param resultDestination The register requested for the result or null.
+         * @param operand           The register holding the dividend. It is released.
+         * @param divisor           The divisor, a power of two up to the sign.
+         * @return The register holding the quotient.
+         */
+        private Register divide(Register resultDestination, Register operand, int divisor) {
+            int shift = Integer.numberOfTrailingZeros(Math.abs(divisor));
+            Register resultRegister;
+            if (shift == 0) {
+                resultRegister = target(resultDestination, operand);
+                if (divisor > 0) output.emitInstruction("add", resultRegister, operand, zeroRegister);
+                else output.emitInstruction("sub", resultRegister, zeroRegister, operand);
+                return resultRegister;
+            }
+            Register biasRegister = push();
+            if (shift == 1) {
+                output.emitInstruction("slr", biasRegister, operand, 31);
+            } else {
+                output.emitInstruction("sar", biasRegister, operand, 31);
+                output.emitInstruction("slr", biasRegister, biasRegister, 32 - shift);
             }
-            tmpRegister = tmpRegister.previous();
+            output.emitInstruction("add", biasRegister, operand, biasRegister);
+            resultRegister = target(resultDestination, operand, biasRegister);
+            output.emitInstruction("sar", resultRegister, biasRegister, shift);
+            if (divisor < 0) output.emitInstruction("sub", resultRegister, zeroRegister, resultRegister);
+            return resultRegister;
         }
-        public void logicalBinaryExpression(BinaryExpression bE, String label){
+
+        public void logicalBinaryExpression(BinaryExpression bE, Label label){
             logicalBinaryExpression(bE, label, true);
         }
-        public void logicalBinaryExpression(BinaryExpression bE, String label, boolean flip){
-            bE.leftOperand.accept(this);
-            Register leftRegister = tmpRegister.previous();
-            bE.rightOperand.accept(this);
-            Register rightRegister = tmpRegister.previous();
+        public void logicalBinaryExpression(BinaryExpression bE, Label label, boolean flip){
+            Register[] operands = evaluateOperands(bE.leftOperand, bE.rightOperand);
+            Register leftRegister = operands[0];
+            Register rightRegister = operands[1];
             var operator = bE.operator;
 
             if (flip){
@@ -248,29 +810,85 @@ public class CodeGenerator {
                 case LSE:
                     output.emitInstruction("ble", leftRegister, rightRegister, label);
             }
-            tmpRegister = tmpRegister.minus(2);
+            release(leftRegister, rightRegister);
         }
 
         @Override
         public void visit(VariableExpression vE){
+            Register resultDestination = takeDestination();
+            Register register = variableRegister(vE.variable);
+            if (register != null) {
+                // Der Wert steht bereits in einem Register und muss nur bei Bedarf kopiert werden
+                if (resultDestination != null && resultDestination.number != register.number) {
+                    output.emitInstruction("add", resultDestination, register, zeroRegister);
+                    register = resultDestination;
+                }
+                result = register;
+                return;
+            }
             vE.variable.accept(this);
-            output.emitInstruction("ldw", tmpRegister.previous(), tmpRegister.previous(), 0);
+            Register addressRegister = result;
+            int variableDisplacement = displacement;
+            result = target(resultDestination, addressRegister);
+            output.emitInstruction("ldw", result, addressRegister, variableDisplacement);
+        }
+
+        @Override
+        public void visit(AddressExpression aE){
+            Register resultDestination = takeDestination();
+            // Eine Adresse ohne Verschiebung wird direkt im gewünschten Register berechnet
+            if (aE.variable instanceof ArrayAccess && tiling.displacement(aE.variable) == 0) destination = resultDestination;
+            aE.variable.accept(this);
+            result = addressRegister(resultDestination);
         }
 
         @Override
         public void visit(IntLiteral intLit){
-            output.emitInstruction("add", tmpRegister, zeroRegister, intLit.value);
-            tmpRegister = tmpRegister.next();
+            Register resultDestination = takeDestination();
+            if (resultDestination == null && tiling.isZero(intLit)) {
+                result = zeroRegister;
+                return;
+            }
+            result = target(resultDestination);
+            loadConstant(result, intLit.value);
         }
 
         @Override
         public void visit(AssignStatement aS){
-            aS.target.accept(this);
-            aS.value.accept(this);
+            Register register = variableRegister(aS.target);
+            if (register != null) {
+                // Der Wert wird direkt in das Register der Variablen geschrieben
+                destination = register;
+                aS.value.accept(this);
+                destination = null;
+                if (result.number != register.number) {
+                    output.emitInstruction("add", register, result, zeroRegister);
+                    release(result);
+                }
+                return;
+            }
+            Register[] operands = evaluateOperands(aS.target, aS.value);
+            output.emitInstruction("stw", operands[1], operands[0], operandDisplacements[0], "assignStatement");
+            release(operands);
+        }
 
-            Register tmpRegisterMinusTwo = tmpRegister.minus(2);
-            output.emitInstruction("stw", tmpRegister.previous(), tmpRegisterMinusTwo, 0, "assignStatement");
-            tmpRegister = tmpRegister.minus(2);
+        @Override
+        public void visit(BindStatement bS){
+            VariableEntry entry = (VariableEntry)localtable.lookup(bS.reference.name);
+            if (entry.register != null) {
+                Register register = new Register(entry.register);
+                destination = register;
+                bS.address.accept(this);
+                destination = null;
+                if (result.number != register.number) {
+                    output.emitInstruction("add", register, result, zeroRegister, "bind " + bS.reference.name);
+                    release(result);
+                }
+                return;
+            }
+            bS.address.accept(this);
+            emitBodyFrameSlot("stw", result, entry.offset, "bind " + bS.reference.name);
+            release(result);
         }
     }
 
@@ -279,5 +897,23 @@ public class CodeGenerator {
 
         MyVisitor visitor = new MyVisitor(table, output);
         program.accept(visitor);
+
+        BranchOptimizer branchOptimizer = new BranchOptimizer(optimizationLevel >= 1
+                ? EnumSet.allOf(BranchOptimizer.Optimization.class)
+                : EnumSet.noneOf(BranchOptimizer.Optimization.class));
+        PeepholeOptimizer peepholeOptimizer = new PeepholeOptimizer(optimizationLevel >= 1
+                ? EnumSet.allOf(PeepholeOptimizer.Pattern.class)
+                : EnumSet.noneOf(PeepholeOptimizer.Pattern.class));
+        // Beide Durchläufe ermöglichen sich gegenseitig weitere Verbesserungen
+        boolean changed;
+        do {
+            changed = branchOptimizer.optimize(output.instructions());
+            changed |= peepholeOptimizer.optimize(output.instructions());
+        } while (changed);
+        output.print(outputFile);
+        if (listing != null) {
+            branchOptimizer.printHits(listing);
+            peepholeOptimizer.printHits(listing);
+        }
     }
 }
@@ -1,68 +1,98 @@
 package de.thm.mni.compilerbau.phases._06_codegen;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * This class collects the generated assembler code as a list of {@link Instruction}s, so it can be optimized
+ * before it is printed to the output file.
+ */
 class CodePrinter {
-    private final PrintWriter outputFile;
-
-    CodePrinter(PrintWriter outputFile) {
-        this.outputFile = outputFile;
-    }
+    private final List<Instruction> instructions = new ArrayList<>();
 
     void emitInstruction(String opcode, Register r1, Register r2, Register r3) {
-        outputFile.printf("\t%s\t%s,%s,%s\n", opcode, r1, r2, r3);
+        instructions.add(Instruction.instruction(opcode, null, r1, r2, r3));
     }
 
     void emitInstruction(String opcode, Register r1, Register r2, int value) {
-        outputFile.printf("\t%s\t%s,%s,%d\n", opcode, r1, r2, value);
+        instructions.add(Instruction.instruction(opcode, null, r1, r2, value));
+    }
+
+    void emitInstruction(String opcode, Register r1, Register r2, Label label) {
+        instructions.add(Instruction.instruction(opcode, null, r1, r2, label));
     }
 
-    void emitInstruction(String opcode, Register r1, Register r2, String label) {
-        outputFile.printf("\t%s\t%s,%s,%s\n", opcode, r1, r2, label);
+    void emitInstruction(String opcode, Register r1, int value) {
+        instructions.add(Instruction.instruction(opcode, null, r1, value));
     }
 
     void emitInstruction(String opcode, Register r1) {
-        outputFile.printf("\t%s\t%s\n", opcode, r1);
+        instructions.add(Instruction.instruction(opcode, null, r1));
     }
 
-    void emitInstruction(String opcode, String label) {
-        outputFile.printf("\t%s\t%s\n", opcode, label);
+    void emitInstruction(String opcode, Label label) {
+        instructions.add(Instruction.instruction(opcode, null, label));
     }
 
     void emitInstruction(String opcode, Register r1, Register r2, Register r3, String comment) {
-        outputFile.printf("\t%s\t%s,%s,%s\t\t; %s\n", opcode, r1, r2, r3, comment);
+        instructions.add(Instruction.instruction(opcode, comment, r1, r2, r3));
     }
 
     void emitInstruction(String opcode, Register r1, Register r2, int value, String comment) {
-        outputFile.printf("\t%s\t%s,%s,%d\t\t; %s\n", opcode, r1, r2, value, comment);
+        instructions.add(Instruction.instruction(opcode, comment, r1, r2, value));
     }
 
-    void emitInstruction(String opcode, Register r1, Register r2, String label, String comment) {
-        outputFile.printf("\t%s\t%s,%s,%s\t\t; %s\n", opcode, r1, r2, label, comment);
+    void emitInstruction(String opcode, Register r1, Register r2, Label label, String comment) {
+        instructions.add(Instruction.instruction(opcode, comment, r1, r2, label));
     }
 
     void emitInstruction(String opcode, Register r1, String comment) {
-        outputFile.printf("\t%s\t%s\t\t\t; %s\n", opcode, r1, comment);
+        instructions.add(Instruction.instruction(opcode, comment, r1));
     }
 
-    void emitInstruction(String opcode, String label, String comment) {
-        outputFile.printf("\t%s\t%s\t\t; %s\n", opcode, label, comment);
+    void emitInstruction(String opcode, Label label, String comment) {
+        instructions.add(Instruction.instruction(opcode, comment, label));
     }
 
-    void emitLabel(String label) {
-        outputFile.printf("%s:\n", label);
+    void emitLabel(Label label) {
+        instructions.add(Instruction.label(label));
     }
 
     void emitImport(String label) {
-        outputFile.printf("\t.import\t%s\n", label);
+        instructions.add(Instruction.directive("\t.import\t" + label));
     }
 
     void emitExport(String label) {
-        outputFile.printf("\t.export\t%s\n", label);
+        instructions.add(Instruction.directive("\t.export\t" + label));
     }
 
     void emit(String str) {
-        outputFile.println(str);
+        instructions.add(Instruction.directive(str));
     }
-}
 
+    /**
+     * Appends the code collected by another printer.
+     *
+     * @param code The printer holding the code to append.
+     */
+    void emitCode(CodePrinter code) {
+        instructions.addAll(code.instructions);
+    }
+
+    /**
+     * @return The collected code. Changes to the list change the code that is printed.
+     */
+    List<Instruction> instructions() {
+        return instructions;
+    }
+
+    /**
+     * Prints the collected code.
+     *
+     * @param outputFile The PrintWriter to the output file.
+     */
+    void print(PrintWriter outputFile) {
+        instructions.forEach(instruction -> outputFile.printf("%s\n", instruction));
+    }
+}
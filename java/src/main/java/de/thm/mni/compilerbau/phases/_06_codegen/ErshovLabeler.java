@@ -0,0 +1,142 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.table.VariableEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class labels expressions and variables with their Ershov number.
+ * The Ershov number of a node is the number of registers needed to evaluate it without storing intermediate results
+ * in memory, provided the operand with the higher number is always evaluated first.
+ * Labels are calculated lazily and cached per node.
+ * Variables kept in a register by phase 5 need no register of their own and are labeled with 0. For references kept
+ * in a register, the value still has to be loaded into a register.
+ * The labels follow the tiles chosen by {@link Tiling}: constants encoded as immediate values, the constant 0 and
+ * variables addressed relative to the frame pointer need no register either.
+ */
+class ErshovLabeler {
+    /**
+     * Every array access needs a third register for the array size while address and index are held for the bounds check.
+     */
+    private static final int ARRAY_ACCESS_REGISTERS = 3;
+    /**
+     * Shift sequences replacing a multiplication or division hold the operand and an intermediate result.
+     */
+    private static final int STRENGTH_REDUCTION_REGISTERS = 2;
+
+    private final SymbolTable localTable;
+    private final Tiling tiling;
+    private final Map<Node, Integer> labels = new HashMap<>();
+
+    /**
+     * @param localTable The local table of the procedure whose expressions are labeled.
+     * @param tiling     The tiles chosen for the expressions of the procedure.
+     */
+    ErshovLabeler(SymbolTable localTable, Tiling tiling) {
+        this.localTable = localTable;
+        this.tiling = tiling;
+    }
+
+    class MyVisitor extends DoNothingVisitor {
+        private int result;
+
+        @Override
+        public void visit(IntLiteral intLiteral) {
+            result = tiling.isZero(intLiteral) ? 0 : 1;
+        }
+
+        @Override
+        public void visit(NamedVariable namedVariable) {
+            result = lookup(namedVariable).register != null || tiling.isFrameAddressed(namedVariable) ? 0 : 1;
+        }
+
+        @Override
+        public void visit(VariableExpression variableExpression) {
+            // The value is loaded into the register that held the address, or is already held in a register.
+            Variable variable = variableExpression.variable;
+            boolean inRegister = variable instanceof NamedVariable && !lookup((NamedVariable) variable).isReference && label(variable) == 0;
+            result = inRegister ? 0 : Math.max(label(variable), 1);
+        }
+
+        @Override
+        public void visit(AddressExpression addressExpression) {
+            // Only addresses held in a register without displacement need no register for the sum.
+            Variable variable = addressExpression.variable;
+            result = tiling.isAddressInRegister(variable) ? 0 : Math.max(label(variable), 1);
+        }
+
+        @Override
+        public void visit(ArrayAccess arrayAccess) {
+            Tiling.SplitIndex index = tiling.splitIndex(arrayAccess);
+            if (index != null && index.variablePart == null) {
+                // The whole index is folded into the displacement.
+                result = label(arrayAccess.array);
+                return;
+            }
+            Expression variableIndex = index != null ? index.variablePart : arrayAccess.index;
+            result = Math.max(combine(label(arrayAccess.array), label(variableIndex)), ARRAY_ACCESS_REGISTERS);
+        }
+
+        @Override
+        public void visit(BinaryExpression binaryExpression) {
+            IntLiteral immediate = tiling.immediateOperand(binaryExpression);
+            if (immediate != null) {
+                Expression operand = immediate == binaryExpression.rightOperand ? binaryExpression.leftOperand : binaryExpression.rightOperand;
+                result = Math.max(label(operand), 1);
+            } else {
+                result = combine(label(binaryExpression.leftOperand), label(binaryExpression.rightOperand));
+            }
+            if (binaryExpression.operator == BinaryExpression.Operator.MUL || binaryExpression.operator == BinaryExpression.Operator.DIV) {
+                // Multiplications and divisions by constants may be replaced by shifts that need an extra register.
+                result = Math.max(result, STRENGTH_REDUCTION_REGISTERS);
+            }
+        }
+    }
+
+    private VariableEntry lookup(NamedVariable namedVariable) {
+        return (VariableEntry) localTable.lookup(namedVariable.name);
+    }
+
+    /**
+     * Combines the labels of two operands whose values both have to be held in registers at the same time.
+     *
+     * @param first  The label of the first operand.
+     * @param second The label of the second operand.
+     * @return The number of registers needed to evaluate both operands.
+     */
+    static int combine(int first, int second) {
+        return first == second ? first + 1 : Math.max(first, second);
+    }
+
+    /**
+     * Returns the Ershov number of an expression or variable.
+     *
+     * @param node The {@link Expression} or {@link Variable} to label.
+     * @return The number of registers needed to evaluate the node.
+     */
+    int label(Node node) {
+        Integer label = labels.get(node);
+        if (label == null) {
+            MyVisitor visitor = new MyVisitor();
+            node.accept(visitor);
+            label = visitor.result;
+            labels.put(node, label);
+        }
+        return label;
+    }
+
+    /**
+     * Decides the evaluation order of two operands.
+     *
+     * @param first  The operand that comes first in the source code.
+     * @param second The operand that comes second in the source code.
+     * @return true if the second operand needs more registers and should therefore be evaluated first.
+     */
+    boolean evaluateSecondFirst(Node first, Node second) {
+        return label(second) > label(first);
+    }
+}
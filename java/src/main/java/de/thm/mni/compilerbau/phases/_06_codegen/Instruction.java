@@ -0,0 +1,136 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This class represents a single line of the generated assembler code: an instruction, a label or a directive.
+ * Operands of instructions are {@link Register}s, constants ({@link Integer}) or {@link Label}s.
+ */
+class Instruction {
+    /**
+     * The mnemonic of the instruction, null for labels and directives.
+     */
+    final String opcode;
+    final List<Object> operands;
+    final String comment;
+    /**
+     * The label, if this line defines a label.
+     */
+    final Label label;
+    /**
+     * The text of the line, if this line is a directive.
+     */
+    final String text;
+
+    private Instruction(String opcode, List<Object> operands, String comment, Label label, String text) {
+        this.opcode = opcode;
+        this.operands = operands;
+        this.comment = comment;
+        this.label = label;
+        this.text = text;
+    }
+
+    /**
+     * @param opcode   The mnemonic of the instruction.
+     * @param comment  The comment printed behind the instruction or null.
+     * @param operands The operands of the instruction.
+     */
+    static Instruction instruction(String opcode, String comment, Object... operands) {
+        return new Instruction(opcode, List.of(operands), comment, null, null);
+    }
+
+    static Instruction label(Label label) {
+        return new Instruction(null, List.of(), null, label, null);
+    }
+
+    static Instruction directive(String text) {
+        return new Instruction(null, List.of(), null, null, text);
+    }
+
+    boolean isInstruction() {
+        return opcode != null;
+    }
+
+    boolean isLabel() {
+        return label != null;
+    }
+
+    /**
+     * @param opcodes Mnemonics.
+     * @return true if this line is an instruction with one of the given mnemonics.
+     */
+    boolean is(String... opcodes) {
+        return isInstruction() && List.of(opcodes).contains(opcode);
+    }
+
+    /**
+     * @return true if the instruction is a jump or a conditional branch to a label of the assembled code.
+     */
+    boolean isJump() {
+        return is("j", "beq", "bne", "blt", "ble", "bgt", "bge", "bltu", "bleu", "bgtu", "bgeu");
+    }
+
+    /**
+     * @return true if the instruction never continues with the following instruction.
+     */
+    boolean isUnconditional() {
+        return is("j", "jr");
+    }
+
+    /**
+     * @return The label this instruction refers to, null if no operand is a label.
+     */
+    Label target() {
+        if (!isInstruction() || operands.isEmpty()) return null;
+        Object last = operands.get(operands.size() - 1);
+        return last instanceof Label ? (Label) last : null;
+    }
+
+    Register register(int index) {
+        return operands.get(index) instanceof Register ? (Register) operands.get(index) : null;
+    }
+
+    Integer constant(int index) {
+        return operands.get(index) instanceof Integer ? (Integer) operands.get(index) : null;
+    }
+
+    /**
+     * @param index The index of an operand.
+     * @param other Another register or null.
+     * @return true if the operand is the given register.
+     */
+    boolean hasRegister(int index, Register other) {
+        Register register = register(index);
+        return register != null && other != null && register.number == other.number;
+    }
+
+    /**
+     * @param target The new label operand.
+     * @return A copy of this instruction referring to another label.
+     */
+    Instruction withTarget(Label target) {
+        return withTarget(opcode, target);
+    }
+
+    /**
+     * @param newOpcode The new mnemonic.
+     * @param target    The new label operand.
+     * @return A copy of this instruction with another mnemonic, referring to another label.
+     */
+    Instruction withTarget(String newOpcode, Label target) {
+        Object[] newOperands = operands.toArray();
+        newOperands[newOperands.length - 1] = target;
+        return instruction(newOpcode, comment, newOperands);
+    }
+
+    @Override
+    public String toString() {
+        if (isLabel()) return label + ":";
+        if (!isInstruction()) return text;
+        String operandList = operands.stream().map(String::valueOf).collect(Collectors.joining(","));
+        if (comment == null) return "\t" + opcode + "\t" + operandList;
+        String separator = operands.size() == 1 && operands.get(0) instanceof Register ? "\t\t\t" : "\t\t";
+        return "\t" + opcode + "\t" + operandList + separator + "; " + comment;
+    }
+}
@@ -0,0 +1,28 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+/**
+ * This class represents a label in the generated code, either a label generated for the control flow of a procedure
+ * or the name of a procedure. Two labels are equal if they have the same name.
+ */
+class Label {
+    final String name;
+
+    Label(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Label && ((Label) other).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,226 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * This class improves the generated code by looking at short sequences of neighbouring instructions.
+ * Each {@link Pattern} can be enabled separately. All enabled patterns are applied repeatedly until none of them
+ * matches anymore, since applying one pattern may enable another. The number of applications of each pattern is
+ * counted.
+ * <p>
+ * Labels end a sequence, since other code may jump to them. Labels that are exported (procedures) are never
+ * removed.
+ */
+class PeepholeOptimizer {
+    enum Pattern {
+        /**
+         * stw $r,$b,d followed by ldw $s,$b,d: the value is taken from $r instead of loading it again.
+         */
+        STORE_RELOAD("store-reload"),
+        /**
+         * A jump or branch to a label directly following it.
+         */
+        JUMP_TO_NEXT("jump-to-next"),
+        /**
+         * add $r,$r,0 and add $r,$r,$0, which do not change anything.
+         */
+        ADD_ZERO("add-zero"),
+        /**
+         * add $r,$b,c followed by add $r,$r,d or ldw $r,$r,d: the constants are combined into one instruction.
+         */
+        ADD_CHAIN("add-chain"),
+        /**
+         * Labels that are never referred to, and the second of two neighbouring labels.
+         */
+        DEAD_LABEL("dead-label");
+
+        final String name;
+
+        Pattern(String name) {
+            this.name = name;
+        }
+    }
+
+    private final Set<Pattern> patterns;
+    private final Map<Pattern, Integer> hits = new EnumMap<>(Pattern.class);
+    private List<Instruction> code;
+
+    /**
+     * @param patterns The patterns to apply.
+     */
+    PeepholeOptimizer(Set<Pattern> patterns) {
+        this.patterns = patterns;
+        for (Pattern pattern : Pattern.values()) hits.put(pattern, 0);
+    }
+
+    /**
+     * Applies the enabled patterns to the given code.
+     *
+     * @param code The code to optimize. It is changed in place.
+     * @return true if the code was changed.
+     */
+    boolean optimize(List<Instruction> code) {
+        this.code = code;
+        boolean changed;
+        boolean anyChange = false;
+        do {
+            changed = false;
+            for (Pattern pattern : patterns) {
+                int count = apply(pattern);
+                hits.merge(pattern, count, Integer::sum);
+                changed |= count > 0;
+            }
+            anyChange |= changed;
+        } while (changed);
+        return anyChange;
+    }
+
+    /**
+     * @return The number of applications of each pattern.
+     */
+    Map<Pattern, Integer> hits() {
+        return hits;
+    }
+
+    /**
+     * Prints the number of applications of each enabled pattern (--peephole).
+     */
+    void printHits(PrintWriter listing) {
+        listing.println("Peephole optimizations:");
+        patterns.forEach(pattern -> listing.printf("  %-14s%d\n", pattern.name + ":", hits.get(pattern)));
+    }
+
+    private int apply(Pattern pattern) {
+        switch (pattern) {
+            case STORE_RELOAD:
+                return storeReload();
+            case JUMP_TO_NEXT:
+                return jumpToNext();
+            case ADD_ZERO:
+                return addZero();
+            case ADD_CHAIN:
+                return addChain();
+            case DEAD_LABEL:
+                return deadLabels();
+            default:
+                throw new IllegalArgumentException(pattern.name);
+        }
+    }
+
+    private int storeReload() {
+        int count = 0;
+        for (int i = 0; i + 1 < code.size(); i++) {
+            Instruction store = code.get(i);
+            Instruction load = code.get(i + 1);
+            if (!store.is("stw") || !load.is("ldw") || !sameAddress(store, load)) continue;
+            Register value = store.register(0);
+            Register loaded = load.register(0);
+            if (loaded.number == value.number) {
+                code.remove(i + 1);
+            } else {
+                code.set(i + 1, Instruction.instruction("add", load.comment, loaded, value, new Register(0)));
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean sameAddress(Instruction first, Instruction second) {
+        return first.register(1).number == second.register(1).number && Objects.equals(first.constant(2), second.constant(2));
+    }
+
+    private int jumpToNext() {
+        int count = 0;
+        for (int i = 0; i < code.size(); i++) {
+            Instruction jump = code.get(i);
+            if (!jump.isJump()) continue;
+            // Der Sprung ist überflüssig, wenn das Ziel unter den direkt folgenden Labels ist
+            for (int next = i + 1; next < code.size() && code.get(next).isLabel(); next++) {
+                if (code.get(next).label.equals(jump.target())) {
+                    code.remove(i--);
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int addZero() {
+        int count = 0;
+        for (int i = 0; i < code.size(); i++) {
+            Instruction add = code.get(i);
+            if (!add.is("add") || !add.hasRegister(1, add.register(0))) continue;
+            Integer constant = add.constant(2);
+            if ((constant != null && constant == 0) || (add.register(2) != null && add.register(2).number == 0)) {
+                code.remove(i--);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int addChain() {
+        int count = 0;
+        for (int i = 0; i + 1 < code.size(); i++) {
+            Instruction add = code.get(i);
+            Instruction next = code.get(i + 1);
+            if (!add.is("add") || add.constant(2) == null || !next.is("add", "ldw") || next.constant(2) == null) continue;
+            Register register = add.register(0);
+            // Das Zwischenergebnis wird vom zweiten Befehl überschrieben und ist danach nicht mehr sichtbar
+            if (!next.hasRegister(0, register) || !next.hasRegister(1, register)) continue;
+            long sum = (long) add.constant(2) + next.constant(2);
+            if (!Tiling.isImmediate(sum)) continue;
+            code.set(i, Instruction.instruction(next.opcode, next.comment, register, add.register(1), (int) sum));
+            code.remove(i + 1);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param code The generated code.
+     * @return The labels exported by the code, which may be referred to from outside.
+     */
+    static Set<Label> exportedLabels(List<Instruction> code) {
+        Set<Label> exported = new HashSet<>();
+        for (Instruction line : code) {
+            if (!line.isInstruction() && !line.isLabel() && line.text.startsWith("\t.export\t")) {
+                exported.add(new Label(line.text.substring("\t.export\t".length())));
+            }
+        }
+        return exported;
+    }
+
+    private int deadLabels() {
+        Set<Label> exported = exportedLabels(code);
+        Map<Label, Label> renamed = new HashMap<>();
+        for (int i = 0; i < code.size(); i++) {
+            Instruction line = code.get(i);
+            // Von zwei benachbarten Labels bleibt das erste erhalten
+            if (line.isLabel() && i + 1 < code.size() && code.get(i + 1).isLabel()) {
+                renamed.put(code.get(i + 1).label, line.label);
+            }
+        }
+        Set<Label> referenced = new HashSet<>();
+        for (int i = 0; i < code.size(); i++) {
+            Instruction line = code.get(i);
+            Label target = line.target();
+            if (target == null) continue;
+            Label newTarget = target;
+            while (renamed.containsKey(newTarget) && !exported.contains(newTarget)) newTarget = renamed.get(newTarget);
+            if (!newTarget.equals(target)) code.set(i, line.withTarget(newTarget));
+            referenced.add(newTarget);
+        }
+        int count = 0;
+        for (int i = 0; i < code.size(); i++) {
+            Instruction line = code.get(i);
+            if (line.isLabel() && !referenced.contains(line.label) && !exported.contains(line.label)) {
+                code.remove(i--);
+                count++;
+            }
+        }
+        return count;
+    }
+}
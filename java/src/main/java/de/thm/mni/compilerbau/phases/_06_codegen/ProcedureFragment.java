@@ -0,0 +1,80 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The code generated for a single procedure together with its stack layout, which can be reused by a later
+ * compilation of an unchanged procedure (see {@link CodeGenerator#reuseFragments}).
+ * <p>
+ * The labels generated for the control flow are numbered consecutively over the whole program. A fragment therefore
+ * stores its labels numbered from 0 and renumbers them when it is inserted, so the result is the same as if the
+ * procedure was generated again.
+ */
+public class ProcedureFragment {
+    private final List<Instruction> code;
+    private final int labelCount;
+    private final StackLayout stackLayout = new StackLayout();
+
+    private ProcedureFragment(List<Instruction> code, int labelCount, StackLayout stackLayout) {
+        this.code = code;
+        this.labelCount = labelCount;
+        this.stackLayout.copyFrom(stackLayout);
+    }
+
+    /**
+     * @param code        The code of the procedure before the branch and peephole optimizations.
+     * @param firstLabel  The number of the first label generated for the procedure.
+     * @param labelCount  The number of labels generated for the procedure.
+     * @param stackLayout The final stack layout of the procedure.
+     */
+    static ProcedureFragment of(List<Instruction> code, int firstLabel, int labelCount, StackLayout stackLayout) {
+        return new ProcedureFragment(renumber(code, firstLabel, labelCount, -firstLabel), labelCount, stackLayout);
+    }
+
+    /**
+     * @param firstLabel The number the first label of the procedure gets in the program it is inserted into.
+     * @return The code of the procedure.
+     */
+    List<Instruction> instantiate(int firstLabel) {
+        return renumber(code, 0, labelCount, firstLabel);
+    }
+
+    int labelCount() {
+        return labelCount;
+    }
+
+    /**
+     * @return A copy of the stack layout of the procedure.
+     */
+    public StackLayout stackLayout() {
+        StackLayout copy = new StackLayout();
+        copy.copyFrom(stackLayout);
+        return copy;
+    }
+
+    /**
+     * Adds an offset to the numbers of all generated labels in the range [first, first + count).
+     */
+    private static List<Instruction> renumber(List<Instruction> code, int first, int count, int offset) {
+        List<Instruction> renumbered = new ArrayList<>(code.size());
+        for (Instruction line : code) {
+            if (line.isLabel()) {
+                renumbered.add(Instruction.label(renumber(line.label, first, count, offset)));
+            } else if (line.target() != null) {
+                renumbered.add(line.withTarget(renumber(line.target(), first, count, offset)));
+            } else {
+                renumbered.add(line);
+            }
+        }
+        return renumbered;
+    }
+
+    private static Label renumber(Label label, int first, int count, int offset) {
+        if (!label.name.matches("L\\d+")) return label;
+        int number = Integer.parseInt(label.name.substring(1));
+        return number >= first && number < first + count ? new Label("L" + (number + offset)) : label;
+    }
+}
@@ -0,0 +1,470 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import de.thm.mni.compilerbau.absyn.BinaryExpression;
+import de.thm.mni.compilerbau.phases._04d_ssa.*;
+import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * This class generates the code for the body of a procedure from its control flow graph (-O2).
+ * The blocks are emitted in the order of the graph. A conditional branch is emitted as branch to the first
+ * successor followed by a jump to the second one; the {@link BranchOptimizer} removes the jumps to the following
+ * block afterwards.
+ * <p>
+ * Phi functions are resolved by copies at the end of the predecessors, which are executed in parallel: a copy
+ * overwriting the source of another copy is delayed, cycles of copies are broken with register $8. Since critical
+ * edges are split before, the copies are only executed on the edge they belong to.
+ */
+class SsaCodeGenerator {
+    private static final Register zeroRegister = new Register(0);
+    private static final Register firstScratchRegister = new Register(8);
+    private static final Register secondScratchRegister = new Register(9);
+    private static final Register framePointerRegister = new Register(25);
+    private static final Register stackPointerRegister = new Register(29);
+
+    private final ControlFlowGraph graph;
+    private final StackLayout stackLayout;
+    private final Label indexErrorLabel;
+    private final Supplier<Label> newLabel;
+    private final SsaTiling tiling = new SsaTiling();
+    private final SsaRegisterAllocator allocator;
+    private final CodePrinter output = new CodePrinter();
+    private final Map<BasicBlock, Label> labels = new HashMap<>();
+    private Label epilogueLabel;
+
+    /**
+     * @param graph           The control flow graph of the procedure.
+     * @param stackLayout     The stack layout of the procedure. The sizes of the spill area and of the area for saved
+     *                        registers are set by the code generation.
+     * @param indexErrorLabel The label of the runtime procedure reporting an invalid index.
+     * @param newLabel        Creates labels unique in the whole program.
+     */
+    SsaCodeGenerator(ControlFlowGraph graph, StackLayout stackLayout, Label indexErrorLabel, Supplier<Label> newLabel) {
+        this.graph = graph;
+        this.stackLayout = stackLayout;
+        this.indexErrorLabel = indexErrorLabel;
+        this.newLabel = newLabel;
+        graph.splitCriticalEdges();
+        this.allocator = new SsaRegisterAllocator(graph, tiling);
+        allocator.allocate();
+        stackLayout.spillAreaSize = 4 * allocator.spillSlotCount();
+        stackLayout.savedRegisterAreaSize = 4 * allocator.calleeSavedRegisters().size();
+    }
+
+    /**
+     * @return The callee-saved registers written by the procedure.
+     */
+    List<Register> savedRegisters() {
+        return allocator.calleeSavedRegisters();
+    }
+
+    /**
+     * Generates the code of the procedure body.
+     *
+     * @param epilogueLabel The label of the procedure epilog, which is jumped to at the end of the procedure.
+     * @return The code of the body.
+     */
+    CodePrinter generate(Label epilogueLabel) {
+        this.epilogueLabel = epilogueLabel;
+        graph.blocks().forEach(block -> labels.put(block, newLabel.get()));
+        MyVisitor visitor = new MyVisitor();
+        for (BasicBlock block : graph.blocks()) {
+            output.emitLabel(labels.get(block));
+            block.allOperations().forEach(operation -> operation.accept(visitor));
+        }
+        return output;
+    }
+
+    /**
+     * Emits a load or store of a slot in the stack frame, relative to the stack pointer if the offset from the frame
+     * pointer does not fit into the displacement field.
+     */
+    private void emitFrameSlot(String opcode, Register register, int offset, String comment) {
+        if (Tiling.isImmediate(offset)) output.emitInstruction(opcode, register, framePointerRegister, offset, comment);
+        else output.emitInstruction(opcode, register, stackPointerRegister, offset + stackLayout.frameSize(), comment);
+    }
+
+    private void loadConstant(Register register, int value) {
+        if (Tiling.isImmediate(value)) {
+            output.emitInstruction("add", register, zeroRegister, value);
+        } else if (Tiling.isUnsignedImmediate(value)) {
+            output.emitInstruction("or", register, zeroRegister, value);
+        } else {
+            output.emitInstruction("ldhi", register, value);
+            if ((value & 0xFFFF) != 0) output.emitInstruction("or", register, register, value & 0xFFFF);
+        }
+    }
+
+    /**
+     * Emits an instruction with a constant operand, which is loaded into a scratch register if it does not fit
+     * into the immediate field.
+     */
+    private void emitImmediate(String opcode, Register resultRegister, Register operand, int value, Register scratch) {
+        if (Tiling.isImmediate(value)) {
+            output.emitInstruction(opcode, resultRegister, operand, value);
+        } else {
+            loadConstant(scratch, value);
+            output.emitInstruction(opcode, resultRegister, operand, scratch);
+        }
+    }
+
+    /**
+     * @return The register the value of an operation is computed into: its own register, or a scratch register if
+     * the value is spilled.
+     */
+    private Register resultRegister(Operation operation) {
+        SsaRegisterAllocator.Location location = allocator.location(operation);
+        return location.isRegister() ? location.register : firstScratchRegister;
+    }
+
+    /**
+     * Stores the value of an operation to its spill slot if it has no register.
+     */
+    private void finish(Operation operation, Register register) {
+        SsaRegisterAllocator.Location location = allocator.location(operation);
+        if (!location.isRegister()) emitFrameSlot("stw", register, stackLayout.spillSlotOffset(location.spillSlot), "spill");
+    }
+
+    /**
+     * @param value   A value held in a register.
+     * @param scratch The register a spilled value is reloaded into.
+     * @return The register holding the contents of the register of the value.
+     */
+    private Register contents(Value value, Register scratch) {
+        SsaRegisterAllocator.Location location = allocator.location(value);
+        if (location.isRegister()) return location.register;
+        emitFrameSlot("ldw", scratch, stackLayout.spillSlotOffset(location.spillSlot), "reload");
+        return scratch;
+    }
+
+    /**
+     * @param address An address.
+     * @param scratch The register a spilled base is reloaded into.
+     * @return The base register of the address.
+     */
+    private Register baseRegister(SsaTiling.Address address, Register scratch) {
+        return address.base == null ? framePointerRegister : contents(address.base, scratch);
+    }
+
+    /**
+     * Provides the complete value of an operand in a register. Constants and folded addresses are computed into the
+     * scratch register.
+     *
+     * @param value   The operand.
+     * @param scratch The register used if the value is not held in a register.
+     * @return The register holding the value.
+     */
+    private Register operand(Value value, Register scratch) {
+        if (value instanceof Undefined) return zeroRegister;
+        if (value instanceof Constant) {
+            int constant = ((Constant) value).value;
+            if (constant == 0) return zeroRegister;
+            loadConstant(scratch, constant);
+            return scratch;
+        }
+        SsaTiling.Address address = tiling.address(value);
+        Register base = baseRegister(address, scratch);
+        if (address.displacement == 0) return base;
+        output.emitInstruction("add", scratch, base, address.displacement);
+        return scratch;
+    }
+
+    private static String arithmeticInstruction(BinaryExpression.Operator operator) {
+        switch (operator) {
+            case ADD:
+                return "add";
+            case SUB:
+                return "sub";
+            case MUL:
+                return "mul";
+            case DIV:
+                return "div";
+            default:
+                throw new IllegalArgumentException(operator.toString());
+        }
+    }
+
+    private static String branchInstruction(BinaryExpression.Operator operator) {
+        switch (operator) {
+            case EQU:
+                return "beq";
+            case NEQ:
+                return "bne";
+            case LST:
+                return "blt";
+            case LSE:
+                return "ble";
+            case GRT:
+                return "bgt";
+            case GRE:
+                return "bge";
+            default:
+                throw new IllegalArgumentException(operator.toString());
+        }
+    }
+
+    /**
+     * Emits code multiplying a register by a constant, with shifts for the factors accepted by
+     * {@link Tiling#isCheapFactor(int)}. The result register is written last, so it may be the operand register.
+     *
+     * @param resultRegister The register for the product.
+     * @param operand        The register holding the value to multiply, $8, $9 or an allocated register.
+     * @param factor         The constant factor.
+     */
+    private void multiply(Register resultRegister, Register operand, int factor) {
+        if (!Tiling.isCheapFactor(factor)) {
+            emitImmediate("mul", resultRegister, operand, factor, operand.number == 9 ? firstScratchRegister : secondScratchRegister);
+            return;
+        }
+        int magnitude = Math.abs(factor);
+        if (Integer.bitCount(magnitude) == 1) {
+            int shift = Integer.numberOfTrailingZeros(magnitude);
+            if (shift == 0) output.emitInstruction("add", resultRegister, operand, zeroRegister);
+            else output.emitInstruction("sll", resultRegister, operand, shift);
+        } else {
+            // 2^high + 2^low oder 2^high - 2^low, das erste Zwischenergebnis darf den Operanden nicht überschreiben
+            Register highRegister = operand.number == 9 ? firstScratchRegister : secondScratchRegister;
+            Register lowRegister = operand.number == 9 ? secondScratchRegister : firstScratchRegister;
+            int low = Integer.numberOfTrailingZeros(magnitude);
+            boolean difference = Integer.bitCount(magnitude) != 2;
+            int high = difference
+                    ? Integer.numberOfTrailingZeros(magnitude + Integer.lowestOneBit(magnitude))
+                    : 31 - Integer.numberOfLeadingZeros(magnitude);
+            String operation = difference ? "sub" : "add";
+            output.emitInstruction("sll", highRegister, operand, high);
+            if (low == 0) {
+                output.emitInstruction(operation, resultRegister, highRegister, operand);
+            } else {
+                output.emitInstruction("sll", lowRegister, operand, low);
+                output.emitInstruction(operation, resultRegister, highRegister, lowRegister);
+            }
+        }
+        if (factor < 0) output.emitInstruction("sub", resultRegister, zeroRegister, resultRegister);
+    }
+
+    /**
+     * Emits code dividing a register by a power of two, see {@link CodeGenerator}. Register $9 holds the biased
+     * dividend, so the operand must not be $9.
+     */
+    private void divide(Register resultRegister, Register operand, int divisor) {
+        int shift = Integer.numberOfTrailingZeros(Math.abs(divisor));
+        if (shift == 0) {
+            if (divisor > 0) output.emitInstruction("add", resultRegister, operand, zeroRegister);
+            else output.emitInstruction("sub", resultRegister, zeroRegister, operand);
+            return;
+        }
+        Register biasRegister = secondScratchRegister;
+        if (shift == 1) {
+            output.emitInstruction("slr", biasRegister, operand, 31);
+        } else {
+            output.emitInstruction("sar", biasRegister, operand, 31);
+            output.emitInstruction("slr", biasRegister, biasRegister, 32 - shift);
+        }
+        output.emitInstruction("add", biasRegister, operand, biasRegister);
+        output.emitInstruction("sar", resultRegister, biasRegister, shift);
+        if (divisor < 0) output.emitInstruction("sub", resultRegister, zeroRegister, resultRegister);
+    }
+
+    /**
+     * A copy of the parallel copies resolving the phi functions at the end of a block.
+     */
+    private class Copy {
+        final SsaRegisterAllocator.Location destination;
+        final Value value;
+        /**
+         * The location the value (or the base of the address) is read from, null if no location is read.
+         */
+        SsaRegisterAllocator.Location source;
+
+        Copy(SsaRegisterAllocator.Location destination, Value value) {
+            this.destination = destination;
+            this.value = value;
+            Value read = tiling.registerRead(value);
+            this.source = read == null ? null : allocator.location(read);
+        }
+
+        boolean isUseless() {
+            return source != null && source.equals(destination) && tiling.address(value).displacement == 0
+                    && !(value instanceof Constant);
+        }
+
+        void emit() {
+            Register target = destination.isRegister() ? destination.register : secondScratchRegister;
+            if (value instanceof Constant || value instanceof Undefined) {
+                loadConstant(target, value instanceof Constant ? ((Constant) value).value : 0);
+            } else {
+                SsaTiling.Address address = tiling.address(value);
+                Register base;
+                if (source == null) {
+                    base = framePointerRegister;
+                } else if (source.isRegister()) {
+                    base = source.register;
+                } else {
+                    emitFrameSlot("ldw", target, stackLayout.spillSlotOffset(source.spillSlot), "reload");
+                    base = target;
+                }
+                if (address.displacement != 0) output.emitInstruction("add", target, base, address.displacement);
+                else if (base.number != target.number) output.emitInstruction("add", target, base, zeroRegister);
+            }
+            if (!destination.isRegister()) {
+                emitFrameSlot("stw", target, stackLayout.spillSlotOffset(destination.spillSlot), "spill");
+            }
+        }
+    }
+
+    /**
+     * Emits the copies for the phi functions of the successor of a block at the end of the block.
+     */
+    private void emitPhiCopies(BasicBlock block, BasicBlock successor) {
+        int index = successor.predecessors().indexOf(block);
+        List<Copy> pending = new ArrayList<>();
+        for (Phi phi : successor.phis()) {
+            if (!allocator.isNeeded(phi) || phi.operand(index) instanceof Undefined) continue;
+            Copy copy = new Copy(allocator.location(phi), phi.operand(index));
+            if (!copy.isUseless()) pending.add(copy);
+        }
+        while (!pending.isEmpty()) {
+            Copy ready = null;
+            for (Copy copy : pending) {
+                boolean read = false;
+                for (Copy other : pending) read |= other != copy && copy.destination.equals(other.source);
+                if (!read) {
+                    ready = copy;
+                    break;
+                }
+            }
+            if (ready != null) {
+                ready.emit();
+                pending.remove(ready);
+                continue;
+            }
+            // Zyklus: eine Quelle wird nach $8 gerettet, alle Kopien lesen sie danach von dort
+            SsaRegisterAllocator.Location saved = null;
+            for (Copy copy : pending) {
+                for (Copy other : pending) {
+                    if (saved == null && copy.source != null && copy.source.equals(other.destination)) saved = copy.source;
+                }
+            }
+            SsaRegisterAllocator.Location temporary = SsaRegisterAllocator.Location.register(firstScratchRegister);
+            if (saved.isRegister()) output.emitInstruction("add", firstScratchRegister, saved.register, zeroRegister);
+            else emitFrameSlot("ldw", firstScratchRegister, stackLayout.spillSlotOffset(saved.spillSlot), "reload");
+            for (Copy copy : pending) {
+                if (saved.equals(copy.source)) copy.source = temporary;
+            }
+        }
+    }
+
+    class MyVisitor implements OperationVisitor {
+        @Override
+        public void visit(Phi phi) {
+        }
+
+        @Override
+        public void visit(BinaryOperation binaryOperation) {
+            if (!allocator.isNeeded(binaryOperation)) return;
+            Register resultRegister = resultRegister(binaryOperation);
+            BinaryExpression.Operator operator = binaryOperation.operator;
+            Value left = binaryOperation.left();
+            Value right = binaryOperation.right();
+            boolean commutative = operator == BinaryExpression.Operator.ADD || operator == BinaryExpression.Operator.MUL;
+            if (commutative && left instanceof Constant && !(right instanceof Constant)) {
+                left = binaryOperation.right();
+                right = binaryOperation.left();
+            }
+            if (right instanceof Constant) {
+                int constant = ((Constant) right).value;
+                Register leftRegister = operand(left, firstScratchRegister);
+                if (operator == BinaryExpression.Operator.MUL && Tiling.isCheapFactor(constant)) {
+                    multiply(resultRegister, leftRegister, constant);
+                } else if (operator == BinaryExpression.Operator.DIV && constant != Integer.MIN_VALUE
+                        && Integer.bitCount(Math.abs(constant)) == 1) {
+                    divide(resultRegister, leftRegister, constant);
+                } else {
+                    emitImmediate(arithmeticInstruction(operator), resultRegister, leftRegister, constant, secondScratchRegister);
+                }
+            } else {
+                Register leftRegister = operand(left, firstScratchRegister);
+                Register rightRegister = operand(right, secondScratchRegister);
+                output.emitInstruction(arithmeticInstruction(operator), resultRegister, leftRegister, rightRegister);
+            }
+            finish(binaryOperation, resultRegister);
+        }
+
+        @Override
+        public void visit(FrameAddress frameAddress) {
+            if (!allocator.isNeeded(frameAddress) || !tiling.isRegisterValue(frameAddress)) return;
+            Register resultRegister = resultRegister(frameAddress);
+            emitImmediate("add", resultRegister, framePointerRegister, frameAddress.entry.offset, secondScratchRegister);
+            finish(frameAddress, resultRegister);
+        }
+
+        @Override
+        public void visit(ElementAddress elementAddress) {
+            if (!allocator.isNeeded(elementAddress) || !tiling.isRegisterValue(elementAddress)) return;
+            Register resultRegister = resultRegister(elementAddress);
+            Value index = tiling.variableIndexPart(elementAddress);
+            if (index instanceof Constant) {
+                loadConstant(secondScratchRegister, ((Constant) index).value * elementAddress.elementSize);
+            } else {
+                multiply(secondScratchRegister, operand(index, secondScratchRegister), elementAddress.elementSize);
+            }
+            // Die Basis erst nach der Skalierung laden, die $8 als Zwischenregister benutzen kann
+            Register base = baseRegister(tiling.address(elementAddress.array()), firstScratchRegister);
+            output.emitInstruction("add", resultRegister, base, secondScratchRegister);
+            finish(elementAddress, resultRegister);
+        }
+
+        @Override
+        public void visit(IndexCheck indexCheck) {
+            Register index = operand(indexCheck.index(), firstScratchRegister);
+            Register size = operand(indexCheck.arraySize(), secondScratchRegister);
+            output.emitInstruction("bgeu", index, size, indexErrorLabel);
+        }
+
+        @Override
+        public void visit(Load load) {
+            if (!allocator.isNeeded(load)) return;
+            Register resultRegister = resultRegister(load);
+            SsaTiling.Address address = tiling.address(load.address());
+            output.emitInstruction("ldw", resultRegister, baseRegister(address, secondScratchRegister), address.displacement);
+            finish(load, resultRegister);
+        }
+
+        @Override
+        public void visit(Store store) {
+            Register value = operand(store.value(), secondScratchRegister);
+            SsaTiling.Address address = tiling.address(store.address());
+            output.emitInstruction("stw", value, baseRegister(address, firstScratchRegister), address.displacement);
+        }
+
+        @Override
+        public void visit(Call call) {
+            for (int i = 0; i < call.operands().size(); i++) {
+                Register argument = operand(call.operand(i), firstScratchRegister);
+                output.emitInstruction("stw", argument, stackPointerRegister, call.procedure.parameterTypes.get(i).offset, "store arg #" + i);
+            }
+            output.emitInstruction("jal", new Label(call.procedureName.toString()));
+        }
+
+        @Override
+        public void visit(Jump jump) {
+            emitPhiCopies(jump.block(), jump.target());
+            output.emitInstruction("j", labels.get(jump.target()));
+        }
+
+        @Override
+        public void visit(Branch branch) {
+            Register left = operand(branch.left(), firstScratchRegister);
+            Register right = operand(branch.right(), secondScratchRegister);
+            output.emitInstruction(branchInstruction(branch.comparison), left, right, labels.get(branch.whenTrue()));
+            output.emitInstruction("j", labels.get(branch.whenFalse()));
+        }
+
+        @Override
+        public void visit(Return ret) {
+            output.emitInstruction("j", epilogueLabel);
+        }
+    }
+}
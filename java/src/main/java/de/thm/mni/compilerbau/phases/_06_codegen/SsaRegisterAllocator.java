@@ -0,0 +1,314 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import de.thm.mni.compilerbau.phases._04d_ssa.*;
+
+import java.util.*;
+
+/**
+ * This class assigns a register or a spill slot to every value of a control flow graph that is held in a register
+ * (-O2).
+ * <p>
+ * The operations are numbered in the order of the generated code. Liveness is computed by the usual backwards data
+ * flow analysis; from it, every value gets its live ranges, a list of position ranges within the blocks it is live
+ * in. The operands of phi functions are read at the end of the predecessor, where the code generator copies them
+ * into the location of the phi function.
+ * <p>
+ * Leaving SSA form: a phi function and its operands are put into the same class if they do not interfere, that is
+ * if none of their live ranges overlap, so they share a location and need no copy. Then the classes are colored in
+ * the order of their start: classes live across a call get a callee-saved register ($16 - $23), the others
+ * preferably a caller-saved one ($10 - $15). A class finding no free register is spilled to a slot of the stack
+ * frame.
+ * Registers $8 and $9 are never assigned, the code generator uses them for intermediate results.
+ */
+class SsaRegisterAllocator {
+    private static final int[] CALLER_SAVED = {10, 11, 12, 13, 14, 15};
+    private static final int[] CALLEE_SAVED = {16, 17, 18, 19, 20, 21, 22, 23};
+
+    /**
+     * The place of a value: a register or a spill slot.
+     */
+    static class Location {
+        /**
+         * The register, null for a spill slot.
+         */
+        final Register register;
+        final int spillSlot;
+
+        private Location(Register register, int spillSlot) {
+            this.register = register;
+            this.spillSlot = spillSlot;
+        }
+
+        static Location register(Register register) {
+            return new Location(register, -1);
+        }
+
+        static Location spillSlot(int spillSlot) {
+            return new Location(null, spillSlot);
+        }
+
+        boolean isRegister() {
+            return register != null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Location)) return false;
+            Location other = (Location) o;
+            return isRegister() ? other.isRegister() && register.number == other.register.number : other.spillSlot == spillSlot;
+        }
+
+        @Override
+        public int hashCode() {
+            return isRegister() ? register.number : -1 - spillSlot;
+        }
+    }
+
+    private final ControlFlowGraph graph;
+    private final SsaTiling tiling;
+    private final Map<BasicBlock, Integer> blockStart = new HashMap<>();
+    private final Map<BasicBlock, Integer> blockEnd = new HashMap<>();
+    private final Map<Operation, Integer> positions = new HashMap<>();
+    /**
+     * The index of every operation including the phi functions in program order, used to break ties independently of
+     * the iteration order of the hash maps.
+     */
+    private final Map<Value, Integer> definitionOrder = new HashMap<>();
+    private final List<Integer> callPositions = new ArrayList<>();
+    /**
+     * The live ranges (first and last position) of every value that is read from a register.
+     */
+    private final Map<Value, List<int[]>> liveRanges = new HashMap<>();
+    private final Map<Value, Value> classParent = new HashMap<>();
+    private final Map<Value, List<Value>> classMembers = new HashMap<>();
+    private final Map<Value, Location> locations = new HashMap<>();
+    private int spillSlots = 0;
+
+    SsaRegisterAllocator(ControlFlowGraph graph, SsaTiling tiling) {
+        this.graph = graph;
+        this.tiling = tiling;
+    }
+
+    void allocate() {
+        numberOperations();
+        computeIntervals();
+        for (Value value : liveRanges.keySet()) {
+            classParent.put(value, value);
+            classMembers.put(value, new ArrayList<>(List.of(value)));
+        }
+        coalescePhis();
+        assignLocations();
+    }
+
+    /**
+     * @param value A value.
+     * @return true if the value is read from a register somewhere, so its operation has to compute it.
+     */
+    boolean isNeeded(Value value) {
+        return liveRanges.containsKey(value);
+    }
+
+    /**
+     * @param value A value that is needed.
+     * @return The location of the value.
+     */
+    Location location(Value value) {
+        return locations.get(find(value));
+    }
+
+    int spillSlotCount() {
+        return spillSlots;
+    }
+
+    /**
+     * @return The callee-saved registers assigned to any value, which have to be saved by the procedure.
+     */
+    List<Register> calleeSavedRegisters() {
+        TreeSet<Integer> used = new TreeSet<>();
+        for (Location location : locations.values()) {
+            if (location.isRegister() && location.register.number >= CALLEE_SAVED[0]) used.add(location.register.number);
+        }
+        List<Register> registers = new ArrayList<>();
+        used.forEach(number -> registers.add(new Register(number)));
+        return registers;
+    }
+
+    private void numberOperations() {
+        int position = 0;
+        for (BasicBlock block : graph.blocks()) {
+            blockStart.put(block, position);
+            position += 2;
+            for (Operation operation : block.allOperations()) {
+                definitionOrder.put(operation, definitionOrder.size());
+                if (operation instanceof Phi) continue;
+                // Operanden werden an der geraden Position gelesen, das Ergebnis an der ungeraden geschrieben
+                positions.put(operation, position);
+                if (operation instanceof Call) callPositions.add(position);
+                position += 2;
+            }
+            blockEnd.put(block, position);
+            position += 2;
+        }
+    }
+
+    /**
+     * @return The values read from registers by the copies for the phi functions of the successors at the end of the
+     * block.
+     */
+    private Set<Value> phiUses(BasicBlock block) {
+        Set<Value> uses = new HashSet<>();
+        for (BasicBlock successor : block.successors()) {
+            int index = successor.predecessors().indexOf(block);
+            for (Phi phi : successor.phis()) {
+                Value read = tiling.registerRead(phi.operand(index));
+                if (read != null) uses.add(read);
+            }
+        }
+        return uses;
+    }
+
+    private void computeIntervals() {
+        Map<BasicBlock, Set<Value>> upwardExposed = new HashMap<>();
+        Map<BasicBlock, Set<Value>> definitions = new HashMap<>();
+        for (BasicBlock block : graph.blocks()) {
+            Set<Value> used = new HashSet<>();
+            Set<Value> defined = new HashSet<>(block.phis());
+            for (Operation operation : block.allOperations()) {
+                for (Value use : tiling.registerUses(operation)) {
+                    if (!defined.contains(use)) used.add(use);
+                }
+                if (tiling.isRegisterValue(operation)) defined.add(operation);
+            }
+            upwardExposed.put(block, used);
+            definitions.put(block, defined);
+        }
+
+        Map<BasicBlock, Set<Value>> liveIn = new HashMap<>();
+        Map<BasicBlock, Set<Value>> liveOut = new HashMap<>();
+        graph.blocks().forEach(block -> liveIn.put(block, new HashSet<>()));
+        List<BasicBlock> reversed = new ArrayList<>(graph.blocks());
+        Collections.reverse(reversed);
+        boolean changed;
+        do {
+            changed = false;
+            for (BasicBlock block : reversed) {
+                Set<Value> out = phiUses(block);
+                block.successors().forEach(successor -> out.addAll(liveIn.get(successor)));
+                Set<Value> in = new HashSet<>(out);
+                in.removeAll(definitions.get(block));
+                in.addAll(upwardExposed.get(block));
+                liveOut.put(block, out);
+                if (!in.equals(liveIn.get(block))) {
+                    liveIn.put(block, in);
+                    changed = true;
+                }
+            }
+        } while (changed);
+
+        // Rückwärts durch jeden Block: ein Bereich endet an der letzten Benutzung und beginnt an der Definition
+        for (BasicBlock block : graph.blocks()) {
+            Map<Value, Integer> rangeEnds = new HashMap<>();
+            liveOut.get(block).forEach(value -> rangeEnds.put(value, blockEnd.get(block)));
+            List<Operation> operations = block.allOperations();
+            Collections.reverse(operations);
+            for (Operation operation : operations) {
+                if (operation instanceof Phi) continue;
+                int position = positions.get(operation);
+                Integer end = rangeEnds.remove(operation);
+                if (end != null) addRange(operation, position + 1, end);
+                for (Value use : tiling.registerUses(operation)) rangeEnds.putIfAbsent(use, position);
+            }
+            int start = blockStart.get(block);
+            rangeEnds.forEach((value, end) -> addRange(value, start, end));
+        }
+    }
+
+    private void addRange(Value value, int start, int end) {
+        liveRanges.computeIfAbsent(value, v -> new ArrayList<>()).add(new int[]{start, end});
+    }
+
+    private Value find(Value value) {
+        Value parent = classParent.get(value);
+        if (parent == value) return value;
+        Value root = find(parent);
+        classParent.put(value, root);
+        return root;
+    }
+
+    private static boolean overlap(int[] first, int[] second) {
+        return first[0] <= second[1] && second[0] <= first[1];
+    }
+
+    private boolean interfere(Value firstClass, Value secondClass) {
+        for (Value first : classMembers.get(firstClass)) {
+            for (Value second : classMembers.get(secondClass)) {
+                for (int[] firstRange : liveRanges.get(first)) {
+                    for (int[] secondRange : liveRanges.get(second)) {
+                        if (overlap(firstRange, secondRange)) return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void coalescePhis() {
+        for (BasicBlock block : graph.blocks()) {
+            for (Phi phi : block.phis()) {
+                if (!isNeeded(phi)) continue;
+                for (Value operand : phi.operands()) {
+                    // Ein Wert mit Verschiebung enthält im Register nicht die vollständige Adresse
+                    if (!isNeeded(operand) || !tiling.isRegisterValue(operand) || tiling.address(operand).displacement != 0) continue;
+                    Value phiClass = find(phi);
+                    Value operandClass = find(operand);
+                    if (phiClass == operandClass || interfere(phiClass, operandClass)) continue;
+                    classParent.put(operandClass, phiClass);
+                    classMembers.get(phiClass).addAll(classMembers.remove(operandClass));
+                }
+            }
+        }
+    }
+
+    private boolean crossesCall(Value valueClass) {
+        for (Value member : classMembers.get(valueClass)) {
+            for (int[] range : liveRanges.get(member)) {
+                for (int call : callPositions) {
+                    if (range[0] < call && range[1] > call) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int classStart(Value valueClass) {
+        return classMembers.get(valueClass).stream().flatMap(member -> liveRanges.get(member).stream()).mapToInt(range -> range[0]).min().orElse(0);
+    }
+
+    private void assignLocations() {
+        List<Value> classes = new ArrayList<>(classMembers.keySet());
+        classes.sort(Comparator.comparingInt(this::classStart).thenComparingInt(valueClass -> definitionOrder.getOrDefault(valueClass, Integer.MAX_VALUE)));
+        List<Value> assigned = new ArrayList<>();
+        for (Value valueClass : classes) {
+            Set<Location> occupied = new HashSet<>();
+            for (Value other : assigned) {
+                if (interfere(valueClass, other)) occupied.add(locations.get(other));
+            }
+            Location location = null;
+            List<int[]> candidates = crossesCall(valueClass) ? List.of(CALLEE_SAVED) : List.of(CALLER_SAVED, CALLEE_SAVED);
+            for (int[] registers : candidates) {
+                for (int number : registers) {
+                    Location candidate = Location.register(new Register(number));
+                    if (location == null && !occupied.contains(candidate)) location = candidate;
+                }
+            }
+            if (location == null) {
+                int slot = 0;
+                while (occupied.contains(Location.spillSlot(slot))) slot++;
+                location = Location.spillSlot(slot);
+                spillSlots = Math.max(spillSlots, slot + 1);
+            }
+            locations.put(valueClass, location);
+            assigned.add(valueClass);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import de.thm.mni.compilerbau.absyn.BinaryExpression;
+import de.thm.mni.compilerbau.phases._04d_ssa.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class decides which values of a control flow graph are held in registers and how addresses are formed (-O2).
+ * The tiles correspond to those of {@link Tiling}:
+ * <ul>
+ *     <li>Constants are encoded as immediate operands or loaded when they are used, 0 is taken from register $0.</li>
+ *     <li>The address of a variable in the stack frame is the frame pointer plus a displacement. Constant parts of
+ *     array indices are folded into the displacement as well, also for an index of the form i + c.</li>
+ * </ul>
+ * An address is described by a base value, whose register holds the address without the displacement, and the
+ * displacement. Values that are folded into the addresses using them are never held in registers; if such a value
+ * is needed in a register anyway, it is recomputed at that point.
+ * The {@link SsaRegisterAllocator} and the {@link SsaCodeGenerator} use the same decisions, so the live ranges match
+ * the registers actually read.
+ */
+class SsaTiling {
+    /**
+     * An address formed by a base register and a displacement.
+     */
+    static class Address {
+        /**
+         * The value whose register holds the base address, null for the frame pointer.
+         */
+        final Value base;
+        final int displacement;
+
+        Address(Value base, int displacement) {
+            this.base = base;
+            this.displacement = displacement;
+        }
+    }
+
+    /**
+     * @param value A value.
+     * @return The base and displacement forming the value. For values held in registers completely, the base is the
+     * value itself and the displacement 0.
+     */
+    Address address(Value value) {
+        if (value instanceof FrameAddress && Tiling.isImmediate(((FrameAddress) value).entry.offset)) {
+            return new Address(null, ((FrameAddress) value).entry.offset);
+        }
+        if (value instanceof ElementAddress) {
+            ElementAddress elementAddress = (ElementAddress) value;
+            Address array = address(elementAddress.array());
+            if (elementAddress.index() instanceof Constant) {
+                long displacement = array.displacement + (long) ((Constant) elementAddress.index()).value * elementAddress.elementSize;
+                if (Tiling.isImmediate(displacement)) return new Address(array.base, (int) displacement);
+            }
+            // Der Registerinhalt ist die Basis plus der variable Teil des Index, der Rest steckt in der Verschiebung
+            long displacement = array.displacement + (long) constantIndexPart(elementAddress) * elementAddress.elementSize;
+            return new Address(value, (int) displacement);
+        }
+        return new Address(value, 0);
+    }
+
+    /**
+     * @param value A value.
+     * @return true if the value is computed into a register where it is defined.
+     */
+    boolean isRegisterValue(Value value) {
+        return value instanceof Operation && ((Operation) value).hasValue() && address(value).base == value;
+    }
+
+    /**
+     * Splits the index of an element address held in a register into a part added at runtime and a constant folded
+     * into the displacement.
+     *
+     * @param elementAddress An element address held in a register.
+     * @return The part of the index added at runtime.
+     */
+    Value variableIndexPart(ElementAddress elementAddress) {
+        BinaryOperation split = splitIndex(elementAddress);
+        if (split == null) return elementAddress.index();
+        return split.right() instanceof Constant ? split.left() : split.right();
+    }
+
+    private int constantIndexPart(ElementAddress elementAddress) {
+        BinaryOperation split = splitIndex(elementAddress);
+        if (split == null) return 0;
+        if (split.right() instanceof Constant) {
+            int constant = ((Constant) split.right()).value;
+            return split.operator == BinaryExpression.Operator.SUB ? -constant : constant;
+        }
+        return ((Constant) split.left()).value;
+    }
+
+    /**
+     * @return The index of the element address if it is a sum or difference with a constant that can be folded
+     * into the displacement, null otherwise.
+     */
+    private BinaryOperation splitIndex(ElementAddress elementAddress) {
+        if (!(elementAddress.index() instanceof BinaryOperation)) return null;
+        BinaryOperation index = (BinaryOperation) elementAddress.index();
+        long constant;
+        if (index.operator == BinaryExpression.Operator.ADD && index.right() instanceof Constant) {
+            constant = ((Constant) index.right()).value;
+        } else if (index.operator == BinaryExpression.Operator.ADD && index.left() instanceof Constant) {
+            constant = ((Constant) index.left()).value;
+        } else if (index.operator == BinaryExpression.Operator.SUB && index.right() instanceof Constant) {
+            constant = -(long) ((Constant) index.right()).value;
+        } else {
+            return null;
+        }
+        long displacement = address(elementAddress.array()).displacement + constant * elementAddress.elementSize;
+        return Tiling.isImmediate(displacement) ? index : null;
+    }
+
+    /**
+     * @param value An operand.
+     * @return The value whose register is read to get the operand, null if no register is read.
+     */
+    Value registerRead(Value value) {
+        if (value instanceof Constant || value instanceof Undefined) return null;
+        return address(value).base;
+    }
+
+    /**
+     * @param operation An operation.
+     * @return The values whose registers are read by the code of the operation. The operands of phi functions are
+     * read at the end of the predecessors and are not included.
+     */
+    List<Value> registerUses(Operation operation) {
+        List<Value> uses = new ArrayList<>();
+        if (operation instanceof Phi) return uses;
+        if (operation instanceof ElementAddress) {
+            if (!isRegisterValue(operation)) return uses;
+            ElementAddress elementAddress = (ElementAddress) operation;
+            addRead(uses, address(elementAddress.array()).base);
+            addRead(uses, registerRead(variableIndexPart(elementAddress)));
+        } else if (operation instanceof Load) {
+            addRead(uses, address(((Load) operation).address()).base);
+        } else if (operation instanceof Store) {
+            addRead(uses, address(((Store) operation).address()).base);
+            addRead(uses, registerRead(((Store) operation).value()));
+        } else if (!(operation instanceof FrameAddress)) {
+            operation.operands().forEach(operand -> addRead(uses, registerRead(operand)));
+        }
+        return uses;
+    }
+
+    private static void addRead(List<Value> uses, Value value) {
+        if (value != null) uses.add(value);
+    }
+}
@@ -0,0 +1,194 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.table.SymbolTable;
+import de.thm.mni.compilerbau.table.VariableEntry;
+import de.thm.mni.compilerbau.types.ArrayType;
+
+/**
+ * This class decides which ECO32 instructions cover the expression trees of a procedure (-O1).
+ * Besides the instructions taking all operands in registers, the following tiles are used:
+ * <ul>
+ *     <li>Operations with a constant operand that fits into 16 bits use the immediate form of the instruction.</li>
+ *     <li>The constant 0 is taken from register $0 instead of being loaded.</li>
+ *     <li>Variables are addressed by a base register and a displacement. The frame offset of a variable and constant
+ *     parts of array indices are folded into the displacement of the ldw and stw instructions accessing them.</li>
+ * </ul>
+ * Every tile replaces instructions that would be needed otherwise and never needs more instructions than the tiles
+ * it covers, so choosing the largest tile at every node yields a tiling with the fewest instructions.
+ * The {@link ErshovLabeler} and the {@link CodeGenerator} use the same decisions, so the labels match the registers
+ * actually used.
+ */
+class Tiling {
+    private final SymbolTable localTable;
+    private final boolean enabled;
+
+    /**
+     * @param localTable        The local table of the procedure whose expressions are covered.
+     * @param optimizationLevel The optimization level, tiles are only used from level 1 on.
+     */
+    Tiling(SymbolTable localTable, int optimizationLevel) {
+        this.localTable = localTable;
+        this.enabled = optimizationLevel >= 1;
+    }
+
+    /**
+     * An array index split into a part that is evaluated at runtime and a constant folded into the displacement.
+     */
+    static class SplitIndex {
+        /**
+         * The part of the index computed at runtime, null if the whole index is constant.
+         */
+        final Expression variablePart;
+        final int constantPart;
+
+        SplitIndex(Expression variablePart, int constantPart) {
+            this.variablePart = variablePart;
+            this.constantPart = constantPart;
+        }
+    }
+
+    /**
+     * @return true if tiles other than the naive register forms are used.
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param value The value of a constant operand.
+     * @return true if the value fits into the sign extended immediate field of an instruction.
+     */
+    static boolean isImmediate(long value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    /**
+     * @param value The value of a constant operand.
+     * @return true if the value fits into the zero extended immediate field of a logical instruction.
+     */
+    static boolean isUnsignedImmediate(int value) {
+        return value >= 0 && value <= 0xFFFF;
+    }
+
+    /**
+     * @param factor The constant factor of a multiplication.
+     * @return true if the factor is a power of two or the sum or difference of two powers of two (2^a +- 2^b),
+     * up to the sign, so the multiplication can be replaced by shifts and one addition or subtraction.
+     */
+    static boolean isCheapFactor(int factor) {
+        if (factor == Integer.MIN_VALUE || factor == 0) return false;
+        int magnitude = Math.abs(factor);
+        int lowestBit = Integer.lowestOneBit(magnitude);
+        return Integer.bitCount(magnitude) <= 2 || Integer.bitCount(magnitude + lowestBit) == 1;
+    }
+
+    /**
+     * @param expression The expression to check.
+     * @return true if the expression is the constant 0, which is taken from register $0.
+     */
+    boolean isZero(Expression expression) {
+        return enabled && expression instanceof IntLiteral && ((IntLiteral) expression).value == 0;
+    }
+
+    /**
+     * Returns the operand of an arithmetic operation that is encoded as an immediate value.
+     * The right operand is preferred; the left one is only used for commutative operations.
+     *
+     * @param binaryExpression The operation.
+     * @return The constant operand or null if both operands have to be held in registers.
+     */
+    IntLiteral immediateOperand(BinaryExpression binaryExpression) {
+        if (!enabled || !binaryExpression.operator.isArithmetic()) return null;
+        if (isImmediateLiteral(binaryExpression.rightOperand)) return (IntLiteral) binaryExpression.rightOperand;
+        boolean commutative = binaryExpression.operator == BinaryExpression.Operator.ADD
+                || binaryExpression.operator == BinaryExpression.Operator.MUL;
+        if (commutative && isImmediateLiteral(binaryExpression.leftOperand)) return (IntLiteral) binaryExpression.leftOperand;
+        return null;
+    }
+
+    private static boolean isImmediateLiteral(Expression expression) {
+        return expression instanceof IntLiteral && isImmediate(((IntLiteral) expression).value);
+    }
+
+    /**
+     * @param variable A variable.
+     * @return The entry of the variable, if it is a named variable kept in a register by phase 5, null otherwise.
+     */
+    private VariableEntry registerEntry(Variable variable) {
+        if (!(variable instanceof NamedVariable)) return null;
+        VariableEntry entry = (VariableEntry) localTable.lookup(((NamedVariable) variable).name);
+        return entry.register != null ? entry : null;
+    }
+
+    /**
+     * @param namedVariable A variable in the stack frame.
+     * @return true if the variable is addressed by the frame pointer and its offset, without any instruction.
+     * This requires the offset to fit into the displacement field.
+     */
+    boolean isFrameAddressed(NamedVariable namedVariable) {
+        VariableEntry entry = (VariableEntry) localTable.lookup(namedVariable.name);
+        return enabled && entry.register == null && !entry.isReference && isImmediate(entry.offset);
+    }
+
+    /**
+     * Returns the displacement that is added to the base register to get the address of a variable.
+     *
+     * @param variable The variable.
+     * @return The displacement, 0 if the address is held in a register completely.
+     */
+    int displacement(Variable variable) {
+        if (variable instanceof NamedVariable) {
+            NamedVariable namedVariable = (NamedVariable) variable;
+            return isFrameAddressed(namedVariable) ? ((VariableEntry) localTable.lookup(namedVariable.name)).offset : 0;
+        }
+        ArrayAccess arrayAccess = (ArrayAccess) variable;
+        SplitIndex index = splitIndex(arrayAccess);
+        return displacement(arrayAccess.array) + (index != null ? index.constantPart * elementSize(arrayAccess) : 0);
+    }
+
+    /**
+     * Splits the index of an array access into a part computed at runtime and a constant that is folded into the
+     * displacement. Only indices that need no check are split, for example a[3] or a[i + 1].
+     *
+     * @param arrayAccess The array access.
+     * @return The split index or null if the index is not split.
+     */
+    SplitIndex splitIndex(ArrayAccess arrayAccess) {
+        if (!enabled || arrayAccess.indexCheckNeeded) return null;
+        Expression index = arrayAccess.index;
+        SplitIndex split = null;
+        if (index instanceof IntLiteral) {
+            split = new SplitIndex(null, ((IntLiteral) index).value);
+        } else if (index instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) index;
+            Expression left = binaryExpression.leftOperand;
+            Expression right = binaryExpression.rightOperand;
+            if (binaryExpression.operator == BinaryExpression.Operator.ADD && right instanceof IntLiteral) {
+                split = new SplitIndex(left, ((IntLiteral) right).value);
+            } else if (binaryExpression.operator == BinaryExpression.Operator.ADD && left instanceof IntLiteral) {
+                split = new SplitIndex(right, ((IntLiteral) left).value);
+            } else if (binaryExpression.operator == BinaryExpression.Operator.SUB && right instanceof IntLiteral
+                    && ((IntLiteral) right).value != Integer.MIN_VALUE) {
+                split = new SplitIndex(left, -((IntLiteral) right).value);
+            }
+        }
+        if (split == null) return null;
+        long displacement = displacement(arrayAccess.array) + (long) split.constantPart * elementSize(arrayAccess);
+        return isImmediate(displacement) ? split : null;
+    }
+
+    /**
+     * @param variable A variable.
+     * @return true if the address of the variable is held in a register without any instruction and without a
+     * displacement, which is the case for references kept in a register.
+     */
+    boolean isAddressInRegister(Variable variable) {
+        VariableEntry entry = registerEntry(variable);
+        return entry != null && entry.isReference;
+    }
+
+    private static int elementSize(ArrayAccess arrayAccess) {
+        return ((ArrayType) arrayAccess.array.dataType).baseType.byteSize;
+    }
+}
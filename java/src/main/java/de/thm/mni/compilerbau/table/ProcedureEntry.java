@@ -1,5 +1,6 @@
 package de.thm.mni.compilerbau.table;
 
+import de.thm.mni.compilerbau.phases._04d_ssa.ControlFlowGraph;
 import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
 
 import java.util.List;
@@ -13,6 +14,7 @@ public class ProcedureEntry implements Entry {
     public final SymbolTable localTable;
     public final List<ParameterType> parameterTypes;
     public final StackLayout stackLayout = new StackLayout();
+    public ControlFlowGraph controlFlowGraph = null; // This value is set in phase 4d at -O2
 
     /**
      * Creates a new {@link Entry} representing a declared SPL procedure.
@@ -41,6 +41,18 @@ public class SymbolTable {
         return Optional.ofNullable(upperLevel);
     }
 
+    /**
+     * Creates a new table with the same surrounding scope and the same entries as this table.
+     * The entries themselves are shared, so later insertions into either table do not affect the other one.
+     *
+     * @return The copy of this table.
+     */
+    public SymbolTable copy() {
+        SymbolTable copy = new SymbolTable(upperLevel);
+        copy.entries.putAll(entries);
+        return copy;
+    }
+
     /**
      * Inserts a new symbol into the table.
      * Does nothing if a symbol with this name already exists in this scope.